@@ -0,0 +1,79 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Сравнение генератора OTP с прежней реализацией (общий SecureRandom, Math.pow и String.format).
+ * Вложенные классы задают число потоков: {@code ./gradlew jmh}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class OtpGeneratorBenchmark {
+
+    private static final SecureRandom LEGACY_RANDOM = new SecureRandom();
+    private static final int LEGACY_LENGTH = 4;
+
+    private OtpGenerator generator;
+    private OtpGenerator pooledGenerator;
+
+    @Setup
+    public void setUp() {
+        generator = new OtpGenerator(new OtpGeneratorProperties(4, "0123456789", 0));
+        pooledGenerator = new OtpGenerator(new OtpGeneratorProperties(4, "0123456789", 4096));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pooledGenerator.destroy();
+    }
+
+    @Benchmark
+    public String legacy() {
+        int number = LEGACY_RANDOM.nextInt((int) Math.pow(10, LEGACY_LENGTH));
+        return String.format("%0" + LEGACY_LENGTH + "d", number);
+    }
+
+    @Benchmark
+    public String threadLocalDrbg() {
+        return generator.generate();
+    }
+
+    @Benchmark
+    public String pooled() {
+        return pooledGenerator.generate();
+    }
+
+    @Threads(1)
+    public static class Threads1 extends OtpGeneratorBenchmark {
+    }
+
+    @Threads(4)
+    public static class Threads4 extends OtpGeneratorBenchmark {
+    }
+
+    @Threads(16)
+    public static class Threads16 extends OtpGeneratorBenchmark {
+    }
+
+    @Threads(64)
+    public static class Threads64 extends OtpGeneratorBenchmark {
+    }
+}
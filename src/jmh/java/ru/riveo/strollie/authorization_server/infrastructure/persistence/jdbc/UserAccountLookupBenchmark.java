@@ -0,0 +1,190 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.jdbc;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Число запросов и задержка чтения аккаунта при входе и сохранения ролей:
+ * прежние запросы JPA (все колонки users, затем отдельный SELECT ролей; при сохранении
+ * повторное чтение по id и построчная запись ролей) против проекции {@link UserAccountQueries}.
+ * <p>
+ * Нужна PostgreSQL со схемой приложения: {@code -Dbenchmark.jdbc.url}, {@code .username},
+ * {@code .password} (по умолчанию {@code jdbc:postgresql://localhost:5432/auth}).
+ * Счётчик {@code queries} показывает выполненные запросы; запросов на операцию - отношение
+ * {@code queries} к основному результату.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UserAccountLookupBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final String EMAIL_PREFIX = "benchmark.lookup.";
+    private static final String BENCHMARK_ROLE = "ROLE_BENCHMARK";
+
+    /**
+     * Запросы, которые Hibernate выполняет для {@code JpaUserRepository.findByEmail}
+     * с EAGER {@code @ElementCollection} ролей.
+     */
+    private static final String JPA_FIND_USER = """
+            SELECT id, nickname, email, first_name, last_name, city, date_of_birth, enabled,
+                   account_non_expired, account_non_locked, credentials_non_expired, version
+            FROM users WHERE email = ?
+            """;
+    private static final String JPA_FIND_USER_BY_ID = """
+            SELECT id, nickname, email, first_name, last_name, city, date_of_birth, enabled,
+                   account_non_expired, account_non_locked, credentials_non_expired, version
+            FROM users WHERE id = ?
+            """;
+    private static final String JPA_FIND_ROLES = "SELECT role FROM user_roles WHERE user_id = ?";
+
+    private final LongAdder statements = new LongAdder();
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private UserAccountQueries queries;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class QueryCounter {
+        public long queries;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        DriverManagerDataSource target = new DriverManagerDataSource(
+                System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/auth"),
+                System.getProperty("benchmark.jdbc.username", "postgres"),
+                System.getProperty("benchmark.jdbc.password", "postgres"));
+        dataSource = new SingleConnectionDataSource(countingConnection(target.getConnection()), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        queries = new UserAccountQueries(jdbcTemplate);
+
+        deleteUsers();
+        for (int i = 0; i < USERS; i++) {
+            UUID id = UUID.randomUUID();
+            jdbcTemplate.update("""
+                    INSERT INTO users (id, nickname, email, first_name, last_name, city, date_of_birth)
+                    VALUES (?, ?, ?, 'Benchmark', 'User', 'Benchville', DATE '2000-01-01')
+                    """, id, EMAIL_PREFIX + i, email(i));
+            jdbcTemplate.update("INSERT INTO user_roles (user_id, role) VALUES (?, 'ROLE_USER')", id);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteUsers();
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public Object loginLookupJpaEquivalent(QueryCounter counter) {
+        long before = statements.sum();
+        UUID id = jdbcTemplate.queryForObject(JPA_FIND_USER, (rs, rowNum) -> rs.getObject("id", UUID.class),
+                randomEmail());
+        List<String> roles = jdbcTemplate.queryForList(JPA_FIND_ROLES, String.class, id);
+        counter.queries += statements.sum() - before;
+        return roles;
+    }
+
+    @Benchmark
+    public Object loginLookupProjection(QueryCounter counter) {
+        long before = statements.sum();
+        Object account = queries.findByEmail(randomEmail());
+        counter.queries += statements.sum() - before;
+        return account;
+    }
+
+    /**
+     * Каждая операция добавляет роль ROLE_BENCHMARK или снимает её, если она уже есть.
+     */
+    @Benchmark
+    public void saveRolesJpaEquivalent(QueryCounter counter) {
+        String email = randomEmail();
+        long before = statements.sum();
+        // findByEmail в AssignRoleHandler
+        UUID id = jdbcTemplate.queryForObject(JPA_FIND_USER, (rs, rowNum) -> rs.getObject("id", UUID.class), email);
+        List<String> roles = jdbcTemplate.queryForList(JPA_FIND_ROLES, String.class, id);
+        // findById в save
+        jdbcTemplate.queryForObject(JPA_FIND_USER_BY_ID, (rs, rowNum) -> rs.getObject("id", UUID.class), id);
+        jdbcTemplate.queryForList(JPA_FIND_ROLES, String.class, id);
+        // Изменение коллекции увеличивает версию и пишет роли построчно
+        jdbcTemplate.update("UPDATE users SET version = version + 1 WHERE id = ?", id);
+        if (roles.contains(BENCHMARK_ROLE)) {
+            jdbcTemplate.update("DELETE FROM user_roles WHERE user_id = ? AND role = ?", id, BENCHMARK_ROLE);
+        } else {
+            jdbcTemplate.update("INSERT INTO user_roles (user_id, role) VALUES (?, ?)", id, BENCHMARK_ROLE);
+        }
+        counter.queries += statements.sum() - before;
+    }
+
+    @Benchmark
+    public void saveRolesProjection(QueryCounter counter) {
+        String email = randomEmail();
+        long before = statements.sum();
+        UserAccountRow account = queries.findByEmail(email).orElseThrow();
+        Set<String> roles = new HashSet<>(account.roles());
+        if (!roles.remove(BENCHMARK_ROLE)) {
+            roles.add(BENCHMARK_ROLE);
+        }
+        queries.replaceRoles(account.id(), roles);
+        counter.queries += statements.sum() - before;
+    }
+
+    private void deleteUsers() {
+        jdbcTemplate.update("DELETE FROM user_roles WHERE user_id IN (SELECT id FROM users WHERE email LIKE ?)",
+                EMAIL_PREFIX + "%");
+        jdbcTemplate.update("DELETE FROM users WHERE email LIKE ?", EMAIL_PREFIX + "%");
+    }
+
+    private Connection countingConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")) {
+                        statements.increment();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static String randomEmail() {
+        return email(ThreadLocalRandom.current().nextInt(USERS));
+    }
+
+    private static String email(int i) {
+        return EMAIL_PREFIX + i + "@example.com";
+    }
+}
@@ -0,0 +1,88 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.memory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Clock;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpIssueResult;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpVerificationResult;
+
+/**
+ * Задержка операций {@link InMemoryOtpRepository} при {@code ACTIVE_OTPS} активных кодах
+ * и объём кучи на один активный код (печатается при подготовке).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class InMemoryOtpRepositoryBenchmark {
+
+    private static final int ACTIVE_OTPS = 100_000;
+
+    private InMemoryOtpRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+
+        repository = new InMemoryOtpRepository(Clock.systemUTC(), true);
+        for (int i = 0; i < ACTIVE_OTPS; i++) {
+            repository.issueOtp(email(i), String.format("%04d", i % 10_000), 3, 5, 60);
+        }
+
+        System.gc();
+        long after = memory.getHeapMemoryUsage().getUsed();
+        System.out.printf("%nHeap per active OTP: ~%d bytes (%d codes)%n", (after - before) / ACTIVE_OTPS, ACTIVE_OTPS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.destroy();
+    }
+
+    @Benchmark
+    public OtpVerificationResult verifyInvalid() {
+        // Неверный код для несуществующего email - чтение без изменения карты
+        return repository.verifyAndConsume(email(ACTIVE_OTPS + ThreadLocalRandom.current().nextInt(ACTIVE_OTPS)), "0000");
+    }
+
+    @Benchmark
+    public boolean isRateLimited() {
+        return repository.isRateLimited(email(ThreadLocalRandom.current().nextInt(ACTIVE_OTPS)));
+    }
+
+    @Benchmark
+    public OtpVerificationResult issueAndVerify() {
+        String email = "bench-" + Thread.currentThread().getId() + "-" + ThreadLocalRandom.current().nextLong() + "@example.com";
+        OtpIssueResult issued = repository.issueOtp(email, "1234", 3, 5, 0);
+        if (issued != OtpIssueResult.ISSUED) {
+            throw new IllegalStateException("Fresh email must not be rate limited");
+        }
+        return repository.verifyAndConsume(email, "1234");
+    }
+
+    private static String email(int i) {
+        return "user" + i + "@example.com";
+    }
+}
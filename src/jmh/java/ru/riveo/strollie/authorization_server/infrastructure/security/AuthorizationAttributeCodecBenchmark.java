@@ -0,0 +1,121 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.config.OtpAuthCustomizer;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.config.OtpAuthenticationTokenBinaryType;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.OtpAuthenticationToken;
+
+/**
+ * Стоимость кодирования и декодирования атрибутов авторизации OTP grant (принципал
+ * {@link OtpAuthenticationToken}) и метаданных access-токена (claims): JSON с {@code @class}
+ * против бинарного формата без сжатия и со сжатием любого значения.
+ * Размер закодированных значений выводится при подготовке: {@code ./gradlew jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthorizationAttributeCodecBenchmark {
+
+    @Param({"json", "binary", "binary-deflate"})
+    public String codec;
+
+    private AuthorizationAttributeCodec attributeCodec;
+    private Map<String, Object> attributes;
+    private Map<String, Object> metadata;
+    private byte[] encodedAttributes;
+    private byte[] encodedMetadata;
+
+    @Setup
+    public void setUp() throws Exception {
+        RegisteredClient client = RegisteredClient.withId("benchmark-client")
+                .clientId("benchmark-client")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .build();
+        AuthorizationRowMapper rowMapper = new AuthorizationRowMapper(new InMemoryRegisteredClientRepository(client));
+        new OtpAuthCustomizer().customize(rowMapper);
+        JsonAuthorizationAttributeCodec json = new JsonAuthorizationAttributeCodec(rowMapper.objectMapper());
+        List<BinaryAttributeType<?>> types = List.of(new OtpAuthenticationTokenBinaryType());
+        attributeCodec = switch (codec) {
+            case "json" -> json;
+            case "binary" -> new BinaryAuthorizationAttributeCodec(json, types, 0);
+            default -> new BinaryAuthorizationAttributeCodec(json, types, 1);
+        };
+
+        attributes = new LinkedHashMap<>();
+        attributes.put("java.security.Principal", new OtpAuthenticationToken("benchmark.user@example.com", null,
+                Set.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_MODERATOR"))));
+
+        Instant now = Instant.now();
+        // Те же типы коллекций, что в claims от JwtGenerator и jwtTokenCustomizer
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", "benchmark.user@example.com");
+        claims.put("aud", Collections.singletonList("mobile-app"));
+        claims.put("nbf", now);
+        claims.put("scope", new HashSet<>(Set.of("openid", "profile")));
+        claims.put("iss", URI.create("http://localhost:9100").toURL());
+        claims.put("exp", now.plusSeconds(3600));
+        claims.put("iat", now);
+        claims.put("jti", UUID.randomUUID().toString());
+        claims.put("authorities", new HashSet<>(Set.of("ROLE_USER", "ROLE_MODERATOR")));
+        metadata = new LinkedHashMap<>();
+        metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claims);
+        metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, false);
+
+        encodedAttributes = attributeCodec.encode(attributes);
+        encodedMetadata = attributeCodec.encode(metadata);
+        System.out.printf("Encoded size (%s): attributes %d bytes, token metadata %d bytes%n",
+                codec, encodedAttributes.length, encodedMetadata.length);
+    }
+
+    @Benchmark
+    public byte[] encodeAttributes() {
+        return attributeCodec.encode(attributes);
+    }
+
+    @Benchmark
+    public Map<String, Object> decodeAttributes() {
+        return attributeCodec.decode(encodedAttributes);
+    }
+
+    @Benchmark
+    public byte[] encodeTokenMetadata() {
+        return attributeCodec.encode(metadata);
+    }
+
+    @Benchmark
+    public Map<String, Object> decodeTokenMetadata() {
+        return attributeCodec.decode(encodedMetadata);
+    }
+}
@@ -0,0 +1,195 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+/**
+ * Число запросов и задержка сохранения авторизации на путях выдачи токенов:
+ * {@link JdbcOAuth2AuthorizationService} (findById, затем INSERT или UPDATE всех колонок)
+ * против одного INSERT ... ON CONFLICT в {@link DigestJdbcOAuth2AuthorizationService}.
+ * <p>
+ * {@code otpGrant*} сохраняют новую авторизацию с access- и refresh-токеном, как OTP grant;
+ * {@code refreshGrant*} сохраняют существующую авторизацию с новым access-токеном при прежнем
+ * refresh-токене ({@code reuseRefreshTokens}), как refresh_token grant.
+ * <p>
+ * Нужна PostgreSQL со схемой приложения: {@code -Dbenchmark.jdbc.url}, {@code .username},
+ * {@code .password} (по умолчанию {@code jdbc:postgresql://localhost:5432/auth}).
+ * Счётчик {@code queries} показывает выполненные запросы.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AuthorizationSaveBenchmark {
+
+    private static final int AUTHORIZATIONS = 1_000;
+    private static final String PRINCIPAL_PREFIX = "benchmark.save.";
+    private static final AuthorizationGrantType OTP_GRANT =
+            new AuthorizationGrantType("urn:ietf:params:oauth:grant-type:otp");
+
+    private final LongAdder statements = new LongAdder();
+    private final List<OAuth2Authorization> issued = new ArrayList<>();
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private RegisteredClient registeredClient;
+    private OAuth2AuthorizationService readBeforeWrite;
+    private OAuth2AuthorizationService upsert;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class QueryCounter {
+        public long queries;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        DriverManagerDataSource target = new DriverManagerDataSource(
+                System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/auth"),
+                System.getProperty("benchmark.jdbc.username", "postgres"),
+                System.getProperty("benchmark.jdbc.password", "postgres"));
+        dataSource = new SingleConnectionDataSource(countingConnection(target.getConnection()), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        registeredClient = RegisteredClient.withId(UUID.randomUUID().toString())
+                .clientId("benchmark-client")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(OTP_GRANT)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .scope("openid")
+                .build();
+        InMemoryRegisteredClientRepository clients = new InMemoryRegisteredClientRepository(registeredClient);
+        // Атрибуты и метаданные могут храниться в bytea, поэтому обоим сервисам нужны мапперы приложения
+        AuthorizationRowMapper rowMapper = new AuthorizationRowMapper(clients);
+        AuthorizationParametersMapper parametersMapper = new AuthorizationParametersMapper(
+                new JsonAuthorizationAttributeCodec(rowMapper.objectMapper()),
+                AuthorizationParametersMapper.binaryColumns(jdbcTemplate));
+        JdbcOAuth2AuthorizationService library = new JdbcOAuth2AuthorizationService(jdbcTemplate, clients);
+        library.setAuthorizationRowMapper(rowMapper);
+        library.setAuthorizationParametersMapper(parametersMapper);
+        readBeforeWrite = library;
+        DigestJdbcOAuth2AuthorizationService digest = new DigestJdbcOAuth2AuthorizationService(jdbcTemplate, clients);
+        digest.setAuthorizationRowMapper(rowMapper);
+        digest.setAuthorizationParametersMapper(parametersMapper);
+        upsert = digest;
+
+        deleteAuthorizations();
+        for (int i = 0; i < AUTHORIZATIONS; i++) {
+            OAuth2Authorization authorization = newAuthorization();
+            upsert.save(authorization);
+            issued.add(authorization);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteAuthorizations();
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public void otpGrantReadBeforeWrite(QueryCounter counter) {
+        save(readBeforeWrite, newAuthorization(), counter);
+    }
+
+    @Benchmark
+    public void otpGrantUpsert(QueryCounter counter) {
+        save(upsert, newAuthorization(), counter);
+    }
+
+    @Benchmark
+    public void refreshGrantReadBeforeWrite(QueryCounter counter) {
+        save(readBeforeWrite, rotateAccessToken(), counter);
+    }
+
+    @Benchmark
+    public void refreshGrantUpsert(QueryCounter counter) {
+        save(upsert, rotateAccessToken(), counter);
+    }
+
+    private void save(OAuth2AuthorizationService service, OAuth2Authorization authorization, QueryCounter counter) {
+        long before = statements.sum();
+        service.save(authorization);
+        counter.queries += statements.sum() - before;
+    }
+
+    private OAuth2Authorization newAuthorization() {
+        Instant now = Instant.now();
+        return OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(UUID.randomUUID().toString())
+                .principalName(PRINCIPAL_PREFIX + UUID.randomUUID())
+                .authorizationGrantType(OTP_GRANT)
+                .authorizedScopes(Set.of("openid"))
+                .token(accessToken(now))
+                .refreshToken(new OAuth2RefreshToken(UUID.randomUUID().toString(), now, now.plus(Duration.ofDays(30))))
+                .build();
+    }
+
+    private OAuth2Authorization rotateAccessToken() {
+        int index = ThreadLocalRandom.current().nextInt(AUTHORIZATIONS);
+        OAuth2Authorization rotated = OAuth2Authorization.from(issued.get(index))
+                .token(accessToken(Instant.now()))
+                .build();
+        issued.set(index, rotated);
+        return rotated;
+    }
+
+    private static OAuth2AccessToken accessToken(Instant now) {
+        return new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, UUID.randomUUID().toString(),
+                now, now.plus(Duration.ofHours(1)), Set.of("openid"));
+    }
+
+    private void deleteAuthorizations() {
+        jdbcTemplate.update("DELETE FROM oauth2_authorization WHERE principal_name LIKE ?", PRINCIPAL_PREFIX + "%");
+    }
+
+    private Connection countingConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")) {
+                        statements.increment();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,166 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.config.OtpAuthCustomizer;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.OtpAuthenticationToken;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.StatelessOtpAuthorizationService;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccount;
+
+/**
+ * Сохранение авторизации OTP grant в режимах {@code stored} и {@code stateless}: стоимость подготовки
+ * параметров строки и объём записи на вход. Объём (сумма значений колонок) выводится при подготовке:
+ * {@code ./gradlew jmh}. Задержку /oauth2/token (p99) показывает метрика {@code http.server.requests}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatelessOtpAuthorizationBenchmark {
+
+    @Param({"stored", "stateless"})
+    public String mode;
+
+    private OAuth2AuthorizationService authorizationService;
+    private CapturingAuthorizationService storage;
+    private AuthorizationParametersMapper parametersMapper;
+    private OAuth2Authorization authorization;
+
+    @Setup
+    public void setUp() throws Exception {
+        RegisteredClient client = RegisteredClient.withId("benchmark-client")
+                .clientId("benchmark-client")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .scope("openid")
+                .build();
+        InMemoryRegisteredClientRepository clients = new InMemoryRegisteredClientRepository(client);
+        AuthorizationRowMapper rowMapper = new AuthorizationRowMapper(clients);
+        new OtpAuthCustomizer().customize(rowMapper);
+        parametersMapper = new AuthorizationParametersMapper(
+                new JsonAuthorizationAttributeCodec(rowMapper.objectMapper()));
+
+        storage = new CapturingAuthorizationService();
+        authorizationService = mode.equals("stored") ? storage
+                : new StatelessOtpAuthorizationService(storage, clients,
+                        email -> Optional.of(new UserAccount(email, Set.of("ROLE_USER"), true, true)), null);
+
+        Instant now = Instant.now();
+        // Те же типы коллекций, что в claims от JwtGenerator и jwtTokenCustomizer
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", "benchmark.user@example.com");
+        claims.put("aud", Collections.singletonList("benchmark-client"));
+        claims.put("nbf", now);
+        claims.put("scope", new HashSet<>(Set.of("openid")));
+        claims.put("iss", URI.create("http://localhost:9100").toURL());
+        claims.put("exp", now.plusSeconds(3600));
+        claims.put("iat", now);
+        claims.put("jti", UUID.randomUUID().toString());
+        claims.put("authorities", new HashSet<>(Set.of("ROLE_USER")));
+        // Подписанный RS256 JWT с такими claims занимает около 800 символов
+        String tokenValue = "e".repeat(800);
+        Jwt jwt = new Jwt(tokenValue, now, now.plusSeconds(3600), Map.of("alg", "RS256"), claims);
+        authorization = OAuth2Authorization.withRegisteredClient(client)
+                .principalName("benchmark.user@example.com")
+                .authorizationGrantType(new AuthorizationGrantType("urn:ietf:params:oauth:grant-type:otp"))
+                .authorizedScopes(client.getScopes())
+                .attribute(Principal.class.getName(), new OtpAuthenticationToken("benchmark.user@example.com", null,
+                        List.of(new SimpleGrantedAuthority("ROLE_USER"))))
+                .token(jwt, metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claims))
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, tokenValue,
+                        now, now.plusSeconds(3600)))
+                .refreshToken(new OAuth2RefreshToken(UUID.randomUUID().toString().repeat(2),
+                        now, now.plusSeconds(30L * 24 * 3600)))
+                .build();
+
+        authorizationService.save(authorization);
+        System.out.printf("Bytes written per login (%s): %d%n", mode, bytesWritten(storage.saved));
+    }
+
+    @Benchmark
+    public List<SqlParameterValue> saveParameters() {
+        authorizationService.save(authorization);
+        return parametersMapper.apply(storage.saved);
+    }
+
+    private int bytesWritten(OAuth2Authorization saved) {
+        int bytes = 0;
+        for (SqlParameterValue parameter : parametersMapper.apply(saved)) {
+            Object value = parameter.getValue();
+            if (value instanceof byte[] array) {
+                bytes += array.length;
+            } else if (value instanceof String string) {
+                bytes += string.getBytes(StandardCharsets.UTF_8).length;
+            } else if (value != null) {
+                bytes += Long.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Запоминает сохранённую авторизацию вместо записи в базу.
+     */
+    private static final class CapturingAuthorizationService implements OAuth2AuthorizationService {
+
+        private OAuth2Authorization saved;
+
+        @Override
+        public void save(OAuth2Authorization authorization) {
+            this.saved = authorization;
+        }
+
+        @Override
+        public void remove(OAuth2Authorization authorization) {
+            this.saved = null;
+        }
+
+        @Override
+        public OAuth2Authorization findById(String id) {
+            return saved;
+        }
+
+        @Override
+        public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+            return saved;
+        }
+    }
+}
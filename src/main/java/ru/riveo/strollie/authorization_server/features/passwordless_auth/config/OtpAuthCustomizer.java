@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.security.jackson2.SecurityJackson2Modules;
 import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.jackson2.OAuth2AuthorizationServerJackson2Module;
 import org.springframework.stereotype.Component;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.OtpAuthenticationToken;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.OtpAuthenticationTokenMixin;
@@ -21,6 +22,9 @@ public class OtpAuthCustomizer implements OAuth2AuthorizationServiceCustomizer {
         ClassLoader classLoader = JdbcOAuth2AuthorizationService.class.getClassLoader();
         List<Module> securityModules = SecurityJackson2Modules.getModules(classLoader);
         objectMapper.registerModules(securityModules);
+        // Модуль сервера авторизации разрешает типы из claims токенов (HashSet, Instant и др.);
+        // без него старые строки с такими claims не читаются
+        objectMapper.registerModule(new OAuth2AuthorizationServerJackson2Module());
 
         // Добавляем Mixin ТОЛЬКО для нашей фичи
         objectMapper.addMixIn(OtpAuthenticationToken.class, OtpAuthenticationTokenMixin.class);
@@ -1,14 +1,21 @@
 package ru.riveo.strollie.authorization_server.features.passwordless_auth.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.OAuth2OtpAuthenticationProvider;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.OtpAuthenticationConverter;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.OtpAuthenticationProvider;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.StatelessOtpAuthorizationService;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccountFinder;
-import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpRepository;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.rate_limit.OtpRateLimiter;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpCodeStrategy;
+import ru.riveo.strollie.authorization_server.infrastructure.security.AccessTokenPersistenceProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.security.AccessTokenRevocations;
+import ru.riveo.strollie.authorization_server.infrastructure.security.OAuth2AuthorizationServiceDecorator;
 
 @Configuration
 public class OtpAuthenticationConfig {
@@ -22,9 +29,26 @@ public class OtpAuthenticationConfig {
     public OAuth2OtpAuthenticationProvider oAuth2OtpAuthenticationProvider(
             OAuth2TokenGenerator<?> tokenGenerator,
             OAuth2AuthorizationService authorizationService,
-            OtpRepository otpRepository,
-            UserAccountFinder userAccountFinder) {
-        OtpAuthenticationProvider internalOtpProvider = new OtpAuthenticationProvider(otpRepository, userAccountFinder);
-        return new OAuth2OtpAuthenticationProvider(tokenGenerator, authorizationService, internalOtpProvider);
+            OtpCodeStrategy codeStrategy,
+            UserAccountFinder userAccountFinder,
+            OtpRateLimiter rateLimiter) {
+        OtpAuthenticationProvider internalOtpProvider = new OtpAuthenticationProvider(codeStrategy, userAccountFinder);
+        return new OAuth2OtpAuthenticationProvider(tokenGenerator, authorizationService, internalOtpProvider,
+                rateLimiter);
+    }
+
+    /**
+     * Авторизации OTP grant без access-токенов: хранится только то, что нужно refresh-токену.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.authorization.access-tokens", name = "mode", havingValue = "stateless")
+    public OAuth2AuthorizationServiceDecorator statelessOtpAuthorizationServiceDecorator(
+            RegisteredClientRepository registeredClientRepository,
+            UserAccountFinder userAccountFinder,
+            AccessTokenPersistenceProperties accessTokenProperties,
+            AccessTokenRevocations revocations) {
+        AccessTokenRevocations revocationList = accessTokenProperties.revocationCheck() ? revocations : null;
+        return authorizationService -> new StatelessOtpAuthorizationService(authorizationService,
+                registeredClientRepository, userAccountFinder, revocationList);
     }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.config;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.OtpAuthenticationToken;
+import ru.riveo.strollie.authorization_server.infrastructure.security.BinaryAttributeType;
+
+/**
+ * Бинарное представление {@link OtpAuthenticationToken} в атрибуте {@code java.security.Principal}
+ * авторизации: email, код (после входа - null) и роли вместо JSON с {@code @class} у каждой роли.
+ */
+@Component
+public class OtpAuthenticationTokenBinaryType implements BinaryAttributeType<OtpAuthenticationToken> {
+
+    @Override
+    public String name() {
+        return "otp";
+    }
+
+    @Override
+    public Class<OtpAuthenticationToken> type() {
+        return OtpAuthenticationToken.class;
+    }
+
+    @Override
+    public boolean supports(OtpAuthenticationToken token) {
+        return token.getDetails() == null && token.getAuthorities().stream()
+                .allMatch(authority -> authority.getClass() == SimpleGrantedAuthority.class);
+    }
+
+    @Override
+    public void write(OtpAuthenticationToken token, DataOutput out) throws IOException {
+        out.writeUTF(token.getEmail());
+        out.writeBoolean(token.getOtp() != null);
+        if (token.getOtp() != null) {
+            out.writeUTF(token.getOtp());
+        }
+        out.writeBoolean(token.isAuthenticated());
+        out.writeShort(token.getAuthorities().size());
+        for (GrantedAuthority authority : token.getAuthorities()) {
+            out.writeUTF(authority.getAuthority());
+        }
+    }
+
+    @Override
+    public OtpAuthenticationToken read(DataInput in) throws IOException {
+        String email = in.readUTF();
+        String otp = in.readBoolean() ? in.readUTF() : null;
+        boolean authenticated = in.readBoolean();
+        int count = in.readUnsignedShort();
+        List<GrantedAuthority> authorities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            authorities.add(new SimpleGrantedAuthority(in.readUTF()));
+        }
+        return authenticated
+                ? new OtpAuthenticationToken(email, otp, authorities)
+                : new OtpAuthenticationToken(email, otp);
+    }
+}
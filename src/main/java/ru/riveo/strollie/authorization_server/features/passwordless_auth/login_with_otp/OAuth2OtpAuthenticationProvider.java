@@ -3,6 +3,8 @@ package ru.riveo.strollie.authorization_server.features.passwordless_auth.login_
 import java.security.Principal;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.core.Authentication;
@@ -26,9 +28,12 @@ import org.springframework.security.oauth2.server.authorization.context.Authoriz
 import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.rate_limit.OtpRateLimiter;
+import ru.riveo.strollie.authorization_server.shared.exception.OAuth2RateLimitExceededException;
 
 /**
  * Провайдер аутентификации, который преобразует OtpAuthenticationToken
@@ -38,12 +43,13 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class OAuth2OtpAuthenticationProvider implements AuthenticationProvider {
 
-    private static final String OTP_GRANT_TYPE = "urn:ietf:params:oauth:grant-type:otp"; // Используем URN формат
+    static final String OTP_GRANT_TYPE = "urn:ietf:params:oauth:grant-type:otp"; // Используем URN формат
                                                                                          // согласно RFC 6749
 
     private final OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator;
     private final OAuth2AuthorizationService authorizationService;
     private final OtpAuthenticationProvider otpAuthenticationProvider;
+    private final OtpRateLimiter rateLimiter;
 
     @Override
     public Authentication authenticate(Authentication authentication) throws AuthenticationException {
@@ -66,8 +72,19 @@ public class OAuth2OtpAuthenticationProvider implements AuthenticationProvider {
             throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_CLIENT);
         }
 
-        // 2. Делегируем проверку OTP стандартному OtpAuthenticationProvider
         OtpAuthenticationToken otpAuthentication = (OtpAuthenticationToken) authentication;
+
+        // Лимиты проверяются до проверки кода, чтобы перебор не тратил попытки и не нагружал хранилище
+        String clientAddress = otpAuthentication.getDetails() instanceof WebAuthenticationDetails details
+                ? details.getRemoteAddress() : null;
+        long retryAfterMillis = rateLimiter.tryAcquire(otpAuthentication.getEmail(), clientAddress,
+                registeredClient.getClientId());
+        if (retryAfterMillis > 0) {
+            log.debug("OTP grant rate limited for client {}", registeredClient.getClientId());
+            throw new OAuth2RateLimitExceededException(TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999));
+        }
+
+        // 2. Делегируем проверку OTP стандартному OtpAuthenticationProvider
         Authentication userAuthentication;
 
         try {
@@ -92,10 +109,20 @@ public class OAuth2OtpAuthenticationProvider implements AuthenticationProvider {
         log.debug("OTP authentication successful for user: {}", userAuthentication.getName());
 
         // 3. Создаем токены с использованием стандартного OAuth2 механизма
+        // Id авторизации известен заранее, чтобы access-токен мог на неё ссылаться
+        OAuth2Authorization pendingAuthorization = OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(UUID.randomUUID().toString())
+                .principalName(userAuthentication.getName())
+                .authorizationGrantType(new AuthorizationGrantType(OTP_GRANT_TYPE))
+                .authorizedScopes(registeredClient.getScopes())
+                .attribute(Principal.class.getName(), userAuthentication)
+                .build();
+
         // Создаем Access Token
         OAuth2TokenContext tokenContext = DefaultOAuth2TokenContext.builder()
                 .registeredClient(registeredClient)
                 .principal(userAuthentication)
+                .authorization(pendingAuthorization)
                 .authorizationServerContext(AuthorizationServerContextHolder.getContext())
                 .authorizedScopes(registeredClient.getScopes())
                 .tokenType(OAuth2TokenType.ACCESS_TOKEN)
@@ -123,6 +150,7 @@ public class OAuth2OtpAuthenticationProvider implements AuthenticationProvider {
             DefaultOAuth2TokenContext refreshTokenContext = DefaultOAuth2TokenContext.builder()
                     .registeredClient(registeredClient)
                     .principal(userAuthentication)
+                    .authorization(pendingAuthorization)
                     .authorizationServerContext(AuthorizationServerContextHolder.getContext())
                     .tokenType(OAuth2TokenType.REFRESH_TOKEN)
                     .authorizationGrantType(new AuthorizationGrantType(OTP_GRANT_TYPE))
@@ -137,10 +165,7 @@ public class OAuth2OtpAuthenticationProvider implements AuthenticationProvider {
         }
 
         // Сохраняем авторизацию
-        OAuth2Authorization.Builder authorizationBuilder = OAuth2Authorization.withRegisteredClient(registeredClient)
-                .principalName(userAuthentication.getName())
-                .authorizationGrantType(new AuthorizationGrantType(OTP_GRANT_TYPE))
-                .attribute(Principal.class.getName(), userAuthentication);
+        OAuth2Authorization.Builder authorizationBuilder = OAuth2Authorization.from(pendingAuthorization);
 
         // Сохраняем и JWT, и AccessToken
         authorizationBuilder
@@ -6,6 +6,7 @@ import org.springframework.security.oauth2.core.OAuth2Error;
 import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
 import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
 import org.springframework.security.web.authentication.AuthenticationConverter;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.util.StringUtils;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -46,6 +47,9 @@ public class OtpAuthenticationConverter implements AuthenticationConverter {
         }
 
         // Создаем токен аутентификации с email и otp
-        return new OtpAuthenticationToken(email, otp);
+        OtpAuthenticationToken authentication = new OtpAuthenticationToken(email, otp);
+        // Адрес клиента нужен для лимита запросов по IP
+        authentication.setDetails(new WebAuthenticationDetails(request));
+        return authentication;
     }
 }
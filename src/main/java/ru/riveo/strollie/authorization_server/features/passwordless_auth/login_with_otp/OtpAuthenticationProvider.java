@@ -10,7 +10,7 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import lombok.RequiredArgsConstructor;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccount;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccountFinder;
-import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpRepository;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpCodeStrategy;
 
 import java.util.stream.Collectors;
 
@@ -18,7 +18,7 @@ import java.util.stream.Collectors;
 @Slf4j
 public class OtpAuthenticationProvider implements AuthenticationProvider {
 
-    private final OtpRepository otpRepository;
+    private final OtpCodeStrategy codeStrategy;
     private final UserAccountFinder userAccountFinder;
 
 
@@ -31,31 +31,14 @@ public class OtpAuthenticationProvider implements AuthenticationProvider {
         String email = otpToken.getEmail();
         String otp = otpToken.getOtp();
 
-        String storedOtp = otpRepository.findOtp(email).orElse(null);
-
-        if (storedOtp == null) {
-            throw new BadCredentialsException("Invalid or expired OTP");
+        // Проверка, декремент попыток и очистка выполняются одной атомарной операцией
+        switch (codeStrategy.verifyAndConsume(email, otp)) {
+            case VALID -> log.debug("OTP verified for {}", email);
+            case MISSING -> throw new BadCredentialsException("Invalid or expired OTP");
+            case EXHAUSTED -> throw new BadCredentialsException("Exceeded maximum attempts");
+            case INVALID -> throw new BadCredentialsException("Invalid OTP");
         }
 
-        // Используем атомарную операцию для уменьшения попыток и получения оставшегося
-        // количества
-        long remainingAttempts = otpRepository.decrementAndGetAttempts(email);
-
-        if (remainingAttempts < 0) {
-            cleanupOtpData(email);
-            throw new BadCredentialsException("Exceeded maximum attempts");
-        }
-
-        if (!storedOtp.equals(otp)) {
-            if (remainingAttempts <= 0) {
-                cleanupOtpData(email);
-            }
-            throw new BadCredentialsException("Invalid OTP");
-        }
-
-        // OTP is valid, clean up
-        cleanupOtpData(email);
-
         UserAccount userAccount = userAccountFinder.findByEmail(email)
                 .orElseThrow(() -> {
                     log.warn("Authentication successful for OTP, but user not found: {}", email);
@@ -76,12 +59,6 @@ public class OtpAuthenticationProvider implements AuthenticationProvider {
         );
     }
 
-    private void cleanupOtpData(String email) {
-        otpRepository.deleteOtp(email);
-        otpRepository.deleteAttempts(email);
-        otpRepository.clearRateLimit(email);
-    }
-
     @Override
     public boolean supports(Class<?> authentication) {
         return OtpAuthenticationToken.class.isAssignableFrom(authentication);
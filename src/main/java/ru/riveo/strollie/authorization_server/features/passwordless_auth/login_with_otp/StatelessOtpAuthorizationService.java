@@ -0,0 +1,193 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.Assert;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccount;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccountFinder;
+import ru.riveo.strollie.authorization_server.infrastructure.security.AccessTokenRevocations;
+
+/**
+ * Хранилище авторизаций OTP grant без access-токенов.
+ * <p>
+ * Ресурсные серверы проверяют JWT по подписи, поэтому сохраняется только то, что нужно обмену
+ * и отзыву refresh-токена: SHA-256 дайджест refresh-токена вместо значения, имя принципала, scopes
+ * и сроки действия. Access-токен, его claims и сериализованный принципал не пишутся. При обмене
+ * refresh-токена принципал с актуальными ролями собирается заново через {@link UserAccountFinder};
+ * заблокированный или удалённый пользователь обменять токен не может.
+ * <p>
+ * Отзыв refresh-токена или удаление авторизации заносит её id в {@link AccessTokenRevocations},
+ * если включена проверка отзыва. Интроспекция и userinfo для таких access-токенов недоступны.
+ * Авторизации других grant и DPoP-привязанные авторизации сохраняются как есть.
+ */
+@Slf4j
+public class StatelessOtpAuthorizationService implements OAuth2AuthorizationService {
+
+    private final OAuth2AuthorizationService delegate;
+    private final RegisteredClientRepository registeredClientRepository;
+    private final UserAccountFinder userAccountFinder;
+    private final AccessTokenRevocations revocations;
+
+    /**
+     * @param revocations Список отозванных авторизаций или {@code null}, если проверка отзыва выключена.
+     */
+    public StatelessOtpAuthorizationService(OAuth2AuthorizationService delegate,
+                                            RegisteredClientRepository registeredClientRepository,
+                                            UserAccountFinder userAccountFinder,
+                                            AccessTokenRevocations revocations) {
+        this.delegate = delegate;
+        this.registeredClientRepository = registeredClientRepository;
+        this.userAccountFinder = userAccountFinder;
+        this.revocations = revocations;
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        // Без принципала авторизация уже сокращена (прочитана через findById)
+        if (!isOtpGrant(authorization) || isStateless(authorization) || isDPoPBound(authorization)) {
+            delegate.save(authorization);
+            return;
+        }
+        OAuth2Authorization.Token<OAuth2RefreshToken> refreshToken = authorization.getRefreshToken();
+        if (refreshToken != null && refreshToken.isInvalidated()) {
+            revoke(authorization);
+        }
+        delegate.save(stateless(authorization));
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        if (isOtpGrant(authorization)) {
+            revoke(authorization);
+        }
+        delegate.remove(authorization);
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return delegate.findById(id);
+    }
+
+    /**
+     * Refresh-токен ищется сначала по дайджесту, затем как есть (авторизации других grant и DPoP).
+     * JWT не бывает refresh-токеном, поэтому поиск без типа (интроспекция и отзыв access-токена
+     * без подсказки) обходится одним запросом.
+     * <p>
+     * Сокращённая авторизация находится только по дайджесту. Иначе хранимый дайджест, предъявленный
+     * как токен, нашёл бы авторизацию без принципала.
+     */
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        Assert.hasText(token, "token cannot be empty");
+        if (OAuth2TokenType.REFRESH_TOKEN.equals(tokenType) || tokenType == null && !isJwt(token)) {
+            OAuth2Authorization stored = delegate.findByToken(digest(token), OAuth2TokenType.REFRESH_TOKEN);
+            if (stored != null && isOtpGrant(stored) && isStateless(stored)) {
+                return restore(stored, token);
+            }
+        }
+        OAuth2Authorization authorization = delegate.findByToken(token, tokenType);
+        if (authorization != null && isOtpGrant(authorization) && isStateless(authorization)) {
+            log.debug("Token matched the stored digest of stateless authorization {}", authorization.getId());
+            return null;
+        }
+        return authorization;
+    }
+
+    /**
+     * Авторизация без access-токена и атрибутов; refresh-токен заменён своим дайджестом.
+     */
+    private OAuth2Authorization stateless(OAuth2Authorization authorization) {
+        RegisteredClient registeredClient = registeredClientRepository.findById(authorization.getRegisteredClientId());
+        Assert.notNull(registeredClient, "registeredClient cannot be null");
+        OAuth2Authorization.Builder builder = OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(authorization.getId())
+                .principalName(authorization.getPrincipalName())
+                .authorizationGrantType(authorization.getAuthorizationGrantType())
+                .authorizedScopes(authorization.getAuthorizedScopes());
+        OAuth2Authorization.Token<OAuth2RefreshToken> refreshToken = authorization.getRefreshToken();
+        if (refreshToken != null) {
+            OAuth2RefreshToken token = refreshToken.getToken();
+            Map<String, Object> metadata = refreshToken.getMetadata();
+            builder.token(new OAuth2RefreshToken(digest(token.getTokenValue()), token.getIssuedAt(),
+                    token.getExpiresAt()), m -> m.putAll(metadata));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Возвращает предъявленное значение refresh-токена и принципала, нужного генератору токенов.
+     */
+    private OAuth2Authorization restore(OAuth2Authorization stored, String token) {
+        UserAccount account = userAccountFinder.findByEmail(stored.getPrincipalName()).orElse(null);
+        if (account == null || !account.isEnabled() || !account.isAccountNonLocked()) {
+            log.debug("Refresh token rejected: account {} is missing, disabled or locked", stored.getPrincipalName());
+            return null;
+        }
+        OtpAuthenticationToken principal = new OtpAuthenticationToken(account.email(), null,
+                account.roles().stream().map(SimpleGrantedAuthority::new).collect(Collectors.toSet()));
+        OAuth2Authorization.Token<OAuth2RefreshToken> refreshToken = stored.getRefreshToken();
+        Map<String, Object> metadata = refreshToken.getMetadata();
+        return OAuth2Authorization.from(stored)
+                .token(new OAuth2RefreshToken(token, refreshToken.getToken().getIssuedAt(),
+                        refreshToken.getToken().getExpiresAt()), m -> m.putAll(metadata))
+                .attribute(Principal.class.getName(), principal)
+                .build();
+    }
+
+    private void revoke(OAuth2Authorization authorization) {
+        if (revocations == null) {
+            return;
+        }
+        RegisteredClient registeredClient = registeredClientRepository.findById(authorization.getRegisteredClientId());
+        if (registeredClient != null) {
+            revocations.revoke(authorization.getId(), registeredClient.getTokenSettings().getAccessTokenTimeToLive());
+        }
+    }
+
+    private static boolean isStateless(OAuth2Authorization authorization) {
+        return authorization.getAttribute(Principal.class.getName()) == null;
+    }
+
+    private static boolean isJwt(String token) {
+        return token.indexOf('.') >= 0;
+    }
+
+    private static boolean isOtpGrant(OAuth2Authorization authorization) {
+        return OAuth2OtpAuthenticationProvider.OTP_GRANT_TYPE.equals(authorization.getAuthorizationGrantType().getValue());
+    }
+
+    /**
+     * Обмен refresh-токена публичного клиента с DPoP сверяет ключ с claims access-токена.
+     */
+    private static boolean isDPoPBound(OAuth2Authorization authorization) {
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
+        return accessToken != null && accessToken.getClaims() != null && accessToken.getClaims().containsKey("cnf");
+    }
+
+    private static String digest(String token) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
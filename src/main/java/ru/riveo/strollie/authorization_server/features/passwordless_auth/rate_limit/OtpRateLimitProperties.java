@@ -0,0 +1,47 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.rate_limit;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Лимиты запросов OTP. Незаданный лимит отключает соответствующее измерение.
+ *
+ * @param enabled       Включить ограничение частоты.
+ * @param email         Лимит на один email.
+ * @param clientAddress Лимит на один IP-адрес клиента.
+ * @param client        Лимит на один OAuth-клиент (только обмен OTP на токены).
+ * @param nearCacheSize Сколько заблокированных ключей помнить в памяти узла.
+ */
+@ConfigurationProperties(prefix = "app.otp.rate-limit")
+public record OtpRateLimitProperties(
+        @DefaultValue("false") boolean enabled,
+        Limit email,
+        Limit clientAddress,
+        Limit client,
+        @DefaultValue("100000") long nearCacheSize) {
+
+    /**
+     * @param requests Число запросов за период.
+     * @param period   Период.
+     * @param burst    Сколько запросов можно выполнить подряд; 0 - весь лимит периода.
+     */
+    public record Limit(long requests, Duration period, @DefaultValue("0") long burst) {
+
+        /**
+         * Интервал между запросами при равномерном потоке, мс.
+         */
+        public long emissionIntervalMillis() {
+            return Math.max(1, period.toMillis() / requests);
+        }
+
+        /**
+         * Допустимое опережение графика, мс: сколько запросов сверх равномерного потока можно выполнить сразу.
+         */
+        public long toleranceMillis() {
+            long effectiveBurst = burst > 0 ? burst : requests;
+            return emissionIntervalMillis() * (effectiveBurst - 1);
+        }
+    }
+}
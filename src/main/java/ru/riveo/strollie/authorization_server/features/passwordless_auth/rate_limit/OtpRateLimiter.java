@@ -0,0 +1,17 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.rate_limit;
+
+/**
+ * Ограничение частоты запросов OTP и обменов OTP на токены.
+ * <p>
+ * Запрос учитывается сразу во всех переданных измерениях (email, адрес клиента,
+ * OAuth-клиент) и разрешается, только если ни одно из них не исчерпано.
+ * Пустое ({@code null}) значение исключает соответствующее измерение. Email сравнивается
+ * без учёта регистра и окружающих пробелов.
+ */
+public interface OtpRateLimiter {
+
+    /**
+     * @return 0, если запрос разрешён, иначе через сколько миллисекунд его можно повторить
+     */
+    long tryAcquire(String email, String clientAddress, String clientId);
+}
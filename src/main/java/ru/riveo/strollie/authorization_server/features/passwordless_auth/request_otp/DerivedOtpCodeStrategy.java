@@ -0,0 +1,146 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Код вычисляется как HMAC-SHA256 от email, номера временного окна и поколения,
+ * по аналогии с TOTP, и при проверке пересчитывается, а не читается из Redis.
+ * <p>
+ * При выдаче в Redis пишется только отметка выдачи с кулдауном; счётчик ошибок
+ * появляется при первой неудачной попытке. Длина окна равна времени жизни кода,
+ * при проверке принимаются текущее и предыдущее окна, а сам срок жизни
+ * ограничивает TTL отметки выдачи.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.otp", name = "strategy", havingValue = "derived")
+class DerivedOtpCodeStrategy implements OtpCodeStrategy {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_LENGTH = 32;
+    /**
+     * Сколько раз пересчитывать код, если параллельная проверка сменила поколение.
+     */
+    private static final int MAX_GENERATION_RACES = 3;
+
+    private final DerivedOtpRepository repository;
+    private final OtpGenerator otpGenerator;
+    private final Clock clock;
+    private final ThreadLocal<Mac> mac;
+
+    private final long lifetimeSeconds;
+    private final long windowMillis;
+    private final int maxAttempts;
+    private final long resendCooldownSeconds;
+
+    @Autowired
+    DerivedOtpCodeStrategy(DerivedOtpRepository repository,
+                           OtpGenerator otpGenerator,
+                           OtpDerivationProperties properties,
+                           @Value("${app.otp.lifetime-minutes:5}") long otpLifetimeMinutes,
+                           @Value("${app.otp.max-attempts:3}") int maxAttempts,
+                           @Value("${app.otp.resend-cooldown-seconds:60}") long resendCooldownSeconds) {
+        this(repository, otpGenerator, properties, otpLifetimeMinutes, maxAttempts, resendCooldownSeconds,
+                Clock.systemUTC());
+    }
+
+    DerivedOtpCodeStrategy(DerivedOtpRepository repository, OtpGenerator otpGenerator,
+                           OtpDerivationProperties properties, long otpLifetimeMinutes, int maxAttempts,
+                           long resendCooldownSeconds, Clock clock) {
+        if (properties.secret() == null || properties.secret().length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException(
+                    "app.otp.derived.secret must be at least " + MIN_SECRET_LENGTH + " characters long");
+        }
+        if (otpGenerator.codeSpace() == 0) {
+            throw new IllegalStateException("OTP length is too large for derived codes");
+        }
+        this.repository = repository;
+        this.otpGenerator = otpGenerator;
+        this.clock = clock;
+        this.lifetimeSeconds = TimeUnit.MINUTES.toSeconds(otpLifetimeMinutes);
+        this.windowMillis = TimeUnit.MINUTES.toMillis(otpLifetimeMinutes);
+        this.maxAttempts = maxAttempts;
+        this.resendCooldownSeconds = resendCooldownSeconds;
+
+        SecretKeySpec key = new SecretKeySpec(properties.secret().getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> newMac(key));
+    }
+
+    @Override
+    public Optional<String> issue(String email) {
+        long generation = repository.issue(email, resendCooldownSeconds, lifetimeSeconds);
+        if (generation < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(derive(email, currentWindow(), generation));
+    }
+
+    @Override
+    public String reissue(String email) {
+        long generation = repository.issue(email, 0, lifetimeSeconds);
+        return derive(email, currentWindow(), generation);
+    }
+
+    @Override
+    public OtpVerificationResult verifyAndConsume(String email, String otp) {
+        for (int i = 0; i < MAX_GENERATION_RACES; i++) {
+            long generation = repository.generation(email);
+            long window = currentWindow();
+            // Код, выданный в конце окна, должен проверяться и после его смены
+            boolean matched = matches(otp, derive(email, window, generation))
+                    | matches(otp, derive(email, window - 1, generation));
+            Optional<OtpVerificationResult> result =
+                    repository.consume(email, generation, matched, maxAttempts, lifetimeSeconds);
+            if (result.isPresent()) {
+                return result.get();
+            }
+        }
+        // Поколение всё время меняется параллельными проверками - код уже погашен
+        return OtpVerificationResult.MISSING;
+    }
+
+    String derive(String email, long window, long generation) {
+        byte[] emailBytes = email.getBytes(StandardCharsets.UTF_8);
+        byte[] message = ByteBuffer.allocate(emailBytes.length + 2 * Long.BYTES)
+                .put(emailBytes)
+                .putLong(window)
+                .putLong(generation)
+                .array();
+        byte[] digest = mac.get().doFinal(message);
+        long value = ByteBuffer.wrap(digest).getLong() & Long.MAX_VALUE;
+        return otpGenerator.encode(value % otpGenerator.codeSpace());
+    }
+
+    private long currentWindow() {
+        return clock.millis() / windowMillis;
+    }
+
+    private static boolean matches(String submitted, String expected) {
+        // Сравнение за постоянное время, чтобы не раскрывать совпавший префикс
+        return MessageDigest.isEqual(submitted.getBytes(StandardCharsets.UTF_8),
+                expected.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+import java.util.Optional;
+
+/**
+ * Состояние OTP в стратегии {@code derived}: сам код не хранится.
+ * <p>
+ * Поколение - счётчик погашенных кодов email; оно входит в HMAC, поэтому погашение
+ * или исчерпание попыток делает недействительным код, выданный в том же окне.
+ */
+public interface DerivedOtpRepository {
+
+    /**
+     * Атомарно проверяет кулдаун и отмечает выдачу кода на время его жизни.
+     *
+     * @return текущее поколение или -1, если кулдаун ещё действует.
+     */
+    long issue(String email, long cooldownSeconds, long lifetimeSeconds);
+
+    /**
+     * Текущее поколение email; 0, если коды ещё не погашались.
+     */
+    long generation(String email);
+
+    /**
+     * Атомарно применяет результат сравнения, выполненного для поколения {@code generation}.
+     * Счётчик ошибок создаётся только при первой неудачной попытке.
+     *
+     * @return результат проверки или пустой результат, если поколение успело смениться.
+     */
+    Optional<OtpVerificationResult> consume(String email, long generation, boolean matched, int maxAttempts,
+                                            long lifetimeSeconds);
+}
@@ -0,0 +1,29 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+import java.util.Optional;
+
+/**
+ * Способ выдачи и проверки OTP.
+ * <p>
+ * Стратегия {@code stored} генерирует случайный код и хранит его в {@link OtpRepository};
+ * стратегия {@code derived} вычисляет код из HMAC и пересчитывает его при проверке.
+ */
+public interface OtpCodeStrategy {
+
+    /**
+     * Атомарно устанавливает кулдаун и выдаёт код одним вызовом хранилища.
+     *
+     * @return код для отправки пользователю или пустой результат, если кулдаун ещё действует.
+     */
+    Optional<String> issue(String email);
+
+    /**
+     * Выдаёт код, когда кулдаун уже установлен вызывающей стороной (асинхронная выдача).
+     */
+    String reissue(String email);
+
+    /**
+     * Атомарно проверяет код, учитывает попытку и при успехе погашает код.
+     */
+    OtpVerificationResult verifyAndConsume(String email, String otp);
+}
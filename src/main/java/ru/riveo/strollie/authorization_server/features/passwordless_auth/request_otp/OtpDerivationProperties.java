@@ -0,0 +1,12 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки стратегии {@code derived}.
+ *
+ * @param secret Общий для всех узлов секрет HMAC; не короче 32 символов.
+ */
+@ConfigurationProperties(prefix = "app.otp.derived")
+public record OtpDerivationProperties(String secret) {
+}
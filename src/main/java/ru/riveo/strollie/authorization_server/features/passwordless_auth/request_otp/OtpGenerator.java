@@ -1,22 +1,138 @@
 package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
 
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Service;
 
 @Service
-public class OtpGenerator {
+public class OtpGenerator implements DisposableBean {
 
-    private static final SecureRandom random = new SecureRandom();
-    private static final int OTP_LENGTH = 4;
+    /**
+     * Отдельный DRBG на поток: общий SecureRandom сериализует вызовы на своей блокировке.
+     */
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(OtpGenerator::newRandom);
 
+    private final char[] alphabet;
+    private final int length;
     /**
-     * Generates a random 4-digit OTP.
-     * 
-     * @return A string representing the 4-digit code.
+     * Число всех возможных кодов, если оно помещается в long; иначе 0 и символы выбираются по одному.
+     */
+    private final long codeSpace;
+
+    private final int poolSize;
+    private final Queue<String> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final Thread refiller;
+    private volatile boolean running = true;
+
+    public OtpGenerator(OtpGeneratorProperties properties) {
+        this.alphabet = properties.alphabet().toCharArray();
+        this.length = properties.length();
+        this.codeSpace = codeSpace(alphabet.length, length);
+        this.poolSize = properties.poolSize();
+        if (poolSize > 0) {
+            refiller = new Thread(this::refill, "otp-generator-refill");
+            refiller.setDaemon(true);
+            refiller.start();
+        } else {
+            refiller = null;
+        }
+    }
+
+    /**
+     * Generates a random OTP of the configured length and alphabet.
+     *
+     * @return A string representing the code.
      */
     public String generate() {
-        int number = random.nextInt((int) Math.pow(10, OTP_LENGTH));
-        return String.format("%0" + OTP_LENGTH + "d", number);
+        if (refiller == null) {
+            return newCode();
+        }
+        String code = pool.poll();
+        if (code == null) {
+            // Пул исчерпан всплеском запросов - не ждём фонового потока
+            LockSupport.unpark(refiller);
+            return newCode();
+        }
+        if (pooled.decrementAndGet() < poolSize / 2) {
+            LockSupport.unpark(refiller);
+        }
+        return code;
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (refiller != null) {
+            LockSupport.unpark(refiller);
+        }
+        pool.clear();
+    }
+
+    private String newCode() {
+        SecureRandom random = RANDOM.get();
+        if (codeSpace > 0) {
+            // Одно случайное число на весь код, разложенное по основанию алфавита
+            return encode(random.nextLong(codeSpace));
+        }
+        char[] code = new char[length];
+        for (int i = 0; i < length; i++) {
+            code[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+        return new String(code);
+    }
+
+    /**
+     * Число всех возможных кодов; 0, если оно не помещается в long.
+     */
+    long codeSpace() {
+        return codeSpace;
+    }
+
+    /**
+     * Раскладывает число из диапазона [0, codeSpace) в код по основанию алфавита.
+     */
+    String encode(long value) {
+        char[] code = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            code[i] = alphabet[(int) (value % alphabet.length)];
+            value /= alphabet.length;
+        }
+        return new String(code);
+    }
+
+    private void refill() {
+        while (running) {
+            while (running && pooled.get() < poolSize) {
+                pool.offer(newCode());
+                pooled.incrementAndGet();
+            }
+            LockSupport.park(this);
+        }
+    }
+
+    private static long codeSpace(int radix, int length) {
+        long space = 1;
+        for (int i = 0; i < length; i++) {
+            if (space > Long.MAX_VALUE / radix) {
+                return 0;
+            }
+            space *= radix;
+        }
+        return space;
+    }
+
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
     }
 }
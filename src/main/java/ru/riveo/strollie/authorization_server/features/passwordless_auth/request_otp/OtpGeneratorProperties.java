@@ -0,0 +1,30 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки генерации OTP.
+ *
+ * @param length   Длина кода.
+ * @param alphabet Символы, из которых составляется код.
+ * @param poolSize Размер пула заранее сгенерированных кодов; 0 - генерировать в потоке запроса.
+ */
+@ConfigurationProperties(prefix = "app.otp.generator")
+public record OtpGeneratorProperties(
+        @DefaultValue("4") int length,
+        @DefaultValue("0123456789") String alphabet,
+        @DefaultValue("0") int poolSize) {
+
+    public OtpGeneratorProperties {
+        if (length < 1) {
+            throw new IllegalArgumentException("OTP length must be positive");
+        }
+        if (alphabet == null || alphabet.chars().distinct().count() != alphabet.length() || alphabet.length() < 2) {
+            throw new IllegalArgumentException("OTP alphabet must contain at least two distinct characters");
+        }
+        if (poolSize < 0) {
+            throw new IllegalArgumentException("OTP pool size must not be negative");
+        }
+    }
+}
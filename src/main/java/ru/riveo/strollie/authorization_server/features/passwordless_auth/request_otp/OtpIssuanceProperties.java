@@ -0,0 +1,26 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки выдачи OTP.
+ *
+ * @param mode              {@code sync} - вся работа в потоке запроса, ответ 200;
+ *                          {@code async} - в потоке запроса только кулдаун, остальное в фоне, ответ 202.
+ * @param workerThreads     Число фоновых обработчиков в режиме {@code async}.
+ * @param queueCapacity     Ёмкость очереди; при переполнении запросы отклоняются с 503.
+ * @param retryAfterSeconds Значение заголовка Retry-After при сбросе нагрузки.
+ */
+@ConfigurationProperties(prefix = "app.otp.issuance")
+public record OtpIssuanceProperties(
+        @DefaultValue("sync") Mode mode,
+        @DefaultValue("4") int workerThreads,
+        @DefaultValue("1000") int queueCapacity,
+        @DefaultValue("5") long retryAfterSeconds) {
+
+    public enum Mode {
+        SYNC,
+        ASYNC
+    }
+}
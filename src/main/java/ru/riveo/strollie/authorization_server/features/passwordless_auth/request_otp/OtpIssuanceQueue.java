@@ -0,0 +1,86 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ограниченная очередь фоновой выдачи OTP.
+ * Задачи выполняет фиксированный пул обработчиков; если очередь заполнена,
+ * задача не принимается, и вызывающий сбрасывает нагрузку.
+ */
+@Component
+@Slf4j
+class OtpIssuanceQueue implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    private final Counter acceptedCounter;
+    private final Counter shedCounter;
+    private final Timer processingTimer;
+
+    OtpIssuanceQueue(OtpIssuanceProperties properties, MeterRegistry meterRegistry) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                properties.workerThreads(), properties.workerThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.queueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "otp-issuance-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("otp.issuance.queue.depth", executor, e -> e.getQueue().size())
+                .description("Запросы OTP, ожидающие фоновой обработки")
+                .register(meterRegistry);
+        Gauge.builder("otp.issuance.queue.remaining", executor, e -> e.getQueue().remainingCapacity())
+                .register(meterRegistry);
+        this.acceptedCounter = Counter.builder("otp.issuance.requests").tag("outcome", "accepted")
+                .register(meterRegistry);
+        this.shedCounter = Counter.builder("otp.issuance.requests").tag("outcome", "shed")
+                .register(meterRegistry);
+        this.processingTimer = Timer.builder("otp.issuance.processing")
+                .description("Время фоновой выдачи OTP")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return false, если очередь заполнена и задача не принята.
+     */
+    boolean offer(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    processingTimer.record(task);
+                } catch (Exception e) {
+                    log.error("Background OTP issuance failed", e);
+                }
+            });
+            acceptedCounter.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            shedCounter.increment();
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("OTP issuance queue did not drain in time, {} tasks dropped", executor.shutdownNow().size());
+        }
+    }
+}
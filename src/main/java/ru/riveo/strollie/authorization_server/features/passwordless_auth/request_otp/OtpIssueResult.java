@@ -0,0 +1,15 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+/**
+ * Результат атомарной выдачи OTP.
+ */
+public enum OtpIssueResult {
+    /**
+     * Кулдаун установлен, код и счётчик попыток сохранены.
+     */
+    ISSUED,
+    /**
+     * Кулдаун для email ещё действует, ничего не записано.
+     */
+    RATE_LIMITED
+}
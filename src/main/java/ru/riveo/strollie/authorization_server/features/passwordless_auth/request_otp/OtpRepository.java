@@ -4,6 +4,30 @@ package ru.riveo.strollie.authorization_server.features.passwordless_auth.reques
 import java.util.Optional;
 
 public interface OtpRepository {
+    /**
+     * Атомарно устанавливает кулдаун, сохраняет код и инициализирует счётчик попыток.
+     * Если кулдаун для email ещё действует, ничего не записывается.
+     *
+     * @return {@link OtpIssueResult#ISSUED}, если код сохранён, иначе {@link OtpIssueResult#RATE_LIMITED}.
+     */
+    OtpIssueResult issueOtp(String email, String otp, int maxAttempts, long expiryMinutes, long resendCooldownSeconds);
+
+    /**
+     * Атомарно сохраняет код и инициализирует счётчик попыток, не трогая кулдаун.
+     * Используется, когда кулдаун уже установлен при приёме запроса.
+     */
+    void storeOtp(String email, String otp, int maxAttempts, long expiryMinutes);
+
+    /**
+     * Атомарно сравнивает код, уменьшает счётчик попыток и, если код подошёл
+     * или попытки закончились, удаляет код, счётчик и кулдаун.
+     *
+     * @param email Email пользователя.
+     * @param otp   Код, предъявленный пользователем.
+     * @return Результат проверки.
+     */
+    OtpVerificationResult verifyAndConsume(String email, String otp);
+
     void saveOtp(String email, String otp, long expiryMinutes);
 
     Optional<String> findOtp(String email);
@@ -0,0 +1,23 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+/**
+ * Результат атомарной проверки и погашения OTP.
+ */
+public enum OtpVerificationResult {
+    /**
+     * Код совпал, все данные OTP удалены.
+     */
+    VALID,
+    /**
+     * Код не совпал, попытки ещё остались.
+     */
+    INVALID,
+    /**
+     * Попытки исчерпаны, все данные OTP удалены.
+     */
+    EXHAUSTED,
+    /**
+     * Кода нет: он истёк, уже использован или никогда не выдавался.
+     */
+    MISSING
+}
@@ -5,6 +5,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
@@ -13,11 +14,16 @@ import lombok.RequiredArgsConstructor;
 class RequestOtpController {
     
     private final RequestOtpHandler handler;
+    private final OtpIssuanceProperties issuanceProperties;
     
     @PostMapping("/api/auth/request-otp")
-    public ResponseEntity<Void> handle(@Valid @RequestBody RequestOtp command) {
+    public ResponseEntity<Void> handle(@Valid @RequestBody RequestOtp command, HttpServletRequest request) {
         try {
-            handler.handle(command);
+            if (issuanceProperties.mode() == OtpIssuanceProperties.Mode.ASYNC) {
+                handler.enqueue(command, request.getRemoteAddr());
+                return ResponseEntity.accepted().build();
+            }
+            handler.handle(command, request.getRemoteAddr());
             return ResponseEntity.ok().build();
         } catch (IllegalStateException e) {
             return ResponseEntity.status(429).build(); // 429 Too Many Requests
@@ -1,12 +1,17 @@
 package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
 
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import lombok.RequiredArgsConstructor;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.rate_limit.OtpRateLimiter;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.port.EmailService;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.port.UserExistenceChecker;
 import ru.riveo.strollie.authorization_server.shared.exception.RateLimitExceededException;
+import ru.riveo.strollie.authorization_server.shared.exception.ServiceOverloadedException;
 
 
 @Service
@@ -14,36 +19,85 @@ import ru.riveo.strollie.authorization_server.shared.exception.RateLimitExceeded
 class RequestOtpHandler {
     private final OtpRepository otpRepository;
     private final EmailService emailService;
-    private final OtpGenerator otpGenerator;
+    private final OtpCodeStrategy codeStrategy;
     private final UserExistenceChecker userExistenceChecker;
+    private final OtpIssuanceQueue issuanceQueue;
+    private final OtpIssuanceProperties issuanceProperties;
+    private final OtpRateLimiter rateLimiter;
 
-    @Value("${app.otp.lifetime-minutes:5}")
-    private long otpLifetimeMinutes;
-    @Value("${app.otp.max-attempts:3}")
-    private int maxAttempts;
     @Value("${app.otp.resend-cooldown-seconds:60}")
     private long resendCooldownSeconds;
 
-    public void handle(RequestOtp command) {
-        // Атомарная проверка-и-действие
-        if (!otpRepository.trySetRateLimit(command.email(), resendCooldownSeconds)) {
-            throw new RateLimitExceededException("Please wait before requesting a new code.");
-        }
+    public void handle(RequestOtp command, String clientAddress) {
+        String email = command.email();
+        enforceRateLimit(email, clientAddress);
 
         // Проверяем существование пользователя, но не раскрываем информацию об этом
-        boolean userExists = userExistenceChecker.existsByEmail(command.email());
+        boolean userExists = userExistenceChecker.existsByEmail(email);
 
-        // Симулируем все действия с ограничением запросов, чтобы атакующий
-        // не смог определить, существует ли пользователь по времени ответа
-        // Но генерируем и отправляем OTP только если пользователь существует
+        // Каждая ветка делает один атомарный вызов Redis; кулдаун определяется по его результату.
+        // Время ответа всё же может выдать существование аккаунта: на заведомо отсутствующий адрес
+        // фильтр Блума отвечает без БД, а письмо отправляется только существующему пользователю.
+        // Перебор адресов сдерживают лимиты по email и IP.
+        boolean accepted;
         if (userExists) {
-            String otp = otpGenerator.generate();
-            otpRepository.saveOtp(command.email(), otp, otpLifetimeMinutes);
-            otpRepository.setInitialAttempts(command.email(), maxAttempts, otpLifetimeMinutes);
-            emailService.sendOtpEmail(command.email(), otp);
+            // Кулдаун и выдача кода выполняются стратегией одним скриптом
+            Optional<String> otp = codeStrategy.issue(email);
+            accepted = otp.isPresent();
+            otp.ifPresent(code -> emailService.sendOtpEmail(email, code));
+        } else {
+            // Атомарная проверка-и-действие
+            accepted = otpRepository.trySetRateLimit(email, resendCooldownSeconds);
+        }
+
+        if (!accepted) {
+            throw new RateLimitExceededException("Please wait before requesting a new code.");
         }
 
         // Всегда возвращаем успех, независимо от существования пользователя
         // Метод просто заканчивается нормально без выброса исключений
     }
+
+    /**
+     * Асинхронная выдача: в потоке запроса выполняется только установка кулдауна,
+     * остальная работа передаётся в фоновую очередь. Время ответа не зависит
+     * от существования пользователя, так как БД в потоке запроса не опрашивается.
+     */
+    public void enqueue(RequestOtp command, String clientAddress) {
+        String email = command.email();
+        enforceRateLimit(email, clientAddress);
+
+        if (!otpRepository.trySetRateLimit(email, resendCooldownSeconds)) {
+            throw new RateLimitExceededException("Please wait before requesting a new code.");
+        }
+
+        if (!issuanceQueue.offer(() -> issue(email))) {
+            // Снимаем кулдаун, чтобы пользователь мог повторить запрос после Retry-After
+            otpRepository.clearRateLimit(email);
+            throw new ServiceOverloadedException("OTP issuance is temporarily overloaded, please retry later.",
+                    issuanceProperties.retryAfterSeconds());
+        }
+    }
+
+    /**
+     * Лимиты на email и адрес клиента проверяются до любой другой работы,
+     * поэтому перебор адресов с одного IP не доходит до БД и почты.
+     */
+    private void enforceRateLimit(String email, String clientAddress) {
+        long retryAfterMillis = rateLimiter.tryAcquire(email, clientAddress, null);
+        if (retryAfterMillis > 0) {
+            throw new RateLimitExceededException("Too many OTP requests, please retry later.",
+                    TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999));
+        }
+    }
+
+    /**
+     * Фоновая часть асинхронной выдачи; кулдаун к этому моменту уже установлен.
+     */
+    private void issue(String email) {
+        if (!userExistenceChecker.existsByEmail(email)) {
+            return;
+        }
+        emailService.sendOtpEmail(email, codeStrategy.reissue(email));
+    }
 }
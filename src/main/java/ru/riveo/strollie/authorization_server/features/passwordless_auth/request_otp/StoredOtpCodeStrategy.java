@@ -0,0 +1,49 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Случайный код из {@link OtpGenerator}, сохранённый в {@link OtpRepository} вместе со счётчиком попыток.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.otp", name = "strategy", havingValue = "stored", matchIfMissing = true)
+class StoredOtpCodeStrategy implements OtpCodeStrategy {
+
+    private final OtpRepository otpRepository;
+    private final OtpGenerator otpGenerator;
+
+    @Value("${app.otp.lifetime-minutes:5}")
+    private long otpLifetimeMinutes;
+    @Value("${app.otp.max-attempts:3}")
+    private int maxAttempts;
+    @Value("${app.otp.resend-cooldown-seconds:60}")
+    private long resendCooldownSeconds;
+
+    @Override
+    public Optional<String> issue(String email) {
+        String otp = otpGenerator.generate();
+        // Кулдаун, код и счётчик попыток записываются атомарно одним скриптом
+        OtpIssueResult result = otpRepository.issueOtp(email, otp, maxAttempts, otpLifetimeMinutes,
+                resendCooldownSeconds);
+        return result == OtpIssueResult.ISSUED ? Optional.of(otp) : Optional.empty();
+    }
+
+    @Override
+    public String reissue(String email) {
+        String otp = otpGenerator.generate();
+        otpRepository.storeOtp(email, otp, maxAttempts, otpLifetimeMinutes);
+        return otp;
+    }
+
+    @Override
+    public OtpVerificationResult verifyAndConsume(String email, String otp) {
+        return otpRepository.verifyAndConsume(email, otp);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.riveo.strollie.authorization_server.infrastructure.notification;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки доставки исходящей почты.
+ *
+ * @param mode           {@code direct} - каждое письмо отдельным вызовом {@code JavaMailSender.send};
+ *                       {@code pooled} - очередь и пул долгоживущих SMTP-соединений.
+ * @param queueCapacity  Ёмкость очереди писем в режиме {@code pooled}.
+ * @param connections    Число SMTP-соединений (и обработчиков очереди).
+ * @param batchSize      Максимум писем, отправляемых одним обработчиком за одну пачку.
+ * @param flushInterval  Сколько ждать наполнения пачки после первого письма.
+ * @param enqueueTimeout Сколько ждать места в заполненной очереди, прежде чем отклонить письмо.
+ * @param maxRetries     Число повторных попыток отправки письма.
+ * @param retryBackoff   Базовая задержка перед повтором; удваивается с каждой попыткой, к ней добавляется случайный разброс.
+ * @param idleTimeout    Простой, после которого соединение закрывается.
+ */
+@ConfigurationProperties(prefix = "app.mail.delivery")
+public record MailDeliveryProperties(
+        @DefaultValue("direct") Mode mode,
+        @DefaultValue("10000") int queueCapacity,
+        @DefaultValue("2") int connections,
+        @DefaultValue("50") int batchSize,
+        @DefaultValue("50ms") Duration flushInterval,
+        @DefaultValue("100ms") Duration enqueueTimeout,
+        @DefaultValue("3") int maxRetries,
+        @DefaultValue("500ms") Duration retryBackoff,
+        @DefaultValue("30s") Duration idleTimeout) {
+
+    public enum Mode {
+        DIRECT,
+        POOLED
+    }
+}
@@ -0,0 +1,33 @@
+package ru.riveo.strollie.authorization_server.infrastructure.notification;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки outbox писем с OTP на Redis Streams.
+ *
+ * @param enabled         Письма записываются в стрим и доставляются группой потребителей.
+ * @param streamKey       Ключ стрима.
+ * @param group           Имя группы потребителей, общей для всех узлов.
+ * @param consumers       Число потребителей на узле.
+ * @param batchSize       Сколько записей читать за один запрос.
+ * @param pollTimeout     Время блокирующего ожидания новых записей.
+ * @param claimIdle       Сколько запись должна провисеть неподтверждённой, чтобы её забрал другой потребитель;
+ *                        столько же должен простаивать потребитель без записей, чтобы его удалили из группы.
+ * @param reclaimInterval Периодичность проверки неподтверждённых записей.
+ * @param maxDeliveries   После стольких попыток доставки запись отбрасывается.
+ */
+@ConfigurationProperties(prefix = "app.mail.outbox")
+public record MailOutboxProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("otp_mail_outbox") String streamKey,
+        @DefaultValue("otp-mail-workers") String group,
+        @DefaultValue("1") int consumers,
+        @DefaultValue("10") int batchSize,
+        @DefaultValue("2s") Duration pollTimeout,
+        @DefaultValue("60s") Duration claimIdle,
+        @DefaultValue("30s") Duration reclaimInterval,
+        @DefaultValue("5") long maxDeliveries) {
+}
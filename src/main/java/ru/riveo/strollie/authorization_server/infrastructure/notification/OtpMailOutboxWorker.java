@@ -0,0 +1,260 @@
+package ru.riveo.strollie.authorization_server.infrastructure.notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer.StreamMessageListenerContainerOptions;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer.StreamReadRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.redis.RedisScripts;
+
+/**
+ * Доставка писем из outbox {@link RedisStreamEmailService}.
+ * <p>
+ * Каждый узел регистрирует потребителей в общей группе, поэтому доставка
+ * масштабируется добавлением узлов. Запись подтверждается и удаляется только
+ * после успешной отправки. Записи, которые потребитель взял, но не подтвердил
+ * (узел упал или отправка не удалась), по истечении {@code claim-idle} забирает
+ * себе любой живой узел; после {@code max-deliveries} попыток запись отбрасывается.
+ * <p>
+ * Имена потребителей уникальны для каждого запуска узла. При остановке узел удаляет из группы
+ * своих потребителей без неподтверждённых записей. Потребителей упавших узлов удаляет
+ * периодическая проверка, когда их записи уже забраны другими узлами.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.mail.outbox", name = "enabled", havingValue = "true")
+@Slf4j
+public class OtpMailOutboxWorker implements DisposableBean {
+
+    private static final RedisScript<Long> ACK_SCRIPT = RedisScripts.load("redis/mail/outbox_ack.lua", Long.class);
+    private static final RedisScript<Long> PRUNE_CONSUMERS_SCRIPT =
+            RedisScripts.load("redis/mail/outbox_prune_consumers.lua", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final JavaMailSender mailSender;
+    private final ObjectProvider<PooledMailSender> pooledMailSender;
+    private final MailOutboxProperties properties;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private StreamMessageListenerContainer<String, MapRecord<String, String, String>> container;
+    private ScheduledExecutorService reclaimer;
+
+    public OtpMailOutboxWorker(StringRedisTemplate redisTemplate, JavaMailSender mailSender,
+                               ObjectProvider<PooledMailSender> pooledMailSender, MailOutboxProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.mailSender = mailSender;
+        this.pooledMailSender = pooledMailSender;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        RedisScripts.preload(redisTemplate.getRequiredConnectionFactory(), ACK_SCRIPT, PRUNE_CONSUMERS_SCRIPT);
+        ensureGroup();
+
+        StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
+                StreamMessageListenerContainerOptions.builder()
+                        .serializer(RedisSerializer.string())
+                        .pollTimeout(properties.pollTimeout())
+                        .batchSize(properties.batchSize())
+                        .errorHandler(this::handlePollError)
+                        .build();
+        container = StreamMessageListenerContainer.create(redisTemplate.getRequiredConnectionFactory(), options);
+        for (int i = 0; i < properties.consumers(); i++) {
+            container.register(StreamReadRequest.builder(StreamOffset.create(properties.streamKey(), ReadOffset.lastConsumed()))
+                            .consumer(Consumer.from(properties.group(), consumerName(i)))
+                            .autoAcknowledge(false)
+                            .cancelOnError(error -> false)
+                            .build(),
+                    this::deliver);
+        }
+        container.start();
+
+        reclaimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mail-outbox-reclaim");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = properties.reclaimInterval().toMillis();
+        reclaimer.scheduleWithFixedDelay(this::reclaim, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (reclaimer != null) {
+            reclaimer.shutdownNow();
+        }
+        if (container != null) {
+            container.stop();
+            removeOwnConsumers();
+        }
+    }
+
+    /**
+     * Удаляет потребителей этого узла, у которых нет неподтверждённых записей. Записи, которые ещё
+     * отправляются, остаются за потребителем; его удалит {@link #reclaim()} другого узла.
+     */
+    private void removeOwnConsumers() {
+        List<String> args = new ArrayList<>();
+        args.add(properties.group());
+        args.add("0");
+        for (int i = 0; i < properties.consumers(); i++) {
+            args.add(consumerName(i));
+        }
+        args.add(reclaimConsumerName());
+        try {
+            redisTemplate.execute(PRUNE_CONSUMERS_SCRIPT, List.of(properties.streamKey()), args.toArray());
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove OTP mail outbox consumers of node {}", nodeId, e);
+        }
+    }
+
+    private String consumerName(int index) {
+        return nodeId + "-" + index;
+    }
+
+    private String reclaimConsumerName() {
+        return nodeId + "-reclaim";
+    }
+
+    private void deliver(MapRecord<String, String, String> record) {
+        Map<String, String> value = record.getValue();
+        String email = value.get(RedisStreamEmailService.EMAIL_FIELD);
+        long expiresAt = Long.parseLong(value.getOrDefault(RedisStreamEmailService.EXPIRES_AT_FIELD, "0"));
+        if (email == null || expiresAt < System.currentTimeMillis()) {
+            log.info("Dropping expired OTP email for {}", email);
+            acknowledge(record.getId());
+            return;
+        }
+
+        SimpleMailMessage message = SmtpEmailService.otpMessage(email, value.get(RedisStreamEmailService.OTP_FIELD));
+        PooledMailSender pooled = pooledMailSender.getIfAvailable();
+        if (pooled != null) {
+            pooled.submit(message).whenComplete((ignored, error) -> {
+                if (error == null) {
+                    acknowledge(record.getId());
+                    log.info("OTP email sent to {}", email);
+                } else {
+                    log.warn("Failed to send OTP email to {}, leaving it for redelivery", email, error);
+                }
+            });
+            return;
+        }
+        try {
+            mailSender.send(message);
+            acknowledge(record.getId());
+            log.info("OTP email sent to {}", email);
+        } catch (MailException e) {
+            log.warn("Failed to send OTP email to {}, leaving it for redelivery", email, e);
+        }
+    }
+
+    /**
+     * Забирает записи, которые дольше {@code claim-idle} висят неподтверждёнными у других потребителей,
+     * и удаляет из группы потребителей, которые столько же простаивают без записей.
+     */
+    private void reclaim() {
+        try {
+            reclaimPending();
+            // Потребитель без записей пересоздаётся при следующем чтении, поэтому живой узел не пострадает
+            redisTemplate.execute(PRUNE_CONSUMERS_SCRIPT, List.of(properties.streamKey()),
+                    properties.group(), String.valueOf(properties.claimIdle().toMillis()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to reclaim pending OTP emails", e);
+        }
+    }
+
+    private void reclaimPending() {
+        List<RecordId> toClaim = new ArrayList<>();
+        List<String> toDrop = new ArrayList<>();
+        for (PendingMessage pending : redisTemplate.opsForStream()
+                .pending(properties.streamKey(), properties.group(), Range.unbounded(), properties.batchSize())) {
+            if (pending.getElapsedTimeSinceLastDelivery().compareTo(properties.claimIdle()) < 0) {
+                continue;
+            }
+            if (pending.getTotalDeliveryCount() >= properties.maxDeliveries()) {
+                toDrop.add(pending.getIdAsString());
+            } else {
+                toClaim.add(pending.getId());
+            }
+        }
+        if (!toDrop.isEmpty()) {
+            log.error("Dropping {} OTP emails after {} delivery attempts", toDrop.size(), properties.maxDeliveries());
+            acknowledge(toDrop.toArray(String[]::new));
+        }
+        if (toClaim.isEmpty()) {
+            return;
+        }
+        // XCLAIM с min-idle атомарен: если запись уже забрал другой узел, она не вернётся
+        List<MapRecord<String, Object, Object>> claimed = redisTemplate.opsForStream().claim(
+                properties.streamKey(), properties.group(), reclaimConsumerName(),
+                properties.claimIdle(), toClaim.toArray(RecordId[]::new));
+        for (MapRecord<String, Object, Object> record : claimed) {
+            deliver(record.mapEntries(entry -> Map.entry(entry.getKey().toString(), entry.getValue().toString())));
+        }
+    }
+
+    private void acknowledge(RecordId recordId) {
+        acknowledge(recordId.getValue());
+    }
+
+    private void acknowledge(String... recordIds) {
+        List<String> args = new ArrayList<>(recordIds.length + 1);
+        args.add(properties.group());
+        args.addAll(List.of(recordIds));
+        redisTemplate.execute(ACK_SCRIPT, List.of(properties.streamKey()), args.toArray());
+    }
+
+    private void ensureGroup() {
+        try {
+            redisTemplate.opsForStream().createGroup(properties.streamKey(), ReadOffset.from("0"), properties.group());
+        } catch (RedisSystemException e) {
+            if (!String.valueOf(e.getMostSpecificCause().getMessage()).contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    private void handlePollError(Throwable error) {
+        Throwable cause = error instanceof RedisSystemException redisError ? redisError.getMostSpecificCause() : error;
+        if (String.valueOf(cause.getMessage()).contains("NOGROUP")) {
+            // Стрим или группа удалены (например, при очистке Redis) - пересоздаём и продолжаем чтение
+            ensureGroup();
+            return;
+        }
+        log.warn("Failed to read OTP mail outbox", error);
+        try {
+            // Обработчик вызывается в потоке опроса: пауза не даёт крутить цикл, пока Redis недоступен
+            TimeUnit.MILLISECONDS.sleep(properties.pollTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package ru.riveo.strollie.authorization_server.infrastructure.notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.mail.MailException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMailMessage;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Отправка почты через пул долгоживущих SMTP-соединений.
+ * <p>
+ * Письма ставятся в ограниченную очередь. Каждый из {@code connections} обработчиков
+ * держит своё соединение, забирает из очереди пачку до {@code batch-size} писем
+ * и отправляет их подряд, не выполняя подключение, handshake и QUIT на каждое письмо.
+ * Соединение проверяется один раз на пачку и закрывается после {@code idle-timeout} простоя.
+ * <p>
+ * Если очередь заполнена дольше {@code enqueue-timeout}, письмо отклоняется.
+ * Ошибки отправки повторяются с экспоненциальной задержкой и случайным разбросом,
+ * соединение при этом пересоздаётся.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.mail.delivery", name = "mode", havingValue = "pooled")
+@Slf4j
+public class PooledMailSender implements DisposableBean {
+
+    private final JavaMailSenderImpl mailSender;
+    private final MailDeliveryProperties properties;
+    private final BlockingQueue<PendingMail> queue;
+    private final ExecutorService workers;
+    private volatile boolean running = true;
+
+    private final Timer sendTimer;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+    private final Counter retriedCounter;
+
+    public PooledMailSender(JavaMailSender mailSender, MailDeliveryProperties properties,
+                            MeterRegistry meterRegistry) {
+        if (!(mailSender instanceof JavaMailSenderImpl senderImpl)) {
+            throw new IllegalStateException("Pooled mail delivery requires a JavaMailSenderImpl, got "
+                    + mailSender.getClass().getName());
+        }
+        this.mailSender = senderImpl;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.queueCapacity());
+
+        Gauge.builder("mail.delivery.queue.depth", queue, BlockingQueue::size)
+                .description("Письма, ожидающие отправки")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("mail.delivery.send")
+                .description("Время от постановки письма в очередь до его отправки")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("mail.delivery.messages").tag("outcome", "sent").register(meterRegistry);
+        this.failedCounter = Counter.builder("mail.delivery.messages").tag("outcome", "failed").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("mail.delivery.messages").tag("outcome", "rejected")
+                .register(meterRegistry);
+        this.retriedCounter = Counter.builder("mail.delivery.retries").register(meterRegistry);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(properties.connections(), runnable -> {
+            Thread thread = new Thread(runnable, "mail-delivery-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < properties.connections(); i++) {
+            workers.execute(new Worker());
+        }
+    }
+
+    /**
+     * Ставит письмо в очередь отправки.
+     *
+     * @return future, завершающийся после отправки письма; завершается с
+     * {@link RejectedExecutionException}, если очередь заполнена.
+     */
+    public CompletableFuture<Void> submit(SimpleMailMessage message) {
+        PendingMail pending = new PendingMail(message, System.nanoTime(), new CompletableFuture<>());
+        if (!running) {
+            rejectedCounter.increment();
+            pending.future().completeExceptionally(new RejectedExecutionException("Mail delivery is shutting down"));
+            return pending.future();
+        }
+        try {
+            if (!queue.offer(pending, properties.enqueueTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                rejectedCounter.increment();
+                pending.future().completeExceptionally(new RejectedExecutionException("Mail delivery queue is full"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future().completeExceptionally(e);
+        }
+        return pending.future();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // Обработчики дописывают оставшиеся в очереди письма и закрывают соединения
+        running = false;
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+        PendingMail abandoned;
+        while ((abandoned = queue.poll()) != null) {
+            abandoned.future().completeExceptionally(new RejectedExecutionException("Mail delivery stopped"));
+        }
+    }
+
+    private record PendingMail(SimpleMailMessage message, long enqueuedAtNanos, CompletableFuture<Void> future) {
+    }
+
+    private final class Worker implements Runnable {
+
+        private Transport transport;
+        private long lastUsedNanos;
+
+        @Override
+        public void run() {
+            List<PendingMail> batch = new ArrayList<>(properties.batchSize());
+            try {
+                while (running || !queue.isEmpty()) {
+                    collectBatch(batch);
+                    if (batch.isEmpty()) {
+                        closeIfIdle();
+                        continue;
+                    }
+                    // Одна проверка соединения (NOOP) на пачку, а не на каждое письмо
+                    if (transport != null && !transport.isConnected()) {
+                        closeTransport();
+                    }
+                    for (PendingMail mail : batch) {
+                        deliver(mail);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.forEach(mail -> mail.future()
+                        .completeExceptionally(new RejectedExecutionException("Mail delivery stopped")));
+                closeTransport();
+            }
+        }
+
+        private void collectBatch(List<PendingMail> batch) throws InterruptedException {
+            long flushNanos = properties.flushInterval().toNanos();
+            PendingMail first = queue.poll(flushNanos, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+            long deadline = System.nanoTime() + flushNanos;
+            while (batch.size() < properties.batchSize()) {
+                queue.drainTo(batch, properties.batchSize() - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= properties.batchSize() || remaining <= 0) {
+                    return;
+                }
+                PendingMail next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            }
+        }
+
+        private void deliver(PendingMail mail) throws InterruptedException {
+            MimeMessage mimeMessage;
+            try {
+                mimeMessage = mailSender.createMimeMessage();
+                mail.message().copyTo(new MimeMailMessage(mimeMessage));
+                mimeMessage.saveChanges();
+            } catch (MailException | MessagingException e) {
+                fail(mail, e);
+                return;
+            }
+
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    connectedTransport().sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+                    lastUsedNanos = System.nanoTime();
+                    sendTimer.record(lastUsedNanos - mail.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+                    sentCounter.increment();
+                    mail.future().complete(null);
+                    return;
+                } catch (MessagingException e) {
+                    // После ошибки состояние SMTP-сессии неизвестно, повтор идёт через новое соединение
+                    closeTransport();
+                    if (attempt >= properties.maxRetries()) {
+                        fail(mail, e);
+                        return;
+                    }
+                    retriedCounter.increment();
+                    log.warn("Failed to send mail (attempt {}), retrying: {}", attempt + 1, e.getMessage());
+                    TimeUnit.MILLISECONDS.sleep(backoffMillis(attempt));
+                }
+            }
+        }
+
+        private long backoffMillis(int attempt) {
+            long base = properties.retryBackoff().toMillis() << Math.min(attempt, 16);
+            // Половина задержки фиксирована, половина случайна, чтобы обработчики не повторяли синхронно
+            return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+        }
+
+        private void fail(PendingMail mail, Exception e) {
+            failedCounter.increment();
+            mail.future().completeExceptionally(e);
+        }
+
+        private Transport connectedTransport() throws MessagingException {
+            if (transport == null) {
+                String protocol = mailSender.getProtocol() != null
+                        ? mailSender.getProtocol() : JavaMailSenderImpl.DEFAULT_PROTOCOL;
+                Transport newTransport = mailSender.getSession().getTransport(protocol);
+                newTransport.connect(mailSender.getHost(), mailSender.getPort(),
+                        mailSender.getUsername(), mailSender.getPassword());
+                transport = newTransport;
+            }
+            return transport;
+        }
+
+        private void closeIfIdle() {
+            if (transport != null && System.nanoTime() - lastUsedNanos > properties.idleTimeout().toNanos()) {
+                closeTransport();
+            }
+        }
+
+        private void closeTransport() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP transport", e);
+            } finally {
+                transport = null;
+            }
+        }
+    }
+}
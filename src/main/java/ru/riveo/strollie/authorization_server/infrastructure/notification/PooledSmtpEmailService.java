@@ -0,0 +1,31 @@
+package ru.riveo.strollie.authorization_server.infrastructure.notification;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.port.EmailService;
+
+/**
+ * Отправка OTP через {@link PooledMailSender}: вызывающий поток только ставит письмо в очередь.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.mail.delivery", name = "mode", havingValue = "pooled")
+@RequiredArgsConstructor
+@Slf4j
+public class PooledSmtpEmailService implements EmailService {
+
+    private final PooledMailSender mailSender;
+
+    @Override
+    public void sendOtpEmail(String to, String otp) {
+        mailSender.submit(SmtpEmailService.otpMessage(to, otp)).whenComplete((ignored, error) -> {
+            if (error == null) {
+                log.info("OTP email sent to {}", to);
+            } else {
+                log.error("Failed to send OTP email to {}", to, error);
+            }
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package ru.riveo.strollie.authorization_server.infrastructure.notification;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.port.EmailService;
+
+/**
+ * Outbox писем с OTP: письмо не отправляется из процесса, выдавшего код,
+ * а записывается в Redis Stream. Доставляет его {@link OtpMailOutboxWorker}
+ * любого узла, подтверждая запись только после отправки, поэтому падение узла
+ * не теряет письмо.
+ * <p>
+ * Запись содержит код, поэтому доставленные записи удаляются из стрима, а недоставленные
+ * удаляются при добавлении новых (XADD MINID), как только код истёк. Ограничение по длине
+ * не используется: оно могло бы удалить ещё не доставленные письма.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "app.mail.outbox", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class RedisStreamEmailService implements EmailService {
+
+    static final String EMAIL_FIELD = "email";
+    static final String OTP_FIELD = "otp";
+    static final String EXPIRES_AT_FIELD = "expires_at";
+
+    private final StringRedisTemplate redisTemplate;
+    private final MailOutboxProperties properties;
+
+    @Value("${app.otp.lifetime-minutes:5}")
+    private long otpLifetimeMinutes;
+
+    @Override
+    public void sendOtpEmail(String to, String otp) {
+        // Истёкший код бессмысленно доставлять, поэтому вместе с письмом храним срок его действия
+        long now = Instant.now().toEpochMilli();
+        long lifetimeMillis = TimeUnit.MINUTES.toMillis(otpLifetimeMinutes);
+        // Id записи начинается со времени добавления: записи старше срока действия кода истекли.
+        // Обрезка точная: приблизительная оставляет истёкшие коды, пока не наберётся целый узел стрима
+        RecordId minId = RecordId.of(now - lifetimeMillis, 0);
+        redisTemplate.opsForStream().add(properties.streamKey(),
+                Map.of(EMAIL_FIELD, to, OTP_FIELD, otp, EXPIRES_AT_FIELD, String.valueOf(now + lifetimeMillis)),
+                XAddOptions.none().minId(minId));
+    }
+}
@@ -1,5 +1,6 @@
 package ru.riveo.strollie.authorization_server.infrastructure.notification;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.scheduling.annotation.Async;
@@ -10,6 +11,7 @@ import lombok.extern.slf4j.Slf4j;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.port.EmailService;
 
 @Service
+@ConditionalOnProperty(prefix = "app.mail.delivery", name = "mode", havingValue = "direct", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class SmtpEmailService implements EmailService {
@@ -20,15 +22,19 @@ public class SmtpEmailService implements EmailService {
     @Async
     public void sendOtpEmail(String to, String otp) {
         try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom("noreply@strollie.com");
-            message.setTo(to);
-            message.setSubject("Your Authentication Code");
-            message.setText("Your one-time password is: " + otp + "\nIt is valid for 5 minutes.");
-            mailSender.send(message);
+            mailSender.send(otpMessage(to, otp));
             log.info("OTP email sent to {}", to);
         } catch (Exception e) {
             log.error("Failed to send OTP email to {}", to, e);
         }
     }
+
+    static SimpleMailMessage otpMessage(String to, String otp) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("noreply@strollie.com");
+        message.setTo(to);
+        message.setSubject("Your Authentication Code");
+        message.setText("Your one-time password is: " + otp + "\nIt is valid for 5 minutes.");
+        return message;
+    }
 }
@@ -0,0 +1,149 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.features.passwordless_auth.login_with_otp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccount;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccountFinder;
+
+/**
+ * Кэш аккаунтов перед {@link UserAccountFinderAdapter}: память узла (L1), затем Redis (L2), затем БД.
+ * <p>
+ * При изменении аккаунта запись удаляется из Redis, а все узлы получают сообщение
+ * в канал инвалидации и удаляют её из памяти. Удаление повторяется после коммита,
+ * чтобы параллельное чтение, успевшее загрузить старое состояние, не оставило его в кэше.
+ * Отсутствующие аккаунты не кэшируются.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(prefix = "app.user-account-cache", name = "enabled", havingValue = "true")
+@Slf4j
+public class CachingUserAccountFinder implements UserAccountFinder, DisposableBean {
+
+    private static final String KEY_PREFIX = "user_account:";
+    private static final String FIELD_SEPARATOR = "|";
+    private static final String ROLE_SEPARATOR = ",";
+
+    private final UserAccountFinderAdapter delegate;
+    private final StringRedisTemplate redisTemplate;
+    private final UserAccountCacheProperties properties;
+    private final Cache<String, UserAccount> local;
+
+    private RedisMessageListenerContainer listenerContainer;
+
+    public CachingUserAccountFinder(UserAccountFinderAdapter delegate,
+                                    StringRedisTemplate redisTemplate,
+                                    UserAccountCacheProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(properties.localMaximumSize())
+                .expireAfterWrite(properties.localTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, "user_account");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisTemplate.getRequiredConnectionFactory());
+        listenerContainer.addMessageListener(
+                (message, pattern) -> local.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(properties.invalidationChannel()));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    @Override
+    public Optional<UserAccount> findByEmail(String email) {
+        UserAccount cached = local.getIfPresent(email);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        String shared = redisTemplate.opsForValue().get(KEY_PREFIX + email);
+        if (shared != null) {
+            UserAccount account = decode(email, shared);
+            local.put(email, account);
+            return Optional.of(account);
+        }
+
+        Optional<UserAccount> loaded = delegate.findByEmail(email);
+        loaded.ifPresent(account -> {
+            redisTemplate.opsForValue().set(KEY_PREFIX + email, encode(account), properties.sharedTtl());
+            local.put(email, account);
+        });
+        return loaded;
+    }
+
+    /**
+     * Удаляет аккаунт из кэшей всех узлов сейчас и ещё раз после коммита текущей транзакции.
+     */
+    public void evict(String email) {
+        evictEverywhere(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictEverywhere(email);
+                }
+            });
+        }
+    }
+
+    private void evictEverywhere(String email) {
+        local.invalidate(email);
+        try {
+            redisTemplate.delete(KEY_PREFIX + email);
+            redisTemplate.convertAndSend(properties.invalidationChannel(), email);
+        } catch (RuntimeException e) {
+            // Запись в Redis и памяти других узлов всё равно истечёт по TTL
+            log.warn("Failed to invalidate cached user account {}", email, e);
+        }
+    }
+
+    static String encode(UserAccount account) {
+        return (account.isEnabled() ? "1" : "0") + FIELD_SEPARATOR
+                + (account.isAccountNonLocked() ? "1" : "0") + FIELD_SEPARATOR
+                + String.join(ROLE_SEPARATOR, account.roles());
+    }
+
+    static UserAccount decode(String email, String value) {
+        String[] fields = value.split("\\" + FIELD_SEPARATOR, 3);
+        Set<String> roles = fields[2].isEmpty()
+                ? Set.of()
+                : Arrays.stream(fields[2].split(ROLE_SEPARATOR)).collect(Collectors.toUnmodifiableSet());
+        return new UserAccount(email, roles, "1".equals(fields[0]), "1".equals(fields[1]));
+    }
+}
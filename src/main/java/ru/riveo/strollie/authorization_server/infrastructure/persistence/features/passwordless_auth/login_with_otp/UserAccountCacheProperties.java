@@ -0,0 +1,24 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.features.passwordless_auth.login_with_otp;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки двухуровневого кэша аккаунтов для входа по OTP.
+ *
+ * @param enabled             Включает кэш перед запросом в БД.
+ * @param localMaximumSize    Максимальное число аккаунтов в памяти узла.
+ * @param localTtl            Время жизни записи в памяти узла.
+ * @param sharedTtl           Время жизни записи в Redis.
+ * @param invalidationChannel Канал Redis, по которому узлы сообщают друг другу об изменении аккаунта.
+ */
+@ConfigurationProperties(prefix = "app.user-account-cache")
+public record UserAccountCacheProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("10000") long localMaximumSize,
+        @DefaultValue("30s") Duration localTtl,
+        @DefaultValue("10m") Duration sharedTtl,
+        @DefaultValue("user_account_invalidation") String invalidationChannel) {
+}
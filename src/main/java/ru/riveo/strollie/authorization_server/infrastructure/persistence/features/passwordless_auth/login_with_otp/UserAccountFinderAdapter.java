@@ -4,29 +4,29 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccount;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccountFinder;
-import ru.riveo.strollie.authorization_server.infrastructure.persistence.jpa.JpaUserRepository;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.jdbc.UserAccountQueries;
 
 import java.util.Optional;
 
 /**
  * Адаптер, который реализует UserAccountFinder, используя
- * JpaUserRepository для доступа к данным в БД.
- * Преобразует доменную модель User в DTO UserAccount.
+ * проекцию UserAccountQueries: email, признаки аккаунта и роли читаются одним запросом.
+ * Преобразует проекцию в DTO UserAccount.
  */
 @Component
 @RequiredArgsConstructor
 public class UserAccountFinderAdapter implements UserAccountFinder {
 
-    private final JpaUserRepository jpaUserRepository;
+    private final UserAccountQueries userAccountQueries;
 
     @Override
     public Optional<UserAccount> findByEmail(String email) {
-        return jpaUserRepository.findByEmail(email)
+        return userAccountQueries.findByEmail(email)
                 .map(user -> new UserAccount(
-                        user.getEmail(),
-                        user.getRoles(),
-                        user.isEnabled(),
-                        user.isAccountNonLocked()
+                        user.email(),
+                        user.roles(),
+                        user.enabled(),
+                        user.accountNonLocked()
                 ));
     }
-}
\ No newline at end of file
+}
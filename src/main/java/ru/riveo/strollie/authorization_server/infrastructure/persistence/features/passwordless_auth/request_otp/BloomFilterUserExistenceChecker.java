@@ -0,0 +1,31 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.features.passwordless_auth.request_otp;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.port.UserExistenceChecker;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.redis.UserEmailBloomFilter;
+
+/**
+ * Проверка существования пользователя через фильтр Блума.
+ * Запрос в БД выполняется только на ответ "возможно есть",
+ * поэтому перебор несуществующих email не нагружает PostgreSQL.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(prefix = "app.otp.user-filter", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class BloomFilterUserExistenceChecker implements UserExistenceChecker {
+
+    private final UserEmailBloomFilter userEmailFilter;
+    private final UserExistenceCheckerAdapter databaseChecker;
+
+    @Override
+    public boolean existsByEmail(String email) {
+        if (!userEmailFilter.mightContain(email)) {
+            return false;
+        }
+        return databaseChecker.existsByEmail(email);
+    }
+}
@@ -1,13 +1,13 @@
 package ru.riveo.strollie.authorization_server.infrastructure.persistence.features.role_management;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
-import ru.riveo.strollie.authorization_server.features.role_management.AccountMapper;
 import ru.riveo.strollie.authorization_server.features.role_management.domain.AccountWithRoles;
 import ru.riveo.strollie.authorization_server.features.role_management.port.AccountRepository;
-import ru.riveo.strollie.authorization_server.infrastructure.persistence.jpa.JpaUserRepository;
-import ru.riveo.strollie.authorization_server.infrastructure.persistence.jpa.UserEntity;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.features.passwordless_auth.login_with_otp.CachingUserAccountFinder;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.jdbc.UserAccountQueries;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -16,14 +16,14 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class AccountRepositoryAdapter implements AccountRepository {
 
-    private final JpaUserRepository jpaUserRepository;
-    private final AccountMapper accountMapper;
+    private final UserAccountQueries userAccountQueries;
+    private final ObjectProvider<CachingUserAccountFinder> userAccountCache;
 
     @Override
     @Transactional(readOnly = true) // Явно указываем, что это операция чтения.
     public Optional<AccountWithRoles> findByEmail(String email) {
-        Optional<UserEntity> userEntityOptional = jpaUserRepository.findByEmail(email);
-        return userEntityOptional.map(accountMapper::toAccountWithRoles);
+        return userAccountQueries.findByEmail(email)
+                .map(user -> AccountWithRoles.fromState(user.id(), user.roles()));
     }
 
     @Override
@@ -31,13 +31,12 @@ public class AccountRepositoryAdapter implements AccountRepository {
     public void save(AccountWithRoles account) {
         UUID userId = account.getId();
 
-        // Мы не можем просто сохранить `AccountWithRoles`, так как в таблице users есть другие поля.
-        // Нам нужно обновить существующую запись.
-        UserEntity userEntity = jpaUserRepository.findById(userId)
+        // В AccountWithRoles только роли, поэтому пользователь не перечитывается:
+        // набор ролей заменяется одним запросом к user_roles.
+        String email = userAccountQueries.replaceRoles(userId, account.getRoles())
                 .orElseThrow(() -> new IllegalStateException("Attempted to save roles for a non-existent user with ID: " + userId));
 
-        accountMapper.updateEntityFromAccountWithRoles(account, userEntity);
-
-        jpaUserRepository.save(userEntity);
+        // Роли и блокировка входят в закэшированный UserAccount
+        userAccountCache.ifAvailable(cache -> cache.evict(email));
     }
-}
\ No newline at end of file
+}
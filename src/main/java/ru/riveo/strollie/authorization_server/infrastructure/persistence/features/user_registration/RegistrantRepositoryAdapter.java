@@ -1,6 +1,7 @@
 package ru.riveo.strollie.authorization_server.infrastructure.persistence.features.user_registration;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import ru.riveo.strollie.authorization_server.features.user_registration.RegistrantMapper;
@@ -8,6 +9,7 @@ import ru.riveo.strollie.authorization_server.features.user_registration.domain.
 import ru.riveo.strollie.authorization_server.features.user_registration.port.RegistrantRepository;
 import ru.riveo.strollie.authorization_server.infrastructure.persistence.jpa.JpaUserRepository;
 import ru.riveo.strollie.authorization_server.infrastructure.persistence.jpa.UserEntity;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.redis.UserEmailBloomFilter;
 
 import java.util.Set;
 
@@ -17,6 +19,7 @@ public class RegistrantRepositoryAdapter implements RegistrantRepository {
 
     private final JpaUserRepository jpaUserRepository;
     private final RegistrantMapper registrantMapper;
+    private final ObjectProvider<UserEmailBloomFilter> userEmailFilter;
 
     @Override
     public boolean existsByEmailOrNickname(String email, String nickname) {
@@ -38,5 +41,9 @@ public class RegistrantRepositoryAdapter implements RegistrantRepository {
         newUserEntity.setCredentialsNonExpired(true);
 
         jpaUserRepository.save(newUserEntity);
+
+        // Фильтр Блума допускает ложноположительные ответы, поэтому email
+        // добавляется сразу, не дожидаясь коммита: откат даст лишь лишний запрос в БД
+        userEmailFilter.ifAvailable(filter -> filter.add(newUserEntity.getEmail()));
     }
 }
\ No newline at end of file
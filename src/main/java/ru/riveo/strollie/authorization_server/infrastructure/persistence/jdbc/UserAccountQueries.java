@@ -0,0 +1,89 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.jdbc;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JDBC-доступ к аккаунтам в обход JPA: чтение и запись ролей выполняются одним запросом каждое.
+ * <p>
+ * Через {@code JpaUserRepository.findByEmail} загружаются все колонки users и отдельным
+ * SELECT коллекция ролей, а сохранение ролей повторно читает пользователя по id
+ * и удаляет и вставляет роли построчно.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserAccountQueries {
+
+    private static final String FIND_BY_EMAIL = """
+            SELECT u.id, u.email, u.enabled, u.account_non_locked,
+                   COALESCE(array_agg(r.role) FILTER (WHERE r.role IS NOT NULL), '{}') AS roles
+            FROM users u
+            LEFT JOIN user_roles r ON r.user_id = u.id
+            WHERE u.email = ?
+            GROUP BY u.id
+            """;
+
+    /**
+     * Версия увеличивается так же, как при изменении коллекции ролей через JPA.
+     * Все подзапросы видят один снимок, поэтому удаление и вставка не пересекаются.
+     */
+    private static final String REPLACE_ROLES = """
+            WITH account AS (
+                UPDATE users SET version = version + 1 WHERE id = ? RETURNING id, email
+            ), removed AS (
+                DELETE FROM user_roles
+                WHERE user_id IN (SELECT id FROM account) AND role <> ALL (?)
+            ), added AS (
+                INSERT INTO user_roles (user_id, role)
+                SELECT account.id, role FROM account, unnest(?::varchar[]) AS role
+                ON CONFLICT DO NOTHING
+            )
+            SELECT email FROM account
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<UserAccountRow> findByEmail(String email) {
+        List<UserAccountRow> rows = jdbcTemplate.query(FIND_BY_EMAIL, UserAccountQueries::mapRow, email);
+        return rows.stream().findFirst();
+    }
+
+    /**
+     * Приводит набор ролей пользователя к {@code roles} одним запросом.
+     *
+     * @return email пользователя или пустой результат, если пользователя нет.
+     */
+    public Optional<String> replaceRoles(UUID userId, Set<String> roles) {
+        List<String> emails = jdbcTemplate.query(REPLACE_ROLES, ps -> {
+            Array roleArray = ps.getConnection().createArrayOf("varchar", roles.toArray());
+            ps.setObject(1, userId);
+            ps.setArray(2, roleArray);
+            ps.setArray(3, roleArray);
+        }, (rs, rowNum) -> rs.getString("email"));
+        return emails.stream().findFirst();
+    }
+
+    private static UserAccountRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Array roles = rs.getArray("roles");
+        try {
+            return new UserAccountRow(
+                    rs.getObject("id", UUID.class),
+                    rs.getString("email"),
+                    rs.getBoolean("enabled"),
+                    rs.getBoolean("account_non_locked"),
+                    Set.of((String[]) roles.getArray()));
+        } finally {
+            roles.free();
+        }
+    }
+}
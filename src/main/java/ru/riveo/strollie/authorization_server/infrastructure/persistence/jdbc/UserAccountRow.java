@@ -0,0 +1,16 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.jdbc;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Проекция пользователя, нужная для аутентификации и управления ролями.
+ */
+public record UserAccountRow(
+        UUID id,
+        String email,
+        boolean enabled,
+        boolean accountNonLocked,
+        Set<String> roles
+) {
+}
@@ -2,8 +2,12 @@ package ru.riveo.strollie.authorization_server.infrastructure.persistence.jpa;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -15,4 +19,12 @@ public interface JpaUserRepository extends JpaRepository<UserEntity, UUID> {
 
     boolean existsByNickname(String nickname);
 
+    /**
+     * Потоково читает все email без загрузки сущностей.
+     * Должен вызываться внутри транзакции, поток нужно закрыть.
+     */
+    @Query("select u.email from UserEntity u")
+    @QueryHints(@jakarta.persistence.QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<String> streamAllEmails();
+
 }
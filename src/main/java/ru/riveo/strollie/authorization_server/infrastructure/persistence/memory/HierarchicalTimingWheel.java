@@ -0,0 +1,103 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.memory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров: постановка и срабатывание таймера за O(1).
+ * <p>
+ * Уровень 0 делится на {@code wheelSize} слотов по одному тику, каждый следующий уровень -
+ * на слоты в {@code wheelSize} раз длиннее. Дальние таймеры лежат на верхних уровнях и по мере
+ * приближения срока переносятся вниз. Слоты - неблокирующие очереди, поэтому таймеры можно
+ * ставить из любых потоков; продвигает колесо один поток.
+ * <p>
+ * Таймер, поставленный одновременно с обработкой его слота, может сработать на оборот позже.
+ * Колесо только освобождает память, истечение проверяется при каждом чтении, поэтому
+ * опоздание на корректность не влияет.
+ */
+final class HierarchicalTimingWheel<K> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final Queue<Timer<K>>[][] slots;
+    private final Consumer<K> onExpire;
+    private volatile long currentTick;
+
+    @SuppressWarnings("unchecked")
+    HierarchicalTimingWheel(long tickMillis, int wheelSize, int levels, long startMillis, Consumer<K> onExpire) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.onExpire = onExpire;
+        this.currentTick = startMillis / tickMillis;
+        this.slots = new Queue[levels][wheelSize];
+        for (int level = 0; level < levels; level++) {
+            for (int slot = 0; slot < wheelSize; slot++) {
+                slots[level][slot] = new ConcurrentLinkedQueue<>();
+            }
+        }
+    }
+
+    /**
+     * Ставит таймер, который сработает не раньше {@code deadlineMillis}.
+     */
+    void schedule(K key, long deadlineMillis) {
+        long deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        schedule(new Timer<>(key, Math.max(deadlineTick, currentTick + 1)));
+    }
+
+    /**
+     * Продвигает колесо до {@code nowMillis}, вызывая обработчик для наступивших таймеров.
+     * Вызывается только одним потоком.
+     */
+    void advanceTo(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            long tick = currentTick + 1;
+            currentTick = tick;
+
+            // На границе слота верхнего уровня его таймеры переносятся на нижние уровни
+            long ticksPerSlot = 1;
+            for (int level = 1; level < slots.length; level++) {
+                ticksPerSlot *= wheelSize;
+                if (tick % ticksPerSlot != 0) {
+                    break;
+                }
+                Queue<Timer<K>> slot = slots[level][(int) ((tick / ticksPerSlot) % wheelSize)];
+                Timer<K> timer;
+                while ((timer = slot.poll()) != null) {
+                    schedule(timer);
+                }
+            }
+
+            Queue<Timer<K>> slot = slots[0][(int) (tick % wheelSize)];
+            int pending = slot.size();
+            for (int i = 0; i < pending; i++) {
+                Timer<K> timer = slot.poll();
+                if (timer == null) {
+                    break;
+                }
+                if (timer.deadlineTick() <= tick) {
+                    onExpire.accept(timer.key());
+                } else {
+                    schedule(timer);
+                }
+            }
+        }
+    }
+
+    private void schedule(Timer<K> timer) {
+        long delta = Math.max(1, timer.deadlineTick() - currentTick);
+        int level = 0;
+        long ticksPerSlot = 1;
+        while (level < slots.length - 1 && delta >= ticksPerSlot * wheelSize) {
+            level++;
+            ticksPerSlot *= wheelSize;
+        }
+        int slot = (int) ((timer.deadlineTick() / ticksPerSlot) % wheelSize);
+        slots[level][slot].offer(timer);
+    }
+
+    private record Timer<K>(K key, long deadlineTick) {
+    }
+}
@@ -0,0 +1,285 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.memory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpIssueResult;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpRepository;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpVerificationResult;
+
+/**
+ * Хранилище OTP в памяти процесса для развёртываний из одного узла и тестов без Redis.
+ * <p>
+ * Состояние email - неизменяемый {@link OtpState} в {@link ConcurrentHashMap}; каждая операция
+ * заменяет его одним {@code compute}, поэтому выдача и проверка атомарны так же, как Lua-скрипты
+ * Redis. Сроки жизни проверяются при каждом чтении, а {@link HierarchicalTimingWheel} удаляет
+ * истёкшие записи, чтобы неиспользованные коды не копились в памяти.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "app.otp.storage", name = "layout", havingValue = "memory")
+public class InMemoryOtpRepository implements OtpRepository, DisposableBean {
+
+    private static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_LEVELS = 4;
+
+    private final ConcurrentMap<String, OtpState> states = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private final HierarchicalTimingWheel<String> expirations;
+    private final ScheduledExecutorService ticker;
+
+    public InMemoryOtpRepository() {
+        this(Clock.systemUTC(), true);
+    }
+
+    InMemoryOtpRepository(Clock clock, boolean startTicker) {
+        this.clock = clock;
+        this.expirations = new HierarchicalTimingWheel<>(TICK_MILLIS, WHEEL_SIZE, WHEEL_LEVELS, clock.millis(),
+                this::expire);
+        if (startTicker) {
+            ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "otp-expiration");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ticker.scheduleAtFixedRate(this::expireDue, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            ticker = null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    @Override
+    public OtpIssueResult issueOtp(String email, String otp, int maxAttempts, long expiryMinutes,
+                                   long resendCooldownSeconds) {
+        long now = clock.millis();
+        long expiresAt = now + TimeUnit.MINUTES.toMillis(expiryMinutes);
+        long cooldownUntil = now + TimeUnit.SECONDS.toMillis(resendCooldownSeconds);
+        boolean[] issued = new boolean[1];
+        states.compute(email, (key, state) -> {
+            OtpState current = OtpState.live(state, now);
+            if (current.cooldownUntil() > now) {
+                return current.orNull();
+            }
+            issued[0] = true;
+            return new OtpState(otp, expiresAt, maxAttempts, expiresAt, cooldownUntil);
+        });
+        if (!issued[0]) {
+            return OtpIssueResult.RATE_LIMITED;
+        }
+        expirations.schedule(email, cooldownUntil);
+        expirations.schedule(email, expiresAt);
+        return OtpIssueResult.ISSUED;
+    }
+
+    @Override
+    public void storeOtp(String email, String otp, int maxAttempts, long expiryMinutes) {
+        long now = clock.millis();
+        long expiresAt = now + TimeUnit.MINUTES.toMillis(expiryMinutes);
+        states.compute(email, (key, state) -> OtpState.live(state, now)
+                .withCode(otp, expiresAt)
+                .withAttempts(maxAttempts, expiresAt));
+        expirations.schedule(email, expiresAt);
+    }
+
+    @Override
+    public OtpVerificationResult verifyAndConsume(String email, String otp) {
+        long now = clock.millis();
+        OtpVerificationResult[] result = new OtpVerificationResult[1];
+        states.compute(email, (key, state) -> {
+            OtpState current = OtpState.live(state, now);
+            if (current.code() == null) {
+                result[0] = OtpVerificationResult.MISSING;
+                return current.orNull();
+            }
+            // Счётчик без значения считается исчерпанным, как и в Redis
+            int remaining = current.attempts() != null ? current.attempts() - 1 : -1;
+            if (remaining < 0) {
+                result[0] = OtpVerificationResult.EXHAUSTED;
+                return null;
+            }
+            if (!MessageDigest.isEqual(current.code().getBytes(StandardCharsets.UTF_8),
+                    otp.getBytes(StandardCharsets.UTF_8))) {
+                if (remaining == 0) {
+                    result[0] = OtpVerificationResult.EXHAUSTED;
+                    return null;
+                }
+                result[0] = OtpVerificationResult.INVALID;
+                return current.withAttempts(remaining, current.attemptsExpiresAt());
+            }
+            result[0] = OtpVerificationResult.VALID;
+            return null;
+        });
+        return result[0];
+    }
+
+    @Override
+    public void saveOtp(String email, String otp, long expiryMinutes) {
+        long now = clock.millis();
+        long expiresAt = now + TimeUnit.MINUTES.toMillis(expiryMinutes);
+        states.compute(email, (key, state) -> OtpState.live(state, now).withCode(otp, expiresAt));
+        expirations.schedule(email, expiresAt);
+    }
+
+    @Override
+    public Optional<String> findOtp(String email) {
+        return Optional.ofNullable(OtpState.live(states.get(email), clock.millis()).code());
+    }
+
+    @Override
+    public void deleteOtp(String email) {
+        long now = clock.millis();
+        states.computeIfPresent(email, (key, state) -> OtpState.live(state, now).withCode(null, 0).orNull());
+    }
+
+    @Override
+    public void setInitialAttempts(String email, int maxAttempts, long expiryMinutes) {
+        long now = clock.millis();
+        long expiresAt = now + TimeUnit.MINUTES.toMillis(expiryMinutes);
+        states.compute(email, (key, state) -> OtpState.live(state, now).withAttempts(maxAttempts, expiresAt));
+        expirations.schedule(email, expiresAt);
+    }
+
+    @Override
+    public long decrementAndGetAttempts(String email) {
+        long now = clock.millis();
+        long[] remaining = {-1L};
+        states.computeIfPresent(email, (key, state) -> {
+            OtpState current = OtpState.live(state, now);
+            if (current.attempts() == null) {
+                return current.orNull();
+            }
+            remaining[0] = current.attempts() - 1L;
+            return current.withAttempts((int) remaining[0], current.attemptsExpiresAt());
+        });
+        return remaining[0];
+    }
+
+    @Override
+    public void deleteAttempts(String email) {
+        long now = clock.millis();
+        states.computeIfPresent(email, (key, state) -> OtpState.live(state, now).withAttempts(null, 0).orNull());
+    }
+
+    @Override
+    public boolean isRateLimited(String email) {
+        long now = clock.millis();
+        return OtpState.live(states.get(email), now).cooldownUntil() > now;
+    }
+
+    @Override
+    public void setRateLimit(String email, long durationSeconds) {
+        long now = clock.millis();
+        long cooldownUntil = now + TimeUnit.SECONDS.toMillis(durationSeconds);
+        states.compute(email, (key, state) -> OtpState.live(state, now).withCooldown(cooldownUntil));
+        expirations.schedule(email, cooldownUntil);
+    }
+
+    @Override
+    public void clearRateLimit(String email) {
+        long now = clock.millis();
+        states.computeIfPresent(email, (key, state) -> OtpState.live(state, now).withCooldown(0).orNull());
+    }
+
+    @Override
+    public boolean trySetRateLimit(String email, long durationSeconds) {
+        long now = clock.millis();
+        long cooldownUntil = now + TimeUnit.SECONDS.toMillis(durationSeconds);
+        boolean[] wasSet = new boolean[1];
+        states.compute(email, (key, state) -> {
+            OtpState current = OtpState.live(state, now);
+            if (current.cooldownUntil() > now) {
+                return current.orNull();
+            }
+            wasSet[0] = true;
+            return current.withCooldown(cooldownUntil);
+        });
+        if (wasSet[0]) {
+            expirations.schedule(email, cooldownUntil);
+        }
+        return wasSet[0];
+    }
+
+    /**
+     * Продвигает колесо таймеров до текущего момента.
+     */
+    void expireDue() {
+        expirations.advanceTo(clock.millis());
+    }
+
+    /**
+     * Число email, для которых хранится состояние.
+     */
+    int size() {
+        return states.size();
+    }
+
+    private void expire(String email) {
+        long now = clock.millis();
+        states.computeIfPresent(email, (key, state) -> OtpState.live(state, now).orNull());
+    }
+
+    /**
+     * Состояние OTP одного email. Нулевой срок означает отсутствие соответствующей части.
+     */
+    private record OtpState(String code, long codeExpiresAt, Integer attempts, long attemptsExpiresAt,
+                            long cooldownUntil) {
+
+        private static final OtpState EMPTY = new OtpState(null, 0, null, 0, 0);
+
+        /**
+         * Состояние без истёкших частей; для отсутствующего состояния - пустое.
+         */
+        static OtpState live(OtpState state, long now) {
+            if (state == null) {
+                return EMPTY;
+            }
+            boolean codeLive = state.code != null && state.codeExpiresAt > now;
+            boolean attemptsLive = state.attempts != null && state.attemptsExpiresAt > now;
+            boolean cooldownLive = state.cooldownUntil > now;
+            if (codeLive && attemptsLive && (cooldownLive || state.cooldownUntil == 0)) {
+                return state;
+            }
+            return new OtpState(
+                    codeLive ? state.code : null, codeLive ? state.codeExpiresAt : 0,
+                    attemptsLive ? state.attempts : null, attemptsLive ? state.attemptsExpiresAt : 0,
+                    cooldownLive ? state.cooldownUntil : 0);
+        }
+
+        OtpState withCode(String newCode, long expiresAt) {
+            return new OtpState(newCode, expiresAt, attempts, attemptsExpiresAt, cooldownUntil);
+        }
+
+        OtpState withAttempts(Integer newAttempts, long expiresAt) {
+            return new OtpState(code, codeExpiresAt, newAttempts, expiresAt, cooldownUntil);
+        }
+
+        OtpState withCooldown(long until) {
+            return new OtpState(code, codeExpiresAt, attempts, attemptsExpiresAt, until);
+        }
+
+        /**
+         * null, если не осталось ни одной части, - чтобы {@code compute} удалил запись из карты.
+         */
+        OtpState orNull() {
+            return code == null && attempts == null && cooldownUntil == 0 ? null : this;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+/**
+ * Схема ключей Redis для состояния OTP.
+ * <p>
+ * В схеме {@code untagged} ключи одного email имеют разные префиксы и в Redis Cluster
+ * попадают в разные слоты. В схеме {@code hash-tagged} email заключён в хэш-тег
+ * ({@code otp:{email}:code}), поэтому все ключи пользователя лежат в одном слоте
+ * и многоключевые скрипты работают в кластере.
+ */
+final class OtpRedisKeys {
+
+    static final OtpRedisKeys UNTAGGED = new OtpRedisKeys(false);
+
+    static final OtpRedisKeys HASH_TAGGED = new OtpRedisKeys(true);
+
+    private final boolean hashTagged;
+
+    private OtpRedisKeys(boolean hashTagged) {
+        this.hashTagged = hashTagged;
+    }
+
+    static OtpRedisKeys of(OtpStorageProperties.KeyScheme scheme) {
+        return scheme == OtpStorageProperties.KeyScheme.HASH_TAGGED ? HASH_TAGGED : UNTAGGED;
+    }
+
+    // Раскладка "keys": три независимых ключа на email
+
+    String otp(String email) {
+        return key("otp:", "code", email);
+    }
+
+    String attempts(String email) {
+        return key("otp_attempts:", "attempts", email);
+    }
+
+    String rateLimit(String email) {
+        return key("otp_rate_limit:", "rate_limit", email);
+    }
+
+    // Раскладка "hash": один хэш на email
+
+    String state(String email) {
+        return key("otp_state:", "state", email);
+    }
+
+    // Стратегия "derived": код не хранится, только отметка выдачи, поколение и счётчик ошибок
+
+    String issued(String email) {
+        return key("otp_issued:", "issued", email);
+    }
+
+    String generation(String email) {
+        return key("otp_generation:", "generation", email);
+    }
+
+    String failures(String email) {
+        return key("otp_failures:", "failures", email);
+    }
+
+    private String key(String untaggedPrefix, String taggedName, String email) {
+        return hashTagged ? "otp:{" + email + "}:" + taggedName : untaggedPrefix + email;
+    }
+}
@@ -0,0 +1,40 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки хранения состояния OTP в Redis.
+ *
+ * @param layout           Раскладка ключей: {@code keys} - три отдельных ключа на email,
+ *                         {@code hash} - один хэш на email с единым TTL,
+ *                         {@code memory} - в памяти процесса, без Redis (один узел, тесты).
+ * @param readLegacyKeys   Читать ли ключи раскладки {@code keys}, работая в раскладке {@code hash}.
+ *                         Нужно на время выкатки; отключается, когда старые ключи истекли.
+ * @param readHashState    Читать ли хэш раскладки {@code hash}, работая в раскладке {@code keys}.
+ *                         Включается на узлах {@code keys} до переключения раскладки (и на время отката),
+ *                         чтобы коды и кулдауны, выставленные узлами {@code hash}, действовали везде.
+ * @param keyScheme        Схема имён ключей: {@code untagged} - {@code otp:<email>};
+ *                         {@code hash-tagged} - {@code otp:{<email>}:code}, все ключи email в одном слоте кластера.
+ * @param readUntaggedKeys Читать ли ключи схемы {@code untagged}, работая в схеме {@code hash-tagged}
+ *                         (только раскладка {@code keys}). Допустимо, пока Redis не разделён на шарды.
+ */
+@ConfigurationProperties(prefix = "app.otp.storage")
+public record OtpStorageProperties(
+        @DefaultValue("keys") Layout layout,
+        @DefaultValue("true") boolean readLegacyKeys,
+        @DefaultValue("false") boolean readHashState,
+        @DefaultValue("untagged") KeyScheme keyScheme,
+        @DefaultValue("false") boolean readUntaggedKeys) {
+
+    public enum Layout {
+        KEYS,
+        HASH,
+        MEMORY
+    }
+
+    public enum KeyScheme {
+        UNTAGGED,
+        HASH_TAGGED
+    }
+}
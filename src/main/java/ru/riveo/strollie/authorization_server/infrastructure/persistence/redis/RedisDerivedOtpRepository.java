@@ -0,0 +1,74 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.DerivedOtpRepository;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpVerificationResult;
+
+/**
+ * Состояние стратегии "derived": отметка выдачи с кулдауном, поколение и счётчик ошибок.
+ * Ключи строятся по той же схеме, что и ключи хранимых кодов.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "app.otp", name = "strategy", havingValue = "derived")
+public class RedisDerivedOtpRepository implements DerivedOtpRepository {
+
+    private static final String STALE = "STALE";
+
+    private static final RedisScript<Long> ISSUE_SCRIPT =
+            RedisScripts.load("redis/otp/derived_issue.lua", Long.class);
+    private static final RedisScript<String> VERIFY_SCRIPT =
+            RedisScripts.load("redis/otp/derived_verify.lua", String.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final OtpRedisKeys keys;
+
+    public RedisDerivedOtpRepository(StringRedisTemplate redisTemplate, OtpStorageProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.keys = OtpRedisKeys.of(properties.keyScheme());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadScripts() {
+        RedisScripts.preload(redisTemplate.getRequiredConnectionFactory(), ISSUE_SCRIPT, VERIFY_SCRIPT);
+    }
+
+    @Override
+    public long issue(String email, long cooldownSeconds, long lifetimeSeconds) {
+        Long generation = redisTemplate.execute(ISSUE_SCRIPT,
+                List.of(keys.issued(email), keys.generation(email)),
+                String.valueOf(TimeUnit.SECONDS.toMillis(cooldownSeconds)),
+                String.valueOf(TimeUnit.SECONDS.toMillis(lifetimeSeconds)));
+        return generation != null ? generation : -1L;
+    }
+
+    @Override
+    public long generation(String email) {
+        String generation = redisTemplate.opsForValue().get(keys.generation(email));
+        return generation != null ? Long.parseLong(generation) : 0L;
+    }
+
+    @Override
+    public Optional<OtpVerificationResult> consume(String email, long generation, boolean matched, int maxAttempts,
+                                                   long lifetimeSeconds) {
+        String result = redisTemplate.execute(VERIFY_SCRIPT,
+                List.of(keys.issued(email), keys.generation(email), keys.failures(email), keys.rateLimit(email)),
+                String.valueOf(generation),
+                matched ? "1" : "0",
+                String.valueOf(maxAttempts),
+                String.valueOf(TimeUnit.SECONDS.toMillis(lifetimeSeconds)));
+        if (result == null) {
+            return Optional.of(OtpVerificationResult.MISSING);
+        }
+        return STALE.equals(result) ? Optional.empty() : Optional.of(OtpVerificationResult.valueOf(result));
+    }
+}
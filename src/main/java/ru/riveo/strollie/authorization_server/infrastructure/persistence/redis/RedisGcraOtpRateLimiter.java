@@ -0,0 +1,111 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.rate_limit.OtpRateLimitProperties;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.rate_limit.OtpRateLimiter;
+
+/**
+ * Ограничение частоты по алгоритму GCRA. Ключи измерений лежат в разных слотах Redis Cluster,
+ * поэтому каждое измерение проверяется и списывается отдельным скриптом с одним ключом. Если запрос
+ * отклоняет одно из измерений, уже списанные возвращаются, и отклонённый запрос не расходует лимит.
+ * Ключи, которые Redis уже отклонил, запоминаются в памяти узла до истечения Retry-After,
+ * и повторные запросы по ним отклоняются без обращения к Redis.
+ */
+@Component
+public class RedisGcraOtpRateLimiter implements OtpRateLimiter {
+
+    private static final RedisScript<Long> GCRA_SCRIPT = RedisScripts.load("redis/rate_limit/gcra.lua", Long.class);
+    private static final RedisScript<Long> REFUND_SCRIPT =
+            RedisScripts.load("redis/rate_limit/gcra_refund.lua", Long.class);
+
+    private static final String KEY_PREFIX = "otp_rate:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final OtpRateLimitProperties properties;
+    /**
+     * Ключ бакета -> момент (epoch ms), до которого он заблокирован.
+     */
+    private final Cache<String, Long> blockedUntil;
+
+    public RedisGcraOtpRateLimiter(StringRedisTemplate redisTemplate, OtpRateLimitProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.blockedUntil = Caffeine.newBuilder()
+                .maximumSize(properties.nearCacheSize())
+                .expireAfter(Expiry.creating((String key, Long until) ->
+                        Duration.ofMillis(Math.max(0, until - System.currentTimeMillis()))))
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadScripts() {
+        if (properties.enabled()) {
+            RedisScripts.preload(redisTemplate.getRequiredConnectionFactory(), GCRA_SCRIPT, REFUND_SCRIPT);
+        }
+    }
+
+    @Override
+    public long tryAcquire(String email, String clientAddress, String clientId) {
+        if (!properties.enabled()) {
+            return 0;
+        }
+        List<Bucket> buckets = new ArrayList<>(3);
+        // Регистр и пробелы не должны давать отдельный бакет для того же адреса
+        addBucket(buckets, "email:", email != null ? email.strip().toLowerCase(Locale.ROOT) : null,
+                properties.email());
+        addBucket(buckets, "ip:", clientAddress, properties.clientAddress());
+        addBucket(buckets, "client:", clientId, properties.client());
+        if (buckets.isEmpty()) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        for (Bucket bucket : buckets) {
+            Long until = blockedUntil.getIfPresent(bucket.key());
+            if (until != null && until > now) {
+                return until - now;
+            }
+        }
+
+        for (int i = 0; i < buckets.size(); i++) {
+            Bucket bucket = buckets.get(i);
+            Long waitMillis = redisTemplate.execute(GCRA_SCRIPT, List.of(bucket.key()),
+                    String.valueOf(bucket.limit().emissionIntervalMillis()),
+                    String.valueOf(bucket.limit().toleranceMillis()));
+            if (waitMillis != null && waitMillis > 0) {
+                blockedUntil.put(bucket.key(), now + waitMillis);
+                for (Bucket acquired : buckets.subList(0, i)) {
+                    redisTemplate.execute(REFUND_SCRIPT, List.of(acquired.key()),
+                            String.valueOf(acquired.limit().emissionIntervalMillis()));
+                }
+                return waitMillis;
+            }
+        }
+        return 0;
+    }
+
+    private static void addBucket(List<Bucket> buckets, String dimension, String value,
+                                  OtpRateLimitProperties.Limit limit) {
+        if (value == null || limit == null) {
+            return;
+        }
+        buckets.add(new Bucket(KEY_PREFIX + dimension + value, limit));
+    }
+
+    private record Bucket(String key, OtpRateLimitProperties.Limit limit) {
+    }
+}
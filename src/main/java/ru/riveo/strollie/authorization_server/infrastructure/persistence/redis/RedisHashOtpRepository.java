@@ -0,0 +1,187 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpIssueResult;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpRepository;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpVerificationResult;
+
+/**
+ * Хранилище OTP в раскладке "hash": код, оставшиеся попытки, время выдачи
+ * и окончание кулдауна хранятся полями одного хэша с единым TTL.
+ * <p>
+ * Один ключ вместо трёх экономит память Redis на служебных структурах ключей
+ * и на учёте истечения. Пока включён {@code app.otp.storage.read-legacy-keys},
+ * операции дополнительно читают ключи раскладки "keys", чтобы коды, выданные
+ * до переключения, оставались рабочими до своего истечения.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "app.otp.storage", name = "layout", havingValue = "hash")
+public class RedisHashOtpRepository implements OtpRepository {
+
+    private static final String CODE_FIELD = "code";
+    private static final String ATTEMPTS_FIELD = "attempts";
+    private static final String ISSUED_AT_FIELD = "issued_at";
+    private static final String COOLDOWN_UNTIL_FIELD = "cooldown_until";
+
+    private static final RedisScript<Long> ISSUE_OTP_SCRIPT =
+            RedisScripts.load("redis/otp/hash_issue_otp.lua", Long.class);
+    private static final RedisScript<String> VERIFY_OTP_SCRIPT =
+            RedisScripts.load("redis/otp/hash_verify_otp.lua", String.class);
+    private static final RedisScript<Long> SET_COOLDOWN_SCRIPT =
+            RedisScripts.load("redis/otp/hash_set_cooldown.lua", Long.class);
+    private static final RedisScript<Long> COOLDOWN_ACTIVE_SCRIPT =
+            RedisScripts.load("redis/otp/hash_cooldown_active.lua", Long.class);
+    private static final RedisScript<Long> PUT_SCRIPT =
+            RedisScripts.load("redis/otp/hash_put.lua", Long.class);
+    private static final RedisScript<Long> DECREMENT_ATTEMPTS_SCRIPT =
+            RedisScripts.load("redis/otp/hash_decrement_attempts.lua", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final OtpStorageProperties properties;
+    private final OtpRedisKeys keys;
+
+    public RedisHashOtpRepository(StringRedisTemplate redisTemplate, OtpStorageProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.keys = OtpRedisKeys.of(properties.keyScheme());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadScripts() {
+        RedisScripts.preload(redisTemplate.getRequiredConnectionFactory(),
+                ISSUE_OTP_SCRIPT, VERIFY_OTP_SCRIPT, SET_COOLDOWN_SCRIPT,
+                COOLDOWN_ACTIVE_SCRIPT, PUT_SCRIPT, DECREMENT_ATTEMPTS_SCRIPT);
+    }
+
+    @Override
+    public OtpIssueResult issueOtp(String email, String otp, int maxAttempts, long expiryMinutes,
+                                   long resendCooldownSeconds) {
+        Long issued = redisTemplate.execute(ISSUE_OTP_SCRIPT,
+                List.of(keys.state(email), keys.rateLimit(email), keys.otp(email), keys.attempts(email)),
+                otp,
+                String.valueOf(maxAttempts),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(expiryMinutes)),
+                String.valueOf(resendCooldownSeconds),
+                legacyFlag());
+        return Long.valueOf(1L).equals(issued) ? OtpIssueResult.ISSUED : OtpIssueResult.RATE_LIMITED;
+    }
+
+    @Override
+    public void storeOtp(String email, String otp, int maxAttempts, long expiryMinutes) {
+        redisTemplate.execute(PUT_SCRIPT, List.of(keys.state(email)),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(expiryMinutes)),
+                CODE_FIELD, otp,
+                ATTEMPTS_FIELD, String.valueOf(maxAttempts),
+                ISSUED_AT_FIELD, "");
+        if (properties.readLegacyKeys()) {
+            redisTemplate.delete(List.of(keys.otp(email), keys.attempts(email)));
+        }
+    }
+
+    @Override
+    public OtpVerificationResult verifyAndConsume(String email, String otp) {
+        String result = redisTemplate.execute(VERIFY_OTP_SCRIPT,
+                List.of(keys.state(email), keys.otp(email),
+                        keys.attempts(email), keys.rateLimit(email)),
+                otp,
+                legacyFlag());
+        return result != null ? OtpVerificationResult.valueOf(result) : OtpVerificationResult.MISSING;
+    }
+
+    @Override
+    public void saveOtp(String email, String otp, long expiryMinutes) {
+        redisTemplate.execute(PUT_SCRIPT, List.of(keys.state(email)),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(expiryMinutes)),
+                CODE_FIELD, otp,
+                ISSUED_AT_FIELD, "");
+    }
+
+    @Override
+    public Optional<String> findOtp(String email) {
+        Object storedOtp = redisTemplate.opsForHash().get(keys.state(email), CODE_FIELD);
+        if (storedOtp == null && properties.readLegacyKeys()) {
+            storedOtp = redisTemplate.opsForValue().get(keys.otp(email));
+        }
+        return Optional.ofNullable(storedOtp).map(Object::toString);
+    }
+
+    @Override
+    public void deleteOtp(String email) {
+        redisTemplate.opsForHash().delete(keys.state(email), CODE_FIELD, ISSUED_AT_FIELD);
+        if (properties.readLegacyKeys()) {
+            redisTemplate.delete(keys.otp(email));
+        }
+    }
+
+    @Override
+    public void setInitialAttempts(String email, int maxAttempts, long expiryMinutes) {
+        redisTemplate.execute(PUT_SCRIPT, List.of(keys.state(email)),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(expiryMinutes)),
+                ATTEMPTS_FIELD, String.valueOf(maxAttempts));
+    }
+
+    @Override
+    public long decrementAndGetAttempts(String email) {
+        Long remaining = redisTemplate.execute(DECREMENT_ATTEMPTS_SCRIPT,
+                List.of(keys.state(email), keys.attempts(email)),
+                legacyFlag());
+        return remaining != null ? remaining : -1L;
+    }
+
+    @Override
+    public void deleteAttempts(String email) {
+        redisTemplate.opsForHash().delete(keys.state(email), ATTEMPTS_FIELD);
+        if (properties.readLegacyKeys()) {
+            redisTemplate.delete(keys.attempts(email));
+        }
+    }
+
+    @Override
+    public boolean isRateLimited(String email) {
+        Long active = redisTemplate.execute(COOLDOWN_ACTIVE_SCRIPT,
+                List.of(keys.state(email), keys.rateLimit(email)),
+                legacyFlag());
+        return Long.valueOf(1L).equals(active);
+    }
+
+    @Override
+    public void setRateLimit(String email, long durationSeconds) {
+        setCooldown(email, durationSeconds, false);
+    }
+
+    @Override
+    public void clearRateLimit(String email) {
+        redisTemplate.opsForHash().delete(keys.state(email), COOLDOWN_UNTIL_FIELD);
+        if (properties.readLegacyKeys()) {
+            redisTemplate.delete(keys.rateLimit(email));
+        }
+    }
+
+    @Override
+    public boolean trySetRateLimit(String email, long durationSeconds) {
+        return setCooldown(email, durationSeconds, true);
+    }
+
+    private boolean setCooldown(String email, long durationSeconds, boolean onlyIfAbsent) {
+        Long wasSet = redisTemplate.execute(SET_COOLDOWN_SCRIPT,
+                List.of(keys.state(email), keys.rateLimit(email)),
+                String.valueOf(durationSeconds),
+                onlyIfAbsent ? "1" : "0",
+                legacyFlag());
+        return Long.valueOf(1L).equals(wasSet);
+    }
+
+    private String legacyFlag() {
+        return properties.readLegacyKeys() ? "1" : "0";
+    }
+}
@@ -0,0 +1,43 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+/**
+ * Аренда в Redis, под которой периодическую задачу выполняет один узел.
+ * <p>
+ * Владелец продлевает аренду при каждом запуске задачи; если узел упал,
+ * аренда истекает через {@code ttl} и переходит к другому узлу.
+ */
+public class RedisLease {
+
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = RedisScripts.load("redis/lease/acquire.lua", Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScripts.load("redis/lease/release.lua", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String key;
+    private final Duration ttl;
+    private final String owner = UUID.randomUUID().toString();
+
+    public RedisLease(StringRedisTemplate redisTemplate, String key, Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.key = key;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Захватывает аренду или продлевает уже принадлежащую этому узлу.
+     */
+    public boolean tryAcquire() {
+        Long acquired = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(key), owner, String.valueOf(ttl.toMillis()));
+        return Long.valueOf(1L).equals(acquired);
+    }
+
+    public void release() {
+        redisTemplate.execute(RELEASE_SCRIPT, List.of(key), owner);
+    }
+}
@@ -1,86 +1,232 @@
 package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Repository;
 
-import lombok.RequiredArgsConstructor;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpIssueResult;
 import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpRepository;
-
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpVerificationResult;
+
+/**
+ * Хранилище OTP в раскладке "keys": код, счётчик попыток и кулдаун
+ * лежат в трёх отдельных ключах со своими TTL.
+ * <p>
+ * Пока включён {@code app.otp.storage.read-hash-state}, операции дополнительно читают и очищают
+ * хэш раскладки "hash", поэтому коды и кулдауны узлов "hash" действуют и на этом узле
+ * во время переключения раскладки в любую сторону.
+ */
 @Repository
-@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.otp.storage", name = "layout", havingValue = "keys", matchIfMissing = true)
 public class RedisOtpRepository implements OtpRepository {
 
-    private static final String OTP_KEY_PREFIX = "otp:";
-    private static final String ATTEMPTS_KEY_PREFIX = "otp_attempts:";
-    private static final String RATE_LIMIT_KEY_PREFIX = "otp_rate_limit:";
+    private static final RedisScript<Long> ISSUE_OTP_SCRIPT = RedisScripts.load("redis/otp/issue_otp.lua", Long.class);
+    private static final RedisScript<Long> TRY_SET_RATE_LIMIT_SCRIPT =
+            RedisScripts.load("redis/otp/try_set_rate_limit.lua", Long.class);
+    private static final RedisScript<Long> STORE_OTP_SCRIPT = RedisScripts.load("redis/otp/store_otp.lua", Long.class);
+    private static final RedisScript<String> VERIFY_OTP_SCRIPT = RedisScripts.load("redis/otp/verify_otp.lua", String.class);
+    private static final RedisScript<String> HASH_VERIFY_OTP_SCRIPT =
+            RedisScripts.load("redis/otp/hash_verify_otp.lua", String.class);
+    private static final RedisScript<Long> HASH_COOLDOWN_ACTIVE_SCRIPT =
+            RedisScripts.load("redis/otp/hash_cooldown_active.lua", Long.class);
+
+    private static final String HASH_CODE_FIELD = "code";
+    private static final String HASH_ATTEMPTS_FIELD = "attempts";
+    private static final String HASH_ISSUED_AT_FIELD = "issued_at";
+    private static final String HASH_COOLDOWN_UNTIL_FIELD = "cooldown_until";
 
     private final StringRedisTemplate redisTemplate;
+    private final OtpRedisKeys keys;
+    /**
+     * Ключи прежней схемы, которые дочитываются на время миграции; null - миграции нет.
+     * Кулдаун прежней схемы передаётся в скрипты выдачи вместе с новыми ключами, чтобы проверка
+     * была атомарной. Такие скрипты пересекают слоты, поэтому миграция выполняется на одиночном Redis.
+     */
+    private final OtpRedisKeys previousKeys;
+    private final boolean readHashState;
+
+    public RedisOtpRepository(StringRedisTemplate redisTemplate, OtpStorageProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.keys = OtpRedisKeys.of(properties.keyScheme());
+        this.previousKeys = properties.keyScheme() == OtpStorageProperties.KeyScheme.HASH_TAGGED
+                && properties.readUntaggedKeys() ? OtpRedisKeys.UNTAGGED : null;
+        this.readHashState = properties.readHashState();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadScripts() {
+        RedisScripts.preload(redisTemplate.getRequiredConnectionFactory(), ISSUE_OTP_SCRIPT, TRY_SET_RATE_LIMIT_SCRIPT, STORE_OTP_SCRIPT, VERIFY_OTP_SCRIPT,
+                HASH_VERIFY_OTP_SCRIPT, HASH_COOLDOWN_ACTIVE_SCRIPT);
+    }
+
+    @Override
+    public OtpIssueResult issueOtp(String email, String otp, int maxAttempts, long expiryMinutes,
+                                   long resendCooldownSeconds) {
+        // Кулдаун, код и счётчик попыток записываются одним скриптом за один round trip;
+        // кулдауны переходного периода проверяются в том же скрипте
+        List<String> scriptKeys = new ArrayList<>(List.of(keys.rateLimit(email), keys.otp(email),
+                keys.attempts(email), keys.state(email)));
+        if (previousKeys != null) {
+            scriptKeys.add(previousKeys.rateLimit(email));
+        }
+        Long issued = redisTemplate.execute(ISSUE_OTP_SCRIPT, scriptKeys,
+                otp,
+                String.valueOf(maxAttempts),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(expiryMinutes)),
+                String.valueOf(resendCooldownSeconds),
+                readHashState ? "1" : "0");
+        return Long.valueOf(1L).equals(issued) ? OtpIssueResult.ISSUED : OtpIssueResult.RATE_LIMITED;
+    }
+
+    @Override
+    public void storeOtp(String email, String otp, int maxAttempts, long expiryMinutes) {
+        redisTemplate.execute(STORE_OTP_SCRIPT,
+                List.of(keys.otp(email), keys.attempts(email)),
+                otp,
+                String.valueOf(maxAttempts),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(expiryMinutes)));
+        if (readHashState) {
+            redisTemplate.opsForHash().delete(keys.state(email), HASH_CODE_FIELD, HASH_ATTEMPTS_FIELD,
+                    HASH_ISSUED_AT_FIELD);
+        }
+    }
+
+    @Override
+    public OtpVerificationResult verifyAndConsume(String email, String otp) {
+        OtpVerificationResult result = verifyAndConsume(keys, email, otp);
+        if (result == OtpVerificationResult.MISSING && readHashState) {
+            // Код мог выдать узел, работающий в раскладке "hash"
+            String hashResult = redisTemplate.execute(HASH_VERIFY_OTP_SCRIPT,
+                    List.of(keys.state(email), keys.otp(email), keys.attempts(email), keys.rateLimit(email)),
+                    otp,
+                    "0");
+            result = hashResult != null ? OtpVerificationResult.valueOf(hashResult) : OtpVerificationResult.MISSING;
+        }
+        if (result == OtpVerificationResult.MISSING && previousKeys != null) {
+            // Код мог быть выдан до переключения схемы ключей
+            result = verifyAndConsume(previousKeys, email, otp);
+        }
+        return result;
+    }
+
+    private OtpVerificationResult verifyAndConsume(OtpRedisKeys scheme, String email, String otp) {
+        // Сравнение, декремент и очистка выполняются на стороне Redis,
+        // поэтому две параллельные попытки не могут прочитать код до декремента
+        String result = redisTemplate.execute(VERIFY_OTP_SCRIPT,
+                List.of(scheme.otp(email), scheme.attempts(email), scheme.rateLimit(email)),
+                otp);
+        return result != null ? OtpVerificationResult.valueOf(result) : OtpVerificationResult.MISSING;
+    }
 
     @Override
     public void saveOtp(String email, String otp, long expiryMinutes) {
-        String otpKey = OTP_KEY_PREFIX + email;
+        String otpKey = keys.otp(email);
         redisTemplate.opsForValue().set(otpKey, otp, expiryMinutes, TimeUnit.MINUTES);
     }
 
     @Override
     public Optional<String> findOtp(String email) {
-        String otpKey = OTP_KEY_PREFIX + email;
-        String storedOtp = redisTemplate.opsForValue().get(otpKey);
+        String storedOtp = redisTemplate.opsForValue().get(keys.otp(email));
+        if (storedOtp == null && previousKeys != null) {
+            storedOtp = redisTemplate.opsForValue().get(previousKeys.otp(email));
+        }
+        if (storedOtp == null && readHashState) {
+            storedOtp = (String) redisTemplate.opsForHash().get(keys.state(email), HASH_CODE_FIELD);
+        }
         return Optional.ofNullable(storedOtp);
     }
 
     @Override
     public void deleteOtp(String email) {
-        String otpKey = OTP_KEY_PREFIX + email;
-        redisTemplate.delete(otpKey);
+        redisTemplate.delete(keys.otp(email));
+        if (previousKeys != null) {
+            redisTemplate.delete(previousKeys.otp(email));
+        }
+        if (readHashState) {
+            redisTemplate.opsForHash().delete(keys.state(email), HASH_CODE_FIELD, HASH_ISSUED_AT_FIELD);
+        }
     }
 
     @Override
     public void setInitialAttempts(String email, int maxAttempts, long expiryMinutes) {
-        String attemptsKey = ATTEMPTS_KEY_PREFIX + email;
+        String attemptsKey = keys.attempts(email);
         redisTemplate.opsForValue().set(attemptsKey, String.valueOf(maxAttempts), expiryMinutes, TimeUnit.MINUTES);
     }
 
     @Override
     public long decrementAndGetAttempts(String email) {
-        String attemptsKey = ATTEMPTS_KEY_PREFIX + email;
+        String attemptsKey = keys.attempts(email);
         Long remaining = redisTemplate.opsForValue().decrement(attemptsKey);
         return remaining != null ? remaining : -1L;
     }
 
     @Override
     public void deleteAttempts(String email) {
-        String attemptsKey = ATTEMPTS_KEY_PREFIX + email;
-        redisTemplate.delete(attemptsKey);
+        redisTemplate.delete(keys.attempts(email));
+        if (previousKeys != null) {
+            redisTemplate.delete(previousKeys.attempts(email));
+        }
+        if (readHashState) {
+            redisTemplate.opsForHash().delete(keys.state(email), HASH_ATTEMPTS_FIELD);
+        }
     }
 
     @Override
     public boolean isRateLimited(String email) {
-        String rateLimitKey = RATE_LIMIT_KEY_PREFIX + email;
-        return redisTemplate.hasKey(rateLimitKey);
+        return redisTemplate.hasKey(keys.rateLimit(email))
+                || previousKeys != null && redisTemplate.hasKey(previousKeys.rateLimit(email))
+                || readHashState && hashCooldownActive(email);
     }
 
     @Override
     public void setRateLimit(String email, long durationSeconds) {
-        String rateLimitKey = RATE_LIMIT_KEY_PREFIX + email;
+        String rateLimitKey = keys.rateLimit(email);
         redisTemplate.opsForValue().set(rateLimitKey, "locked", durationSeconds, TimeUnit.SECONDS);
     }
 
     @Override
     public void clearRateLimit(String email) {
-        String rateLimitKey = RATE_LIMIT_KEY_PREFIX + email;
-        redisTemplate.delete(rateLimitKey);
+        redisTemplate.delete(keys.rateLimit(email));
+        if (previousKeys != null) {
+            redisTemplate.delete(previousKeys.rateLimit(email));
+        }
+        if (readHashState) {
+            redisTemplate.opsForHash().delete(keys.state(email), HASH_COOLDOWN_UNTIL_FIELD);
+        }
     }
 
     @Override
     public boolean trySetRateLimit(String email, long durationSeconds) {
-        String rateLimitKey = RATE_LIMIT_KEY_PREFIX + email;
-        // setIfAbsent - это атомарная операция.
-        // Она устанавливает ключ, только если его нет, и возвращает true/false.
-        Boolean wasSet = redisTemplate.opsForValue().setIfAbsent(rateLimitKey, "locked", durationSeconds, TimeUnit.SECONDS);
-        return Boolean.TRUE.equals(wasSet);
+        if (previousKeys == null && !readHashState) {
+            // setIfAbsent - это атомарная операция.
+            // Она устанавливает ключ, только если его нет, и возвращает true/false.
+            Boolean wasSet = redisTemplate.opsForValue().setIfAbsent(keys.rateLimit(email), "locked",
+                    durationSeconds, TimeUnit.SECONDS);
+            return Boolean.TRUE.equals(wasSet);
+        }
+        // Кулдауны переходного периода проверяются в одном скрипте с установкой нового
+        List<String> scriptKeys = new ArrayList<>(List.of(keys.rateLimit(email), keys.state(email)));
+        if (previousKeys != null) {
+            scriptKeys.add(previousKeys.rateLimit(email));
+        }
+        Long wasSet = redisTemplate.execute(TRY_SET_RATE_LIMIT_SCRIPT, scriptKeys,
+                String.valueOf(durationSeconds),
+                readHashState ? "1" : "0");
+        return Long.valueOf(1L).equals(wasSet);
+    }
+
+    private boolean hashCooldownActive(String email) {
+        Long active = redisTemplate.execute(HASH_COOLDOWN_ACTIVE_SCRIPT,
+                List.of(keys.state(email), keys.rateLimit(email)),
+                "0");
+        return Long.valueOf(1L).equals(active);
     }
 }
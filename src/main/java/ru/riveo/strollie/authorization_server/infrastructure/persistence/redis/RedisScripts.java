@@ -0,0 +1,40 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Вспомогательные методы для Lua-скриптов Redis.
+ * Скрипты лежат в classpath:redis/ и выполняются через EVALSHA,
+ * RedisTemplate сам откатывается на EVAL, если скрипт пропал из кэша сервера.
+ */
+@Slf4j
+public final class RedisScripts {
+
+    private RedisScripts() {
+    }
+
+    public static <T> RedisScript<T> load(String path, Class<T> resultType) {
+        return RedisScript.of(new ClassPathResource(path), resultType);
+    }
+
+    /**
+     * Загружает скрипты в кэш Redis (SCRIPT LOAD), чтобы первый же EVALSHA не получил NOSCRIPT.
+     * Недоступность Redis на старте не считается фатальной.
+     */
+    public static void preload(RedisConnectionFactory connectionFactory, RedisScript<?>... scripts) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            for (RedisScript<?> script : scripts) {
+                connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to preload Redis scripts, they will be loaded on first use: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.jpa.JpaUserRepository;
+
+/**
+ * Фильтр Блума зарегистрированных email на битовой карте Redis.
+ * <p>
+ * Битовая карта общая для всех узлов. Её строит один узел (под блокировкой)
+ * потоковым чтением таблицы users, а новые регистрации дописываются сразу при сохранении.
+ * Пока фильтр не построен (например, после очистки Redis), он отвечает "возможно есть",
+ * и проверка уходит в БД, а построение запускается в фоне.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.otp.user-filter", name = "enabled", havingValue = "true")
+@Slf4j
+public class UserEmailBloomFilter {
+
+    private static final RedisScript<Long> ADD_SCRIPT = RedisScripts.load("redis/users/bloom_add.lua", Long.class);
+    private static final RedisScript<Long> CONTAINS_SCRIPT =
+            RedisScripts.load("redis/users/bloom_contains.lua", Long.class);
+
+    private static final Duration BUILD_LOCK_TTL = Duration.ofMinutes(10);
+
+    private final StringRedisTemplate redisTemplate;
+    private final JpaUserRepository jpaUserRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int buildBatchSize;
+
+    private final long bitCount;
+    private final int hashCount;
+    private final String bitmapKey;
+    private final String readyKey;
+    private final String buildLockKey;
+
+    private final AtomicBoolean buildInProgress = new AtomicBoolean();
+
+    public UserEmailBloomFilter(StringRedisTemplate redisTemplate,
+                                JpaUserRepository jpaUserRepository,
+                                PlatformTransactionManager transactionManager,
+                                UserEmailFilterProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.jpaUserRepository = jpaUserRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.buildBatchSize = properties.buildBatchSize();
+
+        // Классические формулы: m = -n*ln(p)/ln(2)^2, k = m/n*ln(2)
+        long n = Math.max(1, properties.expectedInsertions());
+        double p = properties.falsePositiveProbability();
+        this.bitCount = Math.min(1L << 32, (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2))));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+
+        // Параметры входят в имя ключа: при их смене фильтр строится заново, а не портится
+        String keyBase = "user_email_bloom:" + bitCount + ":" + hashCount;
+        this.bitmapKey = keyBase;
+        this.readyKey = keyBase + ":ready";
+        this.buildLockKey = keyBase + ":building";
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        RedisScripts.preload(redisTemplate.getRequiredConnectionFactory(), ADD_SCRIPT, CONTAINS_SCRIPT);
+        scheduleBuildIfMissing();
+    }
+
+    /**
+     * @return false, если email точно не зарегистрирован; true - если возможно зарегистрирован
+     * или фильтр ещё не построен.
+     */
+    public boolean mightContain(String email) {
+        Long result = redisTemplate.execute(CONTAINS_SCRIPT, List.of(bitmapKey, readyKey), offsets(email));
+        if (result == null || result < 0) {
+            scheduleBuildIfMissing();
+            return true;
+        }
+        return result == 1L;
+    }
+
+    public void add(String email) {
+        redisTemplate.execute(ADD_SCRIPT, List.of(bitmapKey), offsets(email));
+    }
+
+    /**
+     * Строит фильтр потоковым чтением таблицы users. Выполняется одним узлом кластера.
+     */
+    public void build() {
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(buildLockKey, "locked", BUILD_LOCK_TTL);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("User email filter is being built by another node");
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            long added = readOnlyTransaction.execute(status -> {
+                try (Stream<String> emails = jpaUserRepository.streamAllEmails()) {
+                    List<Object> batch = new ArrayList<>(buildBatchSize * hashCount);
+                    long count = 0;
+                    for (String email : (Iterable<String>) emails::iterator) {
+                        batch.addAll(Arrays.asList(offsets(email)));
+                        count++;
+                        if (batch.size() >= buildBatchSize * hashCount) {
+                            redisTemplate.execute(ADD_SCRIPT, List.of(bitmapKey), batch.toArray());
+                            batch.clear();
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        redisTemplate.execute(ADD_SCRIPT, List.of(bitmapKey), batch.toArray());
+                    }
+                    return count;
+                }
+            });
+            redisTemplate.opsForValue().set(readyKey, String.valueOf(added));
+            log.info("User email filter built: {} emails, {} bits, {} hashes in {} ms",
+                    added, bitCount, hashCount, Duration.ofNanos(System.nanoTime() - started).toMillis());
+        } finally {
+            redisTemplate.delete(buildLockKey);
+        }
+    }
+
+    private void scheduleBuildIfMissing() {
+        if (!buildInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        Thread builder = new Thread(() -> {
+            try {
+                if (!Boolean.TRUE.equals(redisTemplate.hasKey(readyKey))) {
+                    build();
+                }
+            } catch (Exception e) {
+                log.warn("Failed to build user email filter: {}", e.getMessage());
+            } finally {
+                buildInProgress.set(false);
+            }
+        }, "user-email-filter-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * Смещения битов по схеме двойного хэширования (Kirsch-Mitzenmacher):
+     * g_i = h1 + i * h2 по модулю размера битовой карты.
+     */
+    private Object[] offsets(String email) {
+        ByteBuffer digest = ByteBuffer.wrap(sha256(email));
+        long h1 = digest.getLong();
+        long h2 = digest.getLong();
+        Object[] offsets = new Object[hashCount];
+        for (int i = 0; i < hashCount; i++) {
+            offsets[i] = Long.toString(Math.floorMod(h1 + i * h2, bitCount));
+        }
+        return offsets;
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки фильтра Блума зарегистрированных email.
+ *
+ * @param enabled                  Включает фильтр перед запросом в БД.
+ * @param expectedInsertions       Ожидаемое число зарегистрированных email.
+ * @param falsePositiveProbability Допустимая доля ложноположительных ответов.
+ * @param buildBatchSize           Сколько email добавляется в фильтр за один вызов Redis при построении.
+ */
+@ConfigurationProperties(prefix = "app.otp.user-filter")
+public record UserEmailFilterProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("1000000") long expectedInsertions,
+        @DefaultValue("0.01") double falsePositiveProbability,
+        @DefaultValue("1000") int buildBatchSize) {
+}
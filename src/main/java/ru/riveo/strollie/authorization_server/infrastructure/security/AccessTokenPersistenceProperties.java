@@ -0,0 +1,22 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки хранения access-токенов.
+ *
+ * @param mode            Хранить access-токен, его claims и принципала в авторизации или только то,
+ *                        что нужно обмену и отзыву refresh-токена.
+ * @param revocationCheck Проверять JWT по списку отозванных авторизаций в Redis.
+ */
+@ConfigurationProperties(prefix = "app.authorization.access-tokens")
+public record AccessTokenPersistenceProperties(
+        @DefaultValue("stored") Mode mode,
+        @DefaultValue("false") boolean revocationCheck) {
+
+    public enum Mode {
+        STORED,
+        STATELESS
+    }
+}
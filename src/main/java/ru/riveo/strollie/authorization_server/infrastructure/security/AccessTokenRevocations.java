@@ -0,0 +1,36 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.time.Duration;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Отозванные авторизации для проверки access-токенов, которые не хранятся на сервере.
+ * <p>
+ * Access-токен несёт id своей авторизации в приватном claim {@value #AUTHORIZATION_CLAIM}. Claim {@code sid}
+ * не используется: в OIDC это id сессии, и его трактуют клиенты и logout. Отметка об отзыве
+ * живёт не дольше access-токена, после этого токен отвергается по сроку действия.
+ * <p>
+ * Список проверяют только декодеры этого сервера. Сторонний ресурс-сервер, проверяющий JWT по JWKS,
+ * отзыв не увидит, если сам не сверяет claim с ключами {@code revoked_authorization:<id>} в Redis.
+ */
+public class AccessTokenRevocations {
+
+    public static final String AUTHORIZATION_CLAIM = "authz_id";
+
+    private static final String KEY_PREFIX = "revoked_authorization:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    public AccessTokenRevocations(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public void revoke(String authorizationId, Duration accessTokenTimeToLive) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + authorizationId, "1", accessTokenTimeToLive);
+    }
+
+    public boolean isRevoked(String authorizationId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + authorizationId));
+    }
+}
@@ -0,0 +1,17 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.util.Map;
+
+/**
+ * Кодирование атрибутов авторизации и метаданных токенов для колонок {@code text} или {@code bytea}
+ * ({@code attributes}, {@code *_metadata}).
+ */
+public interface AuthorizationAttributeCodec {
+
+    byte[] encode(Map<String, Object> attributes);
+
+    /**
+     * Декодирует значение колонки; должен читать и значения, записанные другими кодеками.
+     */
+    Map<String, Object> decode(byte[] data);
+}
@@ -0,0 +1,21 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки кодирования атрибутов авторизаций и метаданных токенов.
+ *
+ * @param codec                Формат записи; читаются оба формата.
+ * @param compressionThreshold Размер в байтах, начиная с которого бинарное значение сжимается; 0 - не сжимать.
+ */
+@ConfigurationProperties(prefix = "app.authorization.attributes")
+public record AuthorizationAttributeCodecProperties(
+        @DefaultValue("json") Codec codec,
+        @DefaultValue("512") int compressionThreshold) {
+
+    public enum Codec {
+        JSON,
+        BINARY
+    }
+}
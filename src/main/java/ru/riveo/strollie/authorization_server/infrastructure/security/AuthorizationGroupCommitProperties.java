@@ -0,0 +1,24 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки группового сохранения авторизаций OAuth2.
+ *
+ * @param enabled       Собирать параллельные сохранения в общие пачки с одной фиксацией.
+ * @param maxWait       Сколько пачка ждёт следующих сохранений после первого.
+ * @param maxBatchSize  Максимальный размер пачки.
+ * @param queueCapacity Ёмкость очереди; при заполнении авторизация сохраняется в потоке вызывающего.
+ * @param awaitTimeout  Сколько вызывающий ждёт фиксации своей пачки.
+ */
+@ConfigurationProperties(prefix = "app.authorization.group-commit")
+public record AuthorizationGroupCommitProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("500us") Duration maxWait,
+        @DefaultValue("64") int maxBatchSize,
+        @DefaultValue("4096") int queueCapacity,
+        @DefaultValue("5s") Duration awaitTimeout) {
+}
@@ -0,0 +1,137 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Параметры строки oauth2_authorization в порядке {@link DigestJdbcOAuth2AuthorizationService#COLUMNS}.
+ * Совпадает с библиотечным {@code OAuth2AuthorizationParametersMapper}, но атрибуты и метаданные
+ * токенов пишутся через {@link AuthorizationAttributeCodec}: в {@code bytea} после миграции
+ * из {@code db/binary-attributes} или JSON-текстом в исходные колонки {@code text}.
+ */
+public class AuthorizationParametersMapper implements Function<OAuth2Authorization, List<SqlParameterValue>> {
+
+    private final AuthorizationAttributeCodec attributeCodec;
+    private final int attributeType;
+
+    public AuthorizationParametersMapper(AuthorizationAttributeCodec attributeCodec) {
+        this(attributeCodec, true);
+    }
+
+    /**
+     * @param binaryColumns колонки атрибутов и метаданных имеют тип {@code bytea}; иначе {@code text},
+     *                      и кодек должен писать JSON
+     */
+    public AuthorizationParametersMapper(AuthorizationAttributeCodec attributeCodec, boolean binaryColumns) {
+        this.attributeCodec = attributeCodec;
+        this.attributeType = binaryColumns ? Types.BINARY : Types.VARCHAR;
+    }
+
+    /**
+     * Имеют ли колонки атрибутов в текущей схеме тип {@code bytea}.
+     */
+    static boolean binaryColumns(JdbcTemplate jdbcTemplate) {
+        String type = jdbcTemplate.queryForObject("SELECT data_type FROM information_schema.columns "
+                + "WHERE table_schema = current_schema() AND table_name = 'oauth2_authorization' "
+                + "AND column_name = 'attributes'", String.class);
+        return "bytea".equals(type);
+    }
+
+    @Override
+    public List<SqlParameterValue> apply(OAuth2Authorization authorization) {
+        List<SqlParameterValue> columns = new ArrayList<>(DigestJdbcOAuth2AuthorizationService.COLUMNS.size());
+        columns.add(new SqlParameterValue(Types.VARCHAR, authorization.getId()));
+        columns.add(new SqlParameterValue(Types.VARCHAR, authorization.getRegisteredClientId()));
+        columns.add(new SqlParameterValue(Types.VARCHAR, authorization.getPrincipalName()));
+        columns.add(new SqlParameterValue(Types.VARCHAR, authorization.getAuthorizationGrantType().getValue()));
+        columns.add(new SqlParameterValue(Types.VARCHAR, CollectionUtils.isEmpty(authorization.getAuthorizedScopes())
+                ? null : StringUtils.collectionToDelimitedString(authorization.getAuthorizedScopes(), ",")));
+        columns.add(attribute(attributeCodec.encode(storedAttributes(authorization))));
+
+        String state = authorization.getAttribute(OAuth2ParameterNames.STATE);
+        columns.add(new SqlParameterValue(Types.VARCHAR, StringUtils.hasText(state) ? state : null));
+
+        addToken(columns, authorization.getToken(OAuth2AuthorizationCode.class));
+
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getToken(OAuth2AccessToken.class);
+        addToken(columns, accessToken);
+        String accessTokenType = null;
+        String accessTokenScopes = null;
+        if (accessToken != null) {
+            accessTokenType = accessToken.getToken().getTokenType().getValue();
+            if (!CollectionUtils.isEmpty(accessToken.getToken().getScopes())) {
+                accessTokenScopes = StringUtils.collectionToDelimitedString(accessToken.getToken().getScopes(), ",");
+            }
+        }
+        columns.add(new SqlParameterValue(Types.VARCHAR, accessTokenType));
+        columns.add(new SqlParameterValue(Types.VARCHAR, accessTokenScopes));
+
+        addToken(columns, authorization.getToken(OidcIdToken.class));
+        addToken(columns, authorization.getToken(OAuth2RefreshToken.class));
+        addToken(columns, authorization.getToken(OAuth2UserCode.class));
+        addToken(columns, authorization.getToken(OAuth2DeviceCode.class));
+        return columns;
+    }
+
+    private void addToken(List<SqlParameterValue> columns, OAuth2Authorization.Token<? extends OAuth2Token> token) {
+        String value = null;
+        Timestamp issuedAt = null;
+        Timestamp expiresAt = null;
+        byte[] metadata = null;
+        if (token != null) {
+            value = token.getToken().getTokenValue();
+            issuedAt = timestamp(token.getToken().getIssuedAt());
+            expiresAt = timestamp(token.getToken().getExpiresAt());
+            metadata = attributeCodec.encode(token.getMetadata());
+        }
+        columns.add(new SqlParameterValue(Types.VARCHAR, value));
+        columns.add(new SqlParameterValue(Types.TIMESTAMP, issuedAt));
+        columns.add(new SqlParameterValue(Types.TIMESTAMP, expiresAt));
+        columns.add(attribute(metadata));
+    }
+
+    private SqlParameterValue attribute(byte[] value) {
+        if (attributeType == Types.BINARY || value == null) {
+            return new SqlParameterValue(attributeType, value);
+        }
+        return new SqlParameterValue(attributeType, new String(value, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Атрибуты без служебной отметки о непрочитанных колонках токенов.
+     */
+    private static Map<String, Object> storedAttributes(OAuth2Authorization authorization) {
+        Map<String, Object> attributes = authorization.getAttributes();
+        if (!attributes.containsKey(AuthorizationTokenColumns.UNLOADED_ATTRIBUTE)) {
+            return attributes;
+        }
+        Map<String, Object> stored = new HashMap<>(attributes);
+        stored.remove(AuthorizationTokenColumns.UNLOADED_ATTRIBUTE);
+        return stored;
+    }
+
+    private static Timestamp timestamp(Instant instant) {
+        return instant != null ? Timestamp.from(instant) : null;
+    }
+}
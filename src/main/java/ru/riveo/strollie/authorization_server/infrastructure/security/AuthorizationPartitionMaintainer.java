@@ -0,0 +1,95 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.redis.RedisLease;
+
+/**
+ * Обслуживание секций oauth2_authorization: заранее создаёт секции на {@code premake-days}
+ * суток вперёд и удаляет секции, все авторизации в которых истекли. Удаление секции -
+ * DROP TABLE, а не DELETE по строкам, поэтому не оставляет мёртвых строк и не нагружает VACUUM.
+ * <p>
+ * Задачу выполняет только узел, владеющий арендой в Redis.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.authorization.storage", name = "mode", havingValue = "partitioned")
+@Slf4j
+public class AuthorizationPartitionMaintainer implements DisposableBean {
+
+    private static final String LEASE_KEY = "lease:oauth2_authorization_partitions";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuthorizationStorageProperties properties;
+    private final RedisLease lease;
+
+    private ScheduledExecutorService scheduler;
+
+    public AuthorizationPartitionMaintainer(JdbcTemplate jdbcTemplate,
+                                            StringRedisTemplate redisTemplate,
+                                            AuthorizationStorageProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.lease = new RedisLease(redisTemplate, LEASE_KEY, properties.leaseTtl());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "authorization-partitions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runIfLeader, 0,
+                properties.maintenanceInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        lease.release();
+    }
+
+    private void runIfLeader() {
+        try {
+            if (lease.tryAcquire()) {
+                maintain(LocalDate.now());
+            }
+        } catch (Exception e) {
+            log.warn("Authorization partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Создаёт секции на {@code premake-days} вперёд от {@code today} и удаляет истёкшие.
+     * Сутки запаса перед удалением покрывают расхождение часовых поясов узлов.
+     */
+    void maintain(LocalDate today) {
+        int created = 0;
+        for (int i = 0; i <= properties.premakeDays(); i++) {
+            Boolean wasCreated = jdbcTemplate.queryForObject("SELECT create_oauth2_authorization_partition(?)",
+                    Boolean.class, today.plusDays(i));
+            if (Boolean.TRUE.equals(wasCreated)) {
+                created++;
+            }
+        }
+        Integer dropped = jdbcTemplate.queryForObject("SELECT drop_expired_oauth2_authorization_partitions(?)",
+                Integer.class, today.minusDays(1));
+        if (created > 0 || (dropped != null && dropped > 0)) {
+            log.info("Authorization partitions maintained: {} created, {} dropped", created, dropped);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Чтение строки oauth2_authorization, как в библиотечном {@code OAuth2AuthorizationRowMapper},
+ * но атрибуты и метаданные токенов читаются через {@link AuthorizationAttributeCodec} как байты колонки:
+ * {@code bytea} или JSON из исходных колонок {@code text}.
+ * <p>
+ * Наследует библиотечный класс, чтобы {@link OAuth2AuthorizationServiceCustomizer} по-прежнему
+ * настраивали его {@link ObjectMapper}; из него строится JSON-кодек.
+ * <p>
+ * Поиск по токену может выбирать не все колонки (см. {@link #without}): группы колонок ненужных
+ * токенов тогда не читаются и их метаданные не декодируются.
+ */
+public class AuthorizationRowMapper extends JdbcOAuth2AuthorizationService.OAuth2AuthorizationRowMapper {
+
+    private AuthorizationAttributeCodec attributeCodec;
+
+    public AuthorizationRowMapper(RegisteredClientRepository registeredClientRepository) {
+        super(registeredClientRepository);
+        this.attributeCodec = new JsonAuthorizationAttributeCodec(getObjectMapper());
+    }
+
+    public void setAttributeCodec(AuthorizationAttributeCodec attributeCodec) {
+        this.attributeCodec = attributeCodec;
+    }
+
+    /**
+     * ObjectMapper после применения кастомайзеров.
+     */
+    ObjectMapper objectMapper() {
+        return getObjectMapper();
+    }
+
+    @Override
+    public OAuth2Authorization mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return map(rs, Collections.emptySet());
+    }
+
+    /**
+     * Маппер для выборки без колонок токенов {@code unloaded}. Эти колонки не читаются и не декодируются,
+     * а авторизация помечается атрибутом {@link AuthorizationTokenColumns#UNLOADED_ATTRIBUTE}.
+     */
+    RowMapper<OAuth2Authorization> without(Set<AuthorizationTokenColumns> unloaded) {
+        return unloaded.isEmpty() ? this : (rs, rowNum) -> map(rs, unloaded);
+    }
+
+    private OAuth2Authorization map(ResultSet rs, Set<AuthorizationTokenColumns> unloaded) throws SQLException {
+        String registeredClientId = rs.getString("registered_client_id");
+        RegisteredClient registeredClient = getRegisteredClientRepository().findById(registeredClientId);
+        if (registeredClient == null) {
+            throw new DataRetrievalFailureException("The RegisteredClient with id '" + registeredClientId
+                    + "' was not found in the RegisteredClientRepository.");
+        }
+
+        Map<String, Object> attributes = attributeCodec.decode(rs.getBytes("attributes"));
+        OAuth2Authorization.Builder builder = OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(rs.getString("id"))
+                .principalName(rs.getString("principal_name"))
+                .authorizationGrantType(new AuthorizationGrantType(rs.getString("authorization_grant_type")))
+                .authorizedScopes(scopes(rs.getString("authorized_scopes")))
+                .attributes(attrs -> attrs.putAll(attributes));
+
+        if (!unloaded.isEmpty()) {
+            builder.attribute(AuthorizationTokenColumns.UNLOADED_ATTRIBUTE,
+                    AuthorizationTokenColumns.attributeValue(unloaded));
+        }
+
+        String state = rs.getString("state");
+        if (StringUtils.hasText(state)) {
+            builder.attribute(OAuth2ParameterNames.STATE, state);
+        }
+
+        String authorizationCodeValue = value(rs, AuthorizationTokenColumns.AUTHORIZATION_CODE, unloaded);
+        if (StringUtils.hasText(authorizationCodeValue)) {
+            OAuth2AuthorizationCode authorizationCode = new OAuth2AuthorizationCode(authorizationCodeValue,
+                    instant(rs, "authorization_code_issued_at"), instant(rs, "authorization_code_expires_at"));
+            Map<String, Object> metadata = attributeCodec.decode(rs.getBytes("authorization_code_metadata"));
+            builder.token(authorizationCode, m -> m.putAll(metadata));
+        }
+
+        String accessTokenValue = value(rs, AuthorizationTokenColumns.ACCESS_TOKEN, unloaded);
+        if (StringUtils.hasText(accessTokenValue)) {
+            OAuth2AccessToken accessToken = new OAuth2AccessToken(tokenType(rs.getString("access_token_type")),
+                    accessTokenValue, instant(rs, "access_token_issued_at"), instant(rs, "access_token_expires_at"),
+                    scopes(rs.getString("access_token_scopes")));
+            Map<String, Object> metadata = attributeCodec.decode(rs.getBytes("access_token_metadata"));
+            builder.token(accessToken, m -> m.putAll(metadata));
+        }
+
+        String oidcIdTokenValue = value(rs, AuthorizationTokenColumns.OIDC_ID_TOKEN, unloaded);
+        if (StringUtils.hasText(oidcIdTokenValue)) {
+            Map<String, Object> metadata = attributeCodec.decode(rs.getBytes("oidc_id_token_metadata"));
+            @SuppressWarnings("unchecked")
+            Map<String, Object> claims = (Map<String, Object>) metadata.get(OAuth2Authorization.Token.CLAIMS_METADATA_NAME);
+            OidcIdToken oidcIdToken = new OidcIdToken(oidcIdTokenValue,
+                    instant(rs, "oidc_id_token_issued_at"), instant(rs, "oidc_id_token_expires_at"), claims);
+            builder.token(oidcIdToken, m -> m.putAll(metadata));
+        }
+
+        String refreshTokenValue = value(rs, AuthorizationTokenColumns.REFRESH_TOKEN, unloaded);
+        if (StringUtils.hasText(refreshTokenValue)) {
+            OAuth2RefreshToken refreshToken = new OAuth2RefreshToken(refreshTokenValue,
+                    instant(rs, "refresh_token_issued_at"), instant(rs, "refresh_token_expires_at"));
+            Map<String, Object> metadata = attributeCodec.decode(rs.getBytes("refresh_token_metadata"));
+            builder.token(refreshToken, m -> m.putAll(metadata));
+        }
+
+        String userCodeValue = value(rs, AuthorizationTokenColumns.USER_CODE, unloaded);
+        if (StringUtils.hasText(userCodeValue)) {
+            OAuth2UserCode userCode = new OAuth2UserCode(userCodeValue,
+                    instant(rs, "user_code_issued_at"), instant(rs, "user_code_expires_at"));
+            Map<String, Object> metadata = attributeCodec.decode(rs.getBytes("user_code_metadata"));
+            builder.token(userCode, m -> m.putAll(metadata));
+        }
+
+        String deviceCodeValue = value(rs, AuthorizationTokenColumns.DEVICE_CODE, unloaded);
+        if (StringUtils.hasText(deviceCodeValue)) {
+            OAuth2DeviceCode deviceCode = new OAuth2DeviceCode(deviceCodeValue,
+                    instant(rs, "device_code_issued_at"), instant(rs, "device_code_expires_at"));
+            Map<String, Object> metadata = attributeCodec.decode(rs.getBytes("device_code_metadata"));
+            builder.token(deviceCode, m -> m.putAll(metadata));
+        }
+
+        return builder.build();
+    }
+
+    private static String value(ResultSet rs, AuthorizationTokenColumns token, Set<AuthorizationTokenColumns> unloaded)
+            throws SQLException {
+        return unloaded.contains(token) ? null : rs.getString(token.columns().get(0));
+    }
+
+    private static OAuth2AccessToken.TokenType tokenType(String value) {
+        if (OAuth2AccessToken.TokenType.BEARER.getValue().equalsIgnoreCase(value)) {
+            return OAuth2AccessToken.TokenType.BEARER;
+        }
+        if (OAuth2AccessToken.TokenType.DPOP.getValue().equalsIgnoreCase(value)) {
+            return OAuth2AccessToken.TokenType.DPOP;
+        }
+        return null;
+    }
+
+    private static Set<String> scopes(String value) {
+        return value != null ? StringUtils.commaDelimitedListToSet(value) : Collections.emptySet();
+    }
+
+    private static Instant instant(ResultSet rs, String column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+}
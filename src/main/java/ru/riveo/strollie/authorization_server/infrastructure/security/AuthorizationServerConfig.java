@@ -35,7 +35,12 @@ public class AuthorizationServerConfig {
                     authorizationServer.tokenEndpoint(tokenEndpoint -> {
                         customConverters.forEach(tokenEndpoint::accessTokenRequestConverter);
                         customProviders.forEach(tokenEndpoint::authenticationProvider);
+                        tokenEndpoint.errorResponseHandler(new TokenEndpointErrorResponseHandler());
                     });
+                    // Сброс нагрузки при проверке секрета клиента отдаётся как 503, а не как invalid_client
+                    authorizationServer.clientAuthentication(clientAuthentication -> clientAuthentication
+                            .errorResponseHandler(new TokenEndpointErrorResponseHandler(
+                                    new ClientAuthenticationErrorResponseHandler())));
                     authorizationServer.oidc(Customizer.withDefaults());
                 });
 
@@ -0,0 +1,44 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки хранения авторизаций OAuth2.
+ *
+ * @param mode                Обычная таблица, таблица, секционированная по сроку действия, или Redis.
+ * @param premakeDays         На сколько суток вперёд заранее создаются секции; должно покрывать
+ *                            максимальное время жизни refresh-токена.
+ * @param maintenanceInterval Период обслуживания секций.
+ * @param leaseTtl            Время жизни аренды, под которой обслуживание выполняет один узел.
+ * @param pendingLifetime     Срок хранения авторизации, в которой ещё нет ни одного токена.
+ * @param lookup              Какие колонки выбирает поиск авторизации по access- и refresh-токену.
+ */
+@ConfigurationProperties(prefix = "app.authorization.storage")
+public record AuthorizationStorageProperties(
+        @DefaultValue("standard") Mode mode,
+        @DefaultValue("35") int premakeDays,
+        @DefaultValue("1h") Duration maintenanceInterval,
+        @DefaultValue("10m") Duration leaseTtl,
+        @DefaultValue("1d") Duration pendingLifetime,
+        @DefaultValue("full") Lookup lookup) {
+
+    public enum Mode {
+        STANDARD,
+        PARTITIONED,
+        REDIS
+    }
+
+    public enum Lookup {
+        /**
+         * Все колонки, как в библиотечном {@code JdbcOAuth2AuthorizationService}.
+         */
+        FULL,
+        /**
+         * Только колонки токенов, нужных потоку найденного типа токена.
+         */
+        TOKEN_SCOPED
+    }
+}
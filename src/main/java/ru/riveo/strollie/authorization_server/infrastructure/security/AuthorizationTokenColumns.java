@@ -0,0 +1,71 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.util.StringUtils;
+
+/**
+ * Группы колонок oauth2_authorization, относящиеся к одному токену авторизации.
+ * <p>
+ * Поиск по токену может не читать группы, которые не нужны потоку этого типа токена.
+ * Такие группы перечисляются в служебном атрибуте {@link #UNLOADED_ATTRIBUTE}; при сохранении
+ * их колонки не перезаписываются, а в хранимые атрибуты сам служебный атрибут не попадает.
+ */
+enum AuthorizationTokenColumns {
+
+    AUTHORIZATION_CODE("authorization_code"),
+    ACCESS_TOKEN("access_token", "access_token_type", "access_token_scopes"),
+    OIDC_ID_TOKEN("oidc_id_token"),
+    REFRESH_TOKEN("refresh_token"),
+    USER_CODE("user_code"),
+    DEVICE_CODE("device_code");
+
+    static final String UNLOADED_ATTRIBUTE = AuthorizationTokenColumns.class.getName() + ".UNLOADED";
+
+    private final String prefix;
+    private final List<String> columns;
+
+    AuthorizationTokenColumns(String prefix, String... extraColumns) {
+        this.prefix = prefix;
+        this.columns = Stream.concat(
+                        Stream.of(prefix + "_value", prefix + "_issued_at", prefix + "_expires_at", prefix + "_metadata"),
+                        Arrays.stream(extraColumns))
+                .toList();
+    }
+
+    List<String> columns() {
+        return columns;
+    }
+
+    String expiresAtColumn() {
+        return prefix + "_expires_at";
+    }
+
+    /**
+     * Значение служебного атрибута для набора непрочитанных групп.
+     */
+    static String attributeValue(Set<AuthorizationTokenColumns> unloaded) {
+        return StringUtils.collectionToCommaDelimitedString(unloaded);
+    }
+
+    /**
+     * Группы, которые не были прочитаны при загрузке авторизации; пусто для полностью прочитанной.
+     */
+    static Set<AuthorizationTokenColumns> unloaded(OAuth2Authorization authorization) {
+        String value = authorization.getAttribute(UNLOADED_ATTRIBUTE);
+        if (!StringUtils.hasText(value)) {
+            return Collections.emptySet();
+        }
+        Set<AuthorizationTokenColumns> unloaded = EnumSet.noneOf(AuthorizationTokenColumns.class);
+        for (String name : StringUtils.commaDelimitedListToSet(value)) {
+            unloaded.add(valueOf(name));
+        }
+        return unloaded;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Компактное представление значения атрибута авторизации в {@link BinaryAuthorizationAttributeCodec}.
+ * Фичи регистрируют реализации бинами для своих типов (например, собственного {@code Authentication});
+ * значения без зарегистрированного типа кодируются через Jackson.
+ *
+ * @param <T> Тип значения; сопоставляется по точному классу.
+ */
+public interface BinaryAttributeType<T> {
+
+    /**
+     * Идентификатор типа в закодированных данных; не должен меняться после выпуска.
+     */
+    String name();
+
+    Class<T> type();
+
+    /**
+     * false - значение не представимо этим типом и будет закодировано через Jackson.
+     */
+    default boolean supports(T value) {
+        return true;
+    }
+
+    void write(T value, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,31 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.flywaydb.core.api.Location;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * При бинарном формате атрибутов авторизаций подключает миграции из {@code db/binary-attributes},
+ * переводящие колонки атрибутов в {@code bytea}.
+ * <p>
+ * Формат можно включить на уже работающей БД, поэтому миграции применяются и вне порядка версий.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.authorization.attributes", name = "codec", havingValue = "binary")
+public class BinaryAttributesFlywayConfig {
+
+    @Bean
+    public FlywayConfigurationCustomizer binaryAttributesMigrations() {
+        return configuration -> {
+            List<Location> locations = new ArrayList<>(Arrays.asList(configuration.getLocations()));
+            locations.add(new Location("classpath:db/binary-attributes"));
+            configuration.locations(locations.toArray(Location[]::new)).outOfOrder(true);
+        };
+    }
+}
@@ -0,0 +1,392 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Версионированный бинарный формат атрибутов авторизации.
+ * <p>
+ * Заголовок - байт версии и байт флагов (сжатие Deflate). Далее карта: число записей,
+ * затем ключ и значение с байтом тега. Строки, числа, булевы, {@link Instant}, {@link URL}
+ * и вложенные списки, множества и карты (claims токена) кодируются напрямую, значения типов
+ * из {@link BinaryAttributeType} - их реализацией. Прочие значения кодируются через Jackson
+ * внутри того же формата, поэтому кодек принимает любые атрибуты.
+ * <p>
+ * JSON начинается с {@code '{'}, а не с байта версии, поэтому строки, записанные
+ * {@link JsonAuthorizationAttributeCodec}, читаются им же.
+ */
+public class BinaryAuthorizationAttributeCodec implements AuthorizationAttributeCodec {
+
+    static final byte VERSION = 1;
+
+    private static final int FLAG_DEFLATED = 1;
+    private static final String JSON_VALUE_KEY = "v";
+    private static final int MAX_CACHED_URLS = 16;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_FALSE = 3;
+    private static final int TAG_INTEGER = 4;
+    private static final int TAG_LONG = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_INSTANT = 7;
+    private static final int TAG_URL = 8;
+    private static final int TAG_LIST = 9;
+    private static final int TAG_SET = 10;
+    private static final int TAG_MAP = 11;
+    private static final int TAG_TYPE = 12;
+    private static final int TAG_JSON = 13;
+
+    private final JsonAuthorizationAttributeCodec json;
+    private final Map<Class<?>, BinaryAttributeType<?>> typesByClass = new HashMap<>();
+    private final Map<String, BinaryAttributeType<?>> typesByName = new HashMap<>();
+    private final int compressionThreshold;
+    // URL в claims - это issuer, значений единицы; разбор URL дороже остального декодирования
+    private final Map<String, URL> urls = new ConcurrentHashMap<>();
+
+    public BinaryAuthorizationAttributeCodec(JsonAuthorizationAttributeCodec json, List<BinaryAttributeType<?>> types,
+                                             int compressionThreshold) {
+        this.json = json;
+        this.compressionThreshold = compressionThreshold;
+        for (BinaryAttributeType<?> type : types) {
+            if (typesByName.put(type.name(), type) != null) {
+                throw new IllegalStateException("Duplicate binary attribute type name: " + type.name());
+            }
+            typesByClass.put(type.type(), type);
+        }
+    }
+
+    @Override
+    public byte[] encode(Map<String, Object> attributes) {
+        try {
+            ByteSink bytes = new ByteSink(256);
+            bytes.write(VERSION);
+            bytes.write(0);
+            writeMap(new DataOutputStream(bytes), attributes);
+            byte[] encoded = bytes.toByteArray();
+            if (compressionThreshold > 0 && encoded.length >= compressionThreshold) {
+                byte[] deflated = deflate(encoded);
+                if (deflated.length < encoded.length) {
+                    return deflated;
+                }
+            }
+            return encoded;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return new HashMap<>();
+        }
+        if (data[0] != VERSION) {
+            // Строки, записанные до перехода на бинарный формат
+            return json.decode(data);
+        }
+        try {
+            InputStream payload = new ByteSource(data, 2);
+            if ((data[1] & FLAG_DEFLATED) != 0) {
+                payload = new InflaterInputStream(payload);
+            }
+            return readMap(new DataInputStream(payload));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private static byte[] deflate(byte[] encoded) throws IOException {
+        ByteSink bytes = new ByteSink(encoded.length);
+        bytes.write(VERSION);
+        bytes.write(FLAG_DEFLATED);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            out.write(encoded, 2, encoded.length - 2);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeMap(DataOutput out, Map<?, ?> map) throws IOException {
+        writeVarInt(out, map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeString(out, (String) entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String string) {
+            out.writeByte(TAG_STRING);
+            writeString(out, string);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(bool ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer integer) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt(integer);
+        } else if (value instanceof Long longValue) {
+            out.writeByte(TAG_LONG);
+            out.writeLong(longValue);
+        } else if (value instanceof Double doubleValue) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble(doubleValue);
+        } else if (value instanceof Instant instant) {
+            out.writeByte(TAG_INSTANT);
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        } else if (value instanceof URL url) {
+            out.writeByte(TAG_URL);
+            writeString(out, url.toExternalForm());
+        } else if (value instanceof List<?> list && containsOnlyEncodable(list)) {
+            writeCollection(out, TAG_LIST, list);
+        } else if (value instanceof Set<?> set && containsOnlyEncodable(set)) {
+            writeCollection(out, TAG_SET, set);
+        } else if (value instanceof Map<?, ?> map && hasStringKeys(map)) {
+            out.writeByte(TAG_MAP);
+            writeMap(out, map);
+        } else if (!writeRegisteredType(out, value)) {
+            out.writeByte(TAG_JSON);
+            Map<String, Object> wrapper = new LinkedHashMap<>();
+            wrapper.put(JSON_VALUE_KEY, value);
+            writeBytes(out, json.encode(wrapper));
+        }
+    }
+
+    private void writeCollection(DataOutput out, int tag, Collection<?> collection) throws IOException {
+        out.writeByte(tag);
+        writeVarInt(out, collection.size());
+        for (Object element : collection) {
+            writeValue(out, element);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean writeRegisteredType(DataOutput out, Object value) throws IOException {
+        BinaryAttributeType<Object> type = (BinaryAttributeType<Object>) typesByClass.get(value.getClass());
+        if (type == null || !type.supports(value)) {
+            return false;
+        }
+        out.writeByte(TAG_TYPE);
+        writeString(out, type.name());
+        type.write(value, out);
+        return true;
+    }
+
+    private Map<String, Object> readMap(DataInput in) throws IOException {
+        int size = readVarInt(in);
+        Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 4 / 3 + 1));
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private Object readValue(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_STRING -> readString(in);
+            case TAG_TRUE -> Boolean.TRUE;
+            case TAG_FALSE -> Boolean.FALSE;
+            case TAG_INTEGER -> in.readInt();
+            case TAG_LONG -> in.readLong();
+            case TAG_DOUBLE -> in.readDouble();
+            case TAG_INSTANT -> Instant.ofEpochSecond(in.readLong(), in.readInt());
+            case TAG_URL -> url(readString(in));
+            case TAG_LIST -> {
+                int size = readVarInt(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                yield list;
+            }
+            case TAG_SET -> {
+                int size = readVarInt(in);
+                Set<Object> set = new LinkedHashSet<>(Math.max(4, size * 4 / 3 + 1));
+                for (int i = 0; i < size; i++) {
+                    set.add(readValue(in));
+                }
+                yield set;
+            }
+            case TAG_MAP -> readMap(in);
+            case TAG_TYPE -> {
+                String name = readString(in);
+                BinaryAttributeType<?> type = typesByName.get(name);
+                if (type == null) {
+                    throw new IOException("Unknown binary attribute type: " + name);
+                }
+                yield type.read(in);
+            }
+            case TAG_JSON -> json.decode(readBytes(in)).get(JSON_VALUE_KEY);
+            default -> throw new IOException("Unknown attribute tag: " + tag);
+        };
+    }
+
+    private URL url(String value) throws IOException {
+        URL url = urls.get(value);
+        if (url == null) {
+            url = URI.create(value).toURL();
+            if (urls.size() < MAX_CACHED_URLS) {
+                urls.put(value, url);
+            }
+        }
+        return url;
+    }
+
+    private static boolean containsOnlyEncodable(Collection<?> collection) {
+        // Коллекции с элементами, которым нужен Jackson, целиком уходят в Jackson,
+        // чтобы не терять их информацию о типах по отдельности
+        for (Object element : collection) {
+            if (element != null && !(element instanceof String) && !(element instanceof Number)
+                    && !(element instanceof Boolean)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasStringKeys(Map<?, ?> map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Буфер записи без синхронизации {@link ByteArrayOutputStream} на каждый байт.
+     */
+    private static final class ByteSink extends OutputStream {
+
+        private byte[] buffer;
+        private int size;
+
+        ByteSink(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, size, len);
+            size += len;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * Чтение массива без синхронизации {@link ByteArrayInputStream} на каждый байт.
+     */
+    private static final class ByteSource extends InputStream {
+
+        private final byte[] data;
+        private int position;
+
+        ByteSource(byte[] data, int offset) {
+            this.data = data;
+            this.position = offset;
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= data.length) {
+                return -1;
+            }
+            int count = Math.min(len, data.length - position);
+            System.arraycopy(data, position, b, off, count);
+            position += count;
+            return count;
+        }
+    }
+}
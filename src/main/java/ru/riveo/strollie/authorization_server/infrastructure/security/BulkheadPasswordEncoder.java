@@ -0,0 +1,147 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ru.riveo.strollie.authorization_server.shared.exception.OAuth2ServiceOverloadedException;
+
+/**
+ * Проверка секретов клиентов в отдельном ограниченном пуле, чтобы всплеск запросов к /oauth2/token
+ * не занимал BCrypt-ом все потоки Tomcat.
+ * <p>
+ * Пул размером по числу процессоров с ограниченной очередью; если очередь заполнена, проверка
+ * не принимается и клиент сразу получает 503 с Retry-After ({@link OAuth2ServiceOverloadedException}).
+ * Число одновременных проверок одного клиента ограничено, поэтому один клиент не может занять
+ * весь пул. Клиента определяет хранимый хэш секрета: соль BCrypt у каждого клиента своя.
+ * Хэширование при регистрации клиентов ({@link #encode}) выполняется в потоке вызывающего.
+ */
+public class BulkheadPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final int perClientLimit;
+    private final long retryAfterSeconds;
+    // Проверки, ожидающие и выполняющиеся, по хранимому хэшу секрета клиента
+    private final ConcurrentMap<String, Integer> inFlight = new ConcurrentHashMap<>();
+    private final Counter acceptedCounter;
+    private final Counter queueShedCounter;
+    private final Counter clientShedCounter;
+    private final Timer waitTimer;
+
+    public BulkheadPasswordEncoder(PasswordEncoder delegate,
+                                   PasswordVerificationProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.perClientLimit = properties.perClientLimit();
+        this.retryAfterSeconds = properties.retryAfterSeconds();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        int threads = properties.effectiveThreads();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.queueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-verification-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("password.verification.queue.depth", executor, e -> e.getQueue().size())
+                .description("Проверки секретов, ожидающие свободного потока")
+                .register(meterRegistry);
+        this.acceptedCounter = Counter.builder("password.verification.requests").tag("outcome", "accepted")
+                .register(meterRegistry);
+        this.queueShedCounter = Counter.builder("password.verification.requests").tag("outcome", "shed_queue")
+                .register(meterRegistry);
+        this.clientShedCounter = Counter.builder("password.verification.requests").tag("outcome", "shed_client")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("password.verification.wait")
+                .description("Время ожидания проверки секрета в очереди")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (encodedPassword == null) {
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+        if (!acquire(encodedPassword)) {
+            clientShedCounter.increment();
+            throw new OAuth2ServiceOverloadedException(retryAfterSeconds);
+        }
+        try {
+            long enqueuedAt = System.nanoTime();
+            Future<Boolean> verification;
+            try {
+                verification = executor.submit(() -> {
+                    waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                    return delegate.matches(rawPassword, encodedPassword);
+                });
+            } catch (RejectedExecutionException e) {
+                queueShedCounter.increment();
+                throw new OAuth2ServiceOverloadedException(retryAfterSeconds);
+            }
+            acceptedCounter.increment();
+            return await(verification);
+        } finally {
+            release(encodedPassword);
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private boolean await(Future<Boolean> verification) {
+        try {
+            return verification.get();
+        } catch (InterruptedException e) {
+            verification.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new OAuth2ServiceOverloadedException(retryAfterSeconds);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password verification failed", e.getCause());
+        }
+    }
+
+    private boolean acquire(String client) {
+        boolean[] acquired = new boolean[1];
+        inFlight.compute(client, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= perClientLimit) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void release(String client) {
+        inFlight.computeIfPresent(client, (key, count) -> count > 1 ? count - 1 : null);
+    }
+}
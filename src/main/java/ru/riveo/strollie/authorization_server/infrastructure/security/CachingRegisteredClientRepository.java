@@ -0,0 +1,194 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Кэш разобранных {@link RegisteredClient} в памяти узла перед {@code JdbcRegisteredClientRepository}.
+ * <p>
+ * Клиенты кэшируются по id и по client_id, отсутствующие — тоже. Любое изменение таблицы
+ * oauth2_registered_client, в том числе из SQL в обход приложения, отправляет триггером
+ * уведомление в канал {@link #INVALIDATION_CHANNEL} (миграция V7). PostgreSQL доставляет его
+ * всем узлам после коммита, и они сбрасывают кэш целиком: клиентов немного, а изменения редки.
+ * Для подписки узел держит отдельное соединение из пула. Пока подписки нет, кэш не используется.
+ */
+@Slf4j
+public class CachingRegisteredClientRepository implements RegisteredClientRepository, DisposableBean {
+
+    static final String INVALIDATION_CHANNEL = "oauth2_registered_client_changed";
+
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+
+    private final RegisteredClientRepository delegate;
+    private final DataSource dataSource;
+    private final RegisteredClientCacheProperties properties;
+    private final Cache<String, Optional<RegisteredClient>> byId;
+    private final Cache<String, Optional<RegisteredClient>> byClientId;
+    // Увеличивается при каждом сбросе; загрузка, пересёкшаяся со сбросом, в кэш не попадает
+    private final AtomicLong generation = new AtomicLong();
+    private final List<Runnable> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean listening;
+    private volatile boolean running;
+    private Thread listener;
+
+    public CachingRegisteredClientRepository(RegisteredClientRepository delegate,
+                                             DataSource dataSource,
+                                             RegisteredClientCacheProperties properties,
+                                             MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.dataSource = dataSource;
+        this.properties = properties;
+        this.byId = newCache(properties);
+        this.byClientId = newCache(properties);
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "registered_client_by_id");
+        CaffeineCacheMetrics.monitor(meterRegistry, byClientId, "registered_client_by_client_id");
+    }
+
+    private static Cache<String, Optional<RegisteredClient>> newCache(RegisteredClientCacheProperties properties) {
+        return Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Регистрирует действие, выполняемое при каждом сбросе кэша, то есть при изменении клиентов.
+     */
+    public void addInvalidationListener(Runnable listener) {
+        invalidationListeners.add(listener);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        listener = new Thread(this::listen, "registered-client-invalidation");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (listener != null) {
+            listener.join(2L * POLL_TIMEOUT_MILLIS);
+        }
+    }
+
+    @Override
+    public void save(RegisteredClient registeredClient) {
+        delegate.save(registeredClient);
+        invalidateAll();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Незакоммиченная строка могла попасть в кэш из той же транзакции, а при откате уведомления не будет
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidateAll();
+                }
+            });
+        }
+    }
+
+    @Override
+    public RegisteredClient findById(String id) {
+        return find(byId, id, delegate::findById);
+    }
+
+    @Override
+    public RegisteredClient findByClientId(String clientId) {
+        return find(byClientId, clientId, delegate::findByClientId);
+    }
+
+    private RegisteredClient find(Cache<String, Optional<RegisteredClient>> cache, String key,
+                                  Function<String, RegisteredClient> loader) {
+        if (!listening) {
+            return loader.apply(key);
+        }
+        Optional<RegisteredClient> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+
+        long observed = generation.get();
+        RegisteredClient loaded = loader.apply(key);
+        if (generation.get() == observed) {
+            cache.put(key, Optional.ofNullable(loaded));
+            // Сброс мог произойти между проверкой и записью
+            if (generation.get() != observed) {
+                cache.invalidate(key);
+            }
+        }
+        return loaded;
+    }
+
+    void invalidateAll() {
+        generation.incrementAndGet();
+        byId.invalidateAll();
+        byClientId.invalidateAll();
+        invalidationListeners.forEach(Runnable::run);
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + INVALIDATION_CHANNEL);
+                // Изменения до подписки могли пройти без уведомления
+                invalidateAll();
+                listening = true;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications != null && notifications.length > 0) {
+                        invalidateAll();
+                    }
+                }
+            } catch (SQLException e) {
+                listening = false;
+                invalidateAll();
+                if (running) {
+                    log.warn("Registered client invalidation listener failed, reconnecting in {}",
+                            properties.reconnectDelay(), e);
+                    pause();
+                }
+            }
+        }
+        listening = false;
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(properties.reconnectDelay().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
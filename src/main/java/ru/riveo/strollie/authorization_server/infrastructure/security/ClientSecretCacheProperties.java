@@ -0,0 +1,20 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки кэша успешных проверок секретов клиентов.
+ *
+ * @param enabled     Включает кэш перед {@code PasswordEncoder.matches}.
+ * @param maximumSize Максимальное число запомненных проверок.
+ * @param ttl         Время жизни записи.
+ */
+@ConfigurationProperties(prefix = "app.client-secret-cache")
+public record ClientSecretCacheProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("10000") long maximumSize,
+        @DefaultValue("5m") Duration ttl) {
+}
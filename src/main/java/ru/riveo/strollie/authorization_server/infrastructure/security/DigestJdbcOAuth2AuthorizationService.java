@@ -0,0 +1,287 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.Assert;
+
+/**
+ * {@link JdbcOAuth2AuthorizationService}, который ищет авторизацию по токену через
+ * SHA-256 дайджест значения и сохраняет её одним запросом.
+ * <p>
+ * Колонки дайджестов заполняет триггер PostgreSQL при записи изменившихся значений токенов
+ * (миграция V4, строки до неё заполняет V4_1). Колонки покрыты B-tree индексами, поэтому
+ * обмен refresh-токена, интроспекция и отзыв не сканируют таблицу целиком. Значение токена сравнивается дополнительно, чтобы совпадение
+ * дайджестов не могло вернуть чужую авторизацию.
+ * <p>
+ * В режиме {@link #setTokenScopedLookup} поиск по access- и refresh-токену не выбирает колонки кодов
+ * авторизации и устройства (и refresh-токена для access-токена). Такая авторизация при сохранении
+ * обновляет только прочитанные колонки.
+ */
+public class DigestJdbcOAuth2AuthorizationService extends JdbcOAuth2AuthorizationService {
+
+    /**
+     * Колонки в порядке, который ожидают маппер строк и маппер параметров {@link JdbcOAuth2AuthorizationService}.
+     */
+    protected static final List<String> COLUMNS = List.of("id", "registered_client_id", "principal_name",
+            "authorization_grant_type", "authorized_scopes", "attributes", "state",
+            "authorization_code_value", "authorization_code_issued_at", "authorization_code_expires_at",
+            "authorization_code_metadata",
+            "access_token_value", "access_token_issued_at", "access_token_expires_at", "access_token_metadata",
+            "access_token_type", "access_token_scopes",
+            "oidc_id_token_value", "oidc_id_token_issued_at", "oidc_id_token_expires_at", "oidc_id_token_metadata",
+            "refresh_token_value", "refresh_token_issued_at", "refresh_token_expires_at", "refresh_token_metadata",
+            "user_code_value", "user_code_issued_at", "user_code_expires_at", "user_code_metadata",
+            "device_code_value", "device_code_issued_at", "device_code_expires_at", "device_code_metadata");
+
+    protected static final String COLUMN_NAMES = String.join(", ", COLUMNS);
+
+    /**
+     * Одна вставка с обновлением при конфликте вместо findById и отдельного INSERT или UPDATE.
+     */
+    private static final String UPSERT_SQL = "INSERT INTO oauth2_authorization (" + COLUMN_NAMES + ") VALUES ("
+            + String.join(", ", Collections.nCopies(COLUMNS.size(), "?")) + ") ON CONFLICT (id) DO UPDATE SET "
+            + COLUMNS.stream().skip(1)
+                    .map(column -> assignment(column, "oauth2_authorization." + column, "EXCLUDED." + column))
+                    .collect(Collectors.joining(", "));
+
+    private static final String LOAD_AUTHORIZATION_SQL = "SELECT " + COLUMN_NAMES + " FROM oauth2_authorization WHERE ";
+
+    /**
+     * Колонки, не нужные потокам, которые ищут авторизацию по access-токену: интроспекции, userinfo
+     * и отзыву access-токена.
+     */
+    private static final Set<AuthorizationTokenColumns> ACCESS_TOKEN_LOOKUP_UNLOADED = EnumSet.of(
+            AuthorizationTokenColumns.AUTHORIZATION_CODE, AuthorizationTokenColumns.REFRESH_TOKEN,
+            AuthorizationTokenColumns.USER_CODE, AuthorizationTokenColumns.DEVICE_CODE);
+
+    /**
+     * Колонки, не нужные обмену и отзыву refresh-токена. Access-токен нужен, чтобы отзыв refresh-токена
+     * инвалидировал и его, ID Token - чтобы новый ID Token сохранил auth_time и sid.
+     */
+    private static final Set<AuthorizationTokenColumns> REFRESH_TOKEN_LOOKUP_UNLOADED = EnumSet.of(
+            AuthorizationTokenColumns.AUTHORIZATION_CODE,
+            AuthorizationTokenColumns.USER_CODE, AuthorizationTokenColumns.DEVICE_CODE);
+
+    private static final String STATE_FILTER = "(state_digest = ? AND state = ?)";
+    private static final String AUTHORIZATION_CODE_FILTER =
+            "(authorization_code_digest = ? AND authorization_code_value = ?)";
+    private static final String ACCESS_TOKEN_FILTER = "(access_token_digest = ? AND access_token_value = ?)";
+    private static final String ID_TOKEN_FILTER = "(oidc_id_token_digest = ? AND oidc_id_token_value = ?)";
+    private static final String REFRESH_TOKEN_FILTER = "(refresh_token_digest = ? AND refresh_token_value = ?)";
+    private static final String USER_CODE_FILTER = "(user_code_digest = ? AND user_code_value = ?)";
+    private static final String DEVICE_CODE_FILTER = "(device_code_digest = ? AND device_code_value = ?)";
+
+    private static final List<String> ALL_FILTERS = List.of(STATE_FILTER, AUTHORIZATION_CODE_FILTER,
+            ACCESS_TOKEN_FILTER, ID_TOKEN_FILTER, REFRESH_TOKEN_FILTER, USER_CODE_FILTER, DEVICE_CODE_FILTER);
+
+    /**
+     * Без типа токена проверяются все колонки; PostgreSQL объединяет индексы через BitmapOr.
+     */
+    private static final String UNKNOWN_TOKEN_TYPE_FILTER = String.join(" OR ", ALL_FILTERS);
+
+    private static final String ACCESS_TOKEN_LOOKUP_SQL = "SELECT "
+            + String.join(", ", loadedColumns(ACCESS_TOKEN_LOOKUP_UNLOADED))
+            + " FROM oauth2_authorization WHERE " + ACCESS_TOKEN_FILTER;
+
+    private static final String REFRESH_TOKEN_LOOKUP_SQL = "SELECT "
+            + String.join(", ", loadedColumns(REFRESH_TOKEN_LOOKUP_UNLOADED))
+            + " FROM oauth2_authorization WHERE " + REFRESH_TOKEN_FILTER;
+
+    private final Map<Set<AuthorizationTokenColumns>, String> partialUpdateSqlCache = new ConcurrentHashMap<>();
+
+    private boolean tokenScopedLookup;
+
+    public DigestJdbcOAuth2AuthorizationService(JdbcOperations jdbcOperations,
+                                                RegisteredClientRepository registeredClientRepository) {
+        super(jdbcOperations, registeredClientRepository);
+    }
+
+    /**
+     * Поиск по access- и refresh-токену выбирает только колонки, нужные потоку этого типа токена.
+     * Работает, если маппер строк - {@link AuthorizationRowMapper}.
+     */
+    public void setTokenScopedLookup(boolean tokenScopedLookup) {
+        this.tokenScopedLookup = tokenScopedLookup;
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        Set<AuthorizationTokenColumns> unloaded = AuthorizationTokenColumns.unloaded(authorization);
+        if (!unloaded.isEmpty()) {
+            savePartial(authorization, unloaded);
+            return;
+        }
+        getJdbcOperations().update(upsertSql(), new ArgumentPreparedStatementSetter(upsertParameters(authorization)));
+    }
+
+    /**
+     * Сохраняет авторизации одним JDBC batch тем же запросом, что и {@link #save}.
+     * Авторизации, прочитанные не полностью, обновляются отдельными запросами.
+     * Транзакция, в которой фиксируется пачка, задаётся вызывающим.
+     */
+    public void saveAll(List<OAuth2Authorization> authorizations) {
+        List<Object[]> upserts = new ArrayList<>(authorizations.size());
+        for (OAuth2Authorization authorization : authorizations) {
+            Set<AuthorizationTokenColumns> unloaded = AuthorizationTokenColumns.unloaded(authorization);
+            if (unloaded.isEmpty()) {
+                upserts.add(upsertParameters(authorization));
+            } else {
+                savePartial(authorization, unloaded);
+            }
+        }
+        if (!upserts.isEmpty()) {
+            getJdbcOperations().batchUpdate(upsertSql(), upserts);
+        }
+    }
+
+    /**
+     * Авторизация, прочитанная без части колонок, уже есть в таблице, поэтому она только обновляется,
+     * а непрочитанные колонки сохраняют прежние значения. Если строку успели удалить, восстанавливать
+     * её без этих колонок нельзя, и запрос ничего не меняет.
+     */
+    private void savePartial(OAuth2Authorization authorization, Set<AuthorizationTokenColumns> unloaded) {
+        getJdbcOperations().update(partialUpdateSqlCache.computeIfAbsent(unloaded, this::partialUpdateSql),
+                new ArgumentPreparedStatementSetter(partialUpdateParameters(authorization, unloaded)));
+    }
+
+    protected String upsertSql() {
+        return UPSERT_SQL;
+    }
+
+    protected Object[] upsertParameters(OAuth2Authorization authorization) {
+        return getAuthorizationParametersMapper().apply(authorization).toArray();
+    }
+
+    protected String partialUpdateSql(Set<AuthorizationTokenColumns> unloaded) {
+        List<String> columns = loadedColumns(unloaded);
+        return "UPDATE oauth2_authorization SET "
+                + columns.stream().skip(1)
+                        .map(column -> assignment(column, "oauth2_authorization." + column, "incoming." + column))
+                        .collect(Collectors.joining(", "))
+                + " FROM (VALUES (" + placeholders(columns) + ")) AS incoming (" + String.join(", ", columns) + ")"
+                + " WHERE oauth2_authorization.id = incoming.id";
+    }
+
+    protected Object[] partialUpdateParameters(OAuth2Authorization authorization,
+                                               Set<AuthorizationTokenColumns> unloaded) {
+        List<SqlParameterValue> parameters = getAuthorizationParametersMapper().apply(authorization);
+        Set<String> skipped = unloadedColumns(unloaded);
+        List<Object> loaded = new ArrayList<>(parameters.size());
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            if (!skipped.contains(COLUMNS.get(i))) {
+                loaded.add(parameters.get(i));
+            }
+        }
+        return loaded.toArray();
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        Assert.hasText(token, "token cannot be empty");
+        if (tokenType == null) {
+            return findBy(UNKNOWN_TOKEN_TYPE_FILTER, token, ALL_FILTERS.size());
+        }
+        if (tokenScopedLookup && getAuthorizationRowMapper() instanceof AuthorizationRowMapper rowMapper) {
+            switch (tokenType.getValue()) {
+                case OAuth2ParameterNames.ACCESS_TOKEN:
+                    return findBy(ACCESS_TOKEN_LOOKUP_SQL, rowMapper.without(ACCESS_TOKEN_LOOKUP_UNLOADED), token, 1);
+                case OAuth2ParameterNames.REFRESH_TOKEN:
+                    return findBy(REFRESH_TOKEN_LOOKUP_SQL, rowMapper.without(REFRESH_TOKEN_LOOKUP_UNLOADED), token, 1);
+                default:
+                    break;
+            }
+        }
+        String filter = switch (tokenType.getValue()) {
+            case OAuth2ParameterNames.STATE -> STATE_FILTER;
+            case OAuth2ParameterNames.CODE -> AUTHORIZATION_CODE_FILTER;
+            case OAuth2ParameterNames.ACCESS_TOKEN -> ACCESS_TOKEN_FILTER;
+            case OidcParameterNames.ID_TOKEN -> ID_TOKEN_FILTER;
+            case OAuth2ParameterNames.REFRESH_TOKEN -> REFRESH_TOKEN_FILTER;
+            case OAuth2ParameterNames.USER_CODE -> USER_CODE_FILTER;
+            case OAuth2ParameterNames.DEVICE_CODE -> DEVICE_CODE_FILTER;
+            default -> null;
+        };
+        return filter != null ? findBy(filter, token, 1) : null;
+    }
+
+    private OAuth2Authorization findBy(String filter, String token, int filterCount) {
+        return findBy(LOAD_AUTHORIZATION_SQL + filter, getAuthorizationRowMapper(), token, filterCount);
+    }
+
+    private OAuth2Authorization findBy(String sql, RowMapper<OAuth2Authorization> rowMapper, String token,
+                                       int filterCount) {
+        byte[] digest = digest(token);
+        List<Object> args = new ArrayList<>(2 * filterCount);
+        for (int i = 0; i < filterCount; i++) {
+            args.add(digest);
+            args.add(token);
+        }
+        List<OAuth2Authorization> result = getJdbcOperations().query(sql, rowMapper, args.toArray());
+        return !result.isEmpty() ? result.get(0) : null;
+    }
+
+    /**
+     * Колонки {@link #COLUMNS} без групп {@code unloaded}, в том же порядке.
+     */
+    protected static List<String> loadedColumns(Set<AuthorizationTokenColumns> unloaded) {
+        Set<String> skipped = unloadedColumns(unloaded);
+        return COLUMNS.stream().filter(column -> !skipped.contains(column)).toList();
+    }
+
+    private static Set<String> unloadedColumns(Set<AuthorizationTokenColumns> unloaded) {
+        return unloaded.stream().flatMap(token -> token.columns().stream()).collect(Collectors.toSet());
+    }
+
+    /**
+     * Параметры строки VALUES. Без приведения PostgreSQL считал бы время в VALUES текстом.
+     */
+    protected static String placeholders(List<String> columns) {
+        return columns.stream().map(column -> column.endsWith("_at") ? "?::timestamp" : "?")
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Присваивание колонки при обновлении. Неизменное значение токена, его метаданных или атрибутов
+     * остаётся прежним значением строки, и PostgreSQL переиспользует его TOAST, а не пишет заново.
+     */
+    protected static String assignment(String column, String current, String incoming) {
+        boolean large = column.equals("attributes") || column.endsWith("_value") || column.endsWith("_metadata");
+        if (!large) {
+            return column + " = " + incoming;
+        }
+        return column + " = CASE WHEN " + current + " IS DISTINCT FROM " + incoming
+                + " THEN " + incoming + " ELSE " + current + " END";
+    }
+
+    /**
+     * Тот же дайджест, что и у функции {@code oauth2_token_digest} в БД.
+     */
+    static byte[] digest(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
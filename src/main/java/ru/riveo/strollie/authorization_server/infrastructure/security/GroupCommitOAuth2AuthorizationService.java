@@ -0,0 +1,219 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.Assert;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Групповая фиксация сохранений авторизаций.
+ * <p>
+ * Сохранения из параллельных запросов к token endpoint ставятся в очередь. Один поток собирает
+ * их в пачку в течение {@code max-wait} после первого (или до {@code max-batch-size}), пишет
+ * одним JDBC batch и фиксирует одной транзакцией: на пачку приходится один сброс WAL на диск,
+ * а не по одному на каждую выдачу токена. Вызывающий ждёт фиксации своей пачки, поэтому
+ * ответ с токеном уходит только после того, как авторизация сохранена.
+ * <p>
+ * Сохранение не участвует во внешней транзакции вызывающего. Если пачка не записалась,
+ * её авторизации сохраняются по одной, и ошибка достаётся только тем вызывающим, чья запись
+ * не удалась. Чтение и удаление выполняются напрямую.
+ */
+@Slf4j
+public class GroupCommitOAuth2AuthorizationService implements OAuth2AuthorizationService, DisposableBean {
+
+    private final DigestJdbcOAuth2AuthorizationService delegate;
+    private final TransactionOperations transactionOperations;
+    private final AuthorizationGroupCommitProperties properties;
+    private final BlockingQueue<PendingSave> queue;
+    private final ExecutorService writer;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSize;
+    private final Timer waitTimer;
+    private final Timer commitTimer;
+    private final Counter batchCommits;
+    private final Counter fallbackCommits;
+    private final Counter directSaves;
+
+    public GroupCommitOAuth2AuthorizationService(DigestJdbcOAuth2AuthorizationService delegate,
+                                                 TransactionOperations transactionOperations,
+                                                 AuthorizationGroupCommitProperties properties,
+                                                 MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.transactionOperations = transactionOperations;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.queueCapacity());
+
+        Gauge.builder("authorization.group_commit.queue.depth", queue, BlockingQueue::size)
+                .description("Сохранения авторизаций, ожидающие пачки")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("authorization.group_commit.batch.size")
+                .description("Авторизаций в одной фиксации")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("authorization.group_commit.wait")
+                .description("Время от постановки сохранения в очередь до начала записи его пачки")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("authorization.group_commit.commit")
+                .description("Запись и фиксация одной пачки")
+                .register(meterRegistry);
+        // Фиксаций на сохранение: отношение commits к сумме batch.size
+        this.batchCommits = Counter.builder("authorization.group_commit.commits").tag("kind", "batch")
+                .register(meterRegistry);
+        this.fallbackCommits = Counter.builder("authorization.group_commit.commits").tag("kind", "fallback")
+                .register(meterRegistry);
+        this.directSaves = Counter.builder("authorization.group_commit.direct")
+                .description("Сохранения в потоке вызывающего при заполненной очереди")
+                .register(meterRegistry);
+
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "authorization-group-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.execute(this::run);
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        PendingSave pending = new PendingSave(authorization, System.nanoTime(), new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            directSaves.increment();
+            delegate.save(authorization);
+            return;
+        }
+        try {
+            pending.future().get(properties.awaitTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Authorization save failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Authorization save was not committed within "
+                    + properties.awaitTimeout(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for authorization save", e);
+        }
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        delegate.remove(authorization);
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        return delegate.findByToken(token, tokenType);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // Поток дописывает оставшиеся в очереди пачки
+        running = false;
+        writer.shutdown();
+        if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+            writer.shutdownNow();
+        }
+        PendingSave abandoned;
+        while ((abandoned = queue.poll()) != null) {
+            abandoned.future().completeExceptionally(new RejectedExecutionException("Authorization writer stopped"));
+        }
+    }
+
+    private void run() {
+        List<PendingSave> batch = new ArrayList<>(properties.maxBatchSize());
+        try {
+            while (running || !queue.isEmpty()) {
+                collectBatch(batch);
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            batch.forEach(pending -> pending.future()
+                    .completeExceptionally(new RejectedExecutionException("Authorization writer stopped")));
+        }
+    }
+
+    private void collectBatch(List<PendingSave> batch) throws InterruptedException {
+        PendingSave first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + properties.maxWait().toNanos();
+        while (batch.size() < properties.maxBatchSize()) {
+            queue.drainTo(batch, properties.maxBatchSize() - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= properties.maxBatchSize() || remaining <= 0) {
+                return;
+            }
+            PendingSave next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commit(List<PendingSave> batch) {
+        long startedAt = System.nanoTime();
+        batch.forEach(pending -> waitTimer.record(startedAt - pending.enqueuedAtNanos(), TimeUnit.NANOSECONDS));
+        batchSize.record(batch.size());
+        try {
+            List<OAuth2Authorization> authorizations = batch.stream().map(PendingSave::authorization).toList();
+            transactionOperations.executeWithoutResult(status -> delegate.saveAll(authorizations));
+            batchCommits.increment();
+            commitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            batch.forEach(pending -> pending.future().complete(null));
+        } catch (RuntimeException e) {
+            log.warn("Batched save of {} authorizations failed, saving one by one: {}", batch.size(), e.getMessage());
+            batch.forEach(this::commitSingle);
+        }
+    }
+
+    private void commitSingle(PendingSave pending) {
+        try {
+            transactionOperations.executeWithoutResult(status -> delegate.save(pending.authorization()));
+            fallbackCommits.increment();
+            pending.future().complete(null);
+        } catch (RuntimeException e) {
+            pending.future().completeExceptionally(e);
+        }
+    }
+
+    private record PendingSave(OAuth2Authorization authorization, long enqueuedAtNanos,
+                               CompletableFuture<Void> future) {
+    }
+}
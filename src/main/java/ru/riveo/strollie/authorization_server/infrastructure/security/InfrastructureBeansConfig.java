@@ -1,12 +1,18 @@
 package ru.riveo.strollie.authorization_server.infrastructure.security;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
 import org.springframework.security.oauth2.server.authorization.client.JdbcRegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 import javax.sql.DataSource;
 import java.util.List;
@@ -15,27 +21,87 @@ import java.util.List;
 public class InfrastructureBeansConfig {
 
     @Bean
-    public RegisteredClientRepository registeredClientRepository(DataSource dataSource) {
-        return new JdbcRegisteredClientRepository(new JdbcTemplate(dataSource));
+    public RegisteredClientRepository registeredClientRepository(DataSource dataSource,
+                                                                 RegisteredClientCacheProperties cacheProperties,
+                                                                 PasswordEncoder passwordEncoder,
+                                                                 MeterRegistry meterRegistry) {
+        RegisteredClientRepository repository = new JdbcRegisteredClientRepository(new JdbcTemplate(dataSource));
+        if (cacheProperties.enabled()) {
+            CachingRegisteredClientRepository cachingRepository =
+                    new CachingRegisteredClientRepository(repository, dataSource, cacheProperties, meterRegistry);
+            // Проверенные секреты забываются при любом изменении клиентов
+            if (passwordEncoder instanceof VerifiedSecretCachingPasswordEncoder verifiedSecrets) {
+                cachingRepository.addInvalidationListener(verifiedSecrets::invalidateAll);
+            }
+            return cachingRepository;
+        }
+        return repository;
     }
 
     @Bean
     public OAuth2AuthorizationService authorizationService(
             JdbcTemplate jdbcTemplate,
+            StringRedisTemplate redisTemplate,
             RegisteredClientRepository registeredClientRepository,
-            List<OAuth2AuthorizationServiceCustomizer> customizers) { // Инжектируем все кастомайзеры
-
-        JdbcOAuth2AuthorizationService authorizationService =
-                new JdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository);
+            AuthorizationStorageProperties storageProperties,
+            AuthorizationGroupCommitProperties groupCommitProperties,
+            AuthorizationAttributeCodecProperties codecProperties,
+            ObjectProvider<BinaryAttributeType<?>> binaryAttributeTypes,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            List<OAuth2AuthorizationServiceCustomizer> customizers, // Инжектируем все кастомайзеры
+            ObjectProvider<OAuth2AuthorizationServiceDecorator> decorators) {
 
-        JdbcOAuth2AuthorizationService.OAuth2AuthorizationRowMapper rowMapper =
-                new JdbcOAuth2AuthorizationService.OAuth2AuthorizationRowMapper(registeredClientRepository);
+        AuthorizationRowMapper rowMapper = new AuthorizationRowMapper(registeredClientRepository);
 
         // Применяем все найденные в контексте кастомайзеры
         customizers.forEach(customizer -> customizer.customize(rowMapper));
 
+        // Бинарный кодек читает оба формата из text и bytea, поэтому формат записи можно переключать
+        // в обе стороны
+        JsonAuthorizationAttributeCodec jsonCodec = new JsonAuthorizationAttributeCodec(rowMapper.objectMapper());
+        BinaryAuthorizationAttributeCodec binaryCodec = new BinaryAuthorizationAttributeCodec(jsonCodec,
+                binaryAttributeTypes.orderedStream().toList(), codecProperties.compressionThreshold());
+        rowMapper.setAttributeCodec(binaryCodec);
+        AuthorizationAttributeCodec writeCodec =
+                codecProperties.codec() == AuthorizationAttributeCodecProperties.Codec.BINARY ? binaryCodec : jsonCodec;
+
+        if (storageProperties.mode() == AuthorizationStorageProperties.Mode.REDIS) {
+            return decorate(new RedisOAuth2AuthorizationService(redisTemplate, registeredClientRepository,
+                    binaryCodec, writeCodec, storageProperties.pendingLifetime()), decorators);
+        }
+
+        // Поиск по токену идёт через индексированные дайджесты, а не по текстовым колонкам
+        DigestJdbcOAuth2AuthorizationService authorizationService =
+                storageProperties.mode() == AuthorizationStorageProperties.Mode.PARTITIONED
+                        ? new PartitionedJdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository,
+                                new TransactionTemplate(transactionManager), storageProperties.pendingLifetime())
+                        : new DigestJdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository);
         authorizationService.setAuthorizationRowMapper(rowMapper);
+        // Колонки становятся bytea только миграцией из db/binary-attributes (codec=binary)
+        boolean binaryColumns = AuthorizationParametersMapper.binaryColumns(jdbcTemplate);
+        if (!binaryColumns && writeCodec == binaryCodec) {
+            throw new IllegalStateException(
+                    "Binary authorization attributes require bytea columns, apply migrations from db/binary-attributes");
+        }
+        authorizationService.setAuthorizationParametersMapper(
+                new AuthorizationParametersMapper(writeCodec, binaryColumns));
+        authorizationService.setTokenScopedLookup(
+                storageProperties.lookup() == AuthorizationStorageProperties.Lookup.TOKEN_SCOPED);
+
+        if (groupCommitProperties.enabled()) {
+            return decorate(new GroupCommitOAuth2AuthorizationService(authorizationService,
+                    new TransactionTemplate(transactionManager), groupCommitProperties, meterRegistry), decorators);
+        }
+        return decorate(authorizationService, decorators);
+    }
 
-        return authorizationService;
+    private static OAuth2AuthorizationService decorate(OAuth2AuthorizationService authorizationService,
+                                                       ObjectProvider<OAuth2AuthorizationServiceDecorator> decorators) {
+        OAuth2AuthorizationService decorated = authorizationService;
+        for (OAuth2AuthorizationServiceDecorator decorator : decorators.orderedStream().toList()) {
+            decorated = decorator.decorate(decorated);
+        }
+        return decorated;
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * JSON в UTF-8, как в {@code JdbcOAuth2AuthorizationService}: полиморфные значения
+ * записываются с {@code @class}. Так хранились строки до перехода на {@code bytea}.
+ */
+public class JsonAuthorizationAttributeCodec implements AuthorizationAttributeCodec {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+
+    public JsonAuthorizationAttributeCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public byte[] encode(Map<String, Object> attributes) {
+        try {
+            return objectMapper.writeValueAsBytes(attributes);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(data, MAP_TYPE);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+
+/**
+ * Оборачивает настроенное хранилище авторизаций, например чтобы фича сохраняла свои авторизации иначе.
+ * Декораторы применяются в порядке {@link org.springframework.core.annotation.Order}.
+ */
+@FunctionalInterface
+public interface OAuth2AuthorizationServiceDecorator {
+    OAuth2AuthorizationService decorate(OAuth2AuthorizationService authorizationService);
+}
@@ -0,0 +1,28 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.flywaydb.core.api.Location;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * В режиме секционированного хранения авторизаций подключает миграции из {@code db/partitioned}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.authorization.storage", name = "mode", havingValue = "partitioned")
+public class PartitionedAuthorizationFlywayConfig {
+
+    @Bean
+    public FlywayConfigurationCustomizer partitionedAuthorizationMigrations() {
+        return configuration -> {
+            List<Location> locations = new ArrayList<>(Arrays.asList(configuration.getLocations()));
+            locations.add(new Location("classpath:db/partitioned"));
+            configuration.locations(locations.toArray(Location[]::new));
+        };
+    }
+}
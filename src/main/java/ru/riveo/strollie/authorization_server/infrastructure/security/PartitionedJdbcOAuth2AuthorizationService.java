@@ -0,0 +1,155 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.security.oauth2.core.AbstractOAuth2Token;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * Хранилище авторизаций в таблице, секционированной по {@code expires_at} (миграция {@code db/partitioned/V5}).
+ * <p>
+ * {@code expires_at} - самый поздний срок действия токенов авторизации; он записывается
+ * вместе с остальными колонками.
+ * При продлении срока (ротация refresh-токена) PostgreSQL переносит строку в другую секцию.
+ * <p>
+ * Первичный ключ {@code (id, expires_at)} не гарантирует уникальность id, а запрос сохранения через CTE
+ * видит снимок на момент своего начала. Поэтому параллельные сохранения одной новой авторизации
+ * вставили бы две строки. Сохранение выполняется в транзакции, которая сначала берёт
+ * {@code pg_advisory_xact_lock} по id отдельным запросом. Следующий запрос получает новый снимок
+ * и видит строку, зафиксированную предыдущим владельцем блокировки.
+ */
+public class PartitionedJdbcOAuth2AuthorizationService extends DigestJdbcOAuth2AuthorizationService {
+
+    private static final List<Class<? extends AbstractOAuth2Token>> TOKEN_TYPES = List.of(
+            OAuth2AuthorizationCode.class, OAuth2AccessToken.class, OidcIdToken.class,
+            OAuth2RefreshToken.class, OAuth2UserCode.class, OAuth2DeviceCode.class);
+
+    /**
+     * ON CONFLICT (id) невозможен: уникальный ключ секционированной таблицы включает expires_at.
+     * Поэтому обновление и вставка при его отсутствии объединены в один запрос через CTE.
+     * Параметры без приведения в VALUES считались бы text, поэтому время приводится явно.
+     */
+    private static final String UPSERT_SQL = "WITH incoming (" + COLUMN_NAMES + ", expires_at) AS (VALUES ("
+            + placeholders(COLUMNS) + ", ?::timestamp)), "
+            + "updated AS (UPDATE oauth2_authorization SET "
+            + COLUMNS.stream().skip(1)
+                    .map(column -> assignment(column, "oauth2_authorization." + column, "incoming." + column))
+                    .collect(Collectors.joining(", "))
+            + ", expires_at = incoming.expires_at FROM incoming WHERE oauth2_authorization.id = incoming.id "
+            + "RETURNING oauth2_authorization.id) "
+            + "INSERT INTO oauth2_authorization (" + COLUMN_NAMES + ", expires_at) "
+            + "SELECT * FROM incoming WHERE NOT EXISTS (SELECT 1 FROM updated)";
+
+    /**
+     * Блокировки берутся в порядке ключей, чтобы пачки с пересекающимися id не взаимоблокировались.
+     */
+    private static final String LOCK_IDS_SQL = "SELECT pg_advisory_xact_lock(lock_key) FROM "
+            + "(SELECT DISTINCT hashtext(id) AS lock_key FROM unnest(?::text[]) AS ids (id) ORDER BY lock_key) keys";
+
+    private final TransactionOperations transactionOperations;
+
+    private final Duration pendingLifetime;
+
+    public PartitionedJdbcOAuth2AuthorizationService(JdbcOperations jdbcOperations,
+                                                     RegisteredClientRepository registeredClientRepository,
+                                                     TransactionOperations transactionOperations,
+                                                     Duration pendingLifetime) {
+        super(jdbcOperations, registeredClientRepository);
+        this.transactionOperations = transactionOperations;
+        this.pendingLifetime = pendingLifetime;
+    }
+
+    /**
+     * Внутри транзакции вызывающего (групповая фиксация) блокировка держится до её завершения.
+     */
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        transactionOperations.executeWithoutResult(status -> {
+            lockIds(List.of(authorization));
+            super.save(authorization);
+        });
+    }
+
+    @Override
+    public void saveAll(List<OAuth2Authorization> authorizations) {
+        transactionOperations.executeWithoutResult(status -> {
+            lockIds(authorizations);
+            super.saveAll(authorizations);
+        });
+    }
+
+    private void lockIds(List<OAuth2Authorization> authorizations) {
+        String[] ids = authorizations.stream().map(OAuth2Authorization::getId).toArray(String[]::new);
+        getJdbcOperations().query(LOCK_IDS_SQL,
+                statement -> statement.setArray(1, statement.getConnection().createArrayOf("text", ids)),
+                (RowCallbackHandler) row -> {
+                });
+    }
+
+    @Override
+    protected String upsertSql() {
+        return UPSERT_SQL;
+    }
+
+    @Override
+    protected Object[] upsertParameters(OAuth2Authorization authorization) {
+        List<SqlParameterValue> parameters = new ArrayList<>(getAuthorizationParametersMapper().apply(authorization));
+        parameters.add(new SqlParameterValue(Types.TIMESTAMP, Timestamp.from(expiresAt(authorization))));
+        return parameters.toArray();
+    }
+
+    /**
+     * Непрочитанные токены не попадают в {@link #expiresAt}, поэтому их сроки берутся из строки.
+     */
+    @Override
+    protected String partialUpdateSql(Set<AuthorizationTokenColumns> unloaded) {
+        List<String> columns = loadedColumns(unloaded);
+        return "UPDATE oauth2_authorization SET "
+                + columns.stream().skip(1)
+                        .map(column -> assignment(column, "oauth2_authorization." + column, "incoming." + column))
+                        .collect(Collectors.joining(", "))
+                + ", expires_at = GREATEST(incoming.expires_at, "
+                + unloaded.stream().map(token -> "oauth2_authorization." + token.expiresAtColumn())
+                        .collect(Collectors.joining(", "))
+                + ") FROM (VALUES (" + placeholders(columns) + ", ?::timestamp)) AS incoming ("
+                + String.join(", ", columns) + ", expires_at) WHERE oauth2_authorization.id = incoming.id";
+    }
+
+    @Override
+    protected Object[] partialUpdateParameters(OAuth2Authorization authorization,
+                                               Set<AuthorizationTokenColumns> unloaded) {
+        List<Object> parameters = new ArrayList<>(List.of(super.partialUpdateParameters(authorization, unloaded)));
+        parameters.add(new SqlParameterValue(Types.TIMESTAMP, Timestamp.from(expiresAt(authorization))));
+        return parameters.toArray();
+    }
+
+    /**
+     * Самый поздний срок действия токенов; авторизация без токенов хранится {@code pendingLifetime}.
+     */
+    Instant expiresAt(OAuth2Authorization authorization) {
+        return TOKEN_TYPES.stream()
+                .map(authorization::getToken)
+                .flatMap(token -> token != null ? Stream.ofNullable(token.getToken().getExpiresAt()) : Stream.empty())
+                .max(Instant::compareTo)
+                .orElseGet(() -> Instant.now().plus(pendingLifetime));
+    }
+}
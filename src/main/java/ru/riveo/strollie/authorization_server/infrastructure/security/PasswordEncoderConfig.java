@@ -5,11 +5,23 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
 public class PasswordEncoderConfig {
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+    public PasswordEncoder passwordEncoder(ClientSecretCacheProperties clientSecretCacheProperties,
+                                           PasswordVerificationProperties verificationProperties,
+                                           MeterRegistry meterRegistry) {
+        PasswordEncoder passwordEncoder = PasswordEncoderFactories.createDelegatingPasswordEncoder();
+        if (verificationProperties.enabled()) {
+            passwordEncoder = new BulkheadPasswordEncoder(passwordEncoder, verificationProperties, meterRegistry);
+        }
+        // Кэш снаружи пула: попадания не занимают потоки проверки
+        if (clientSecretCacheProperties.enabled()) {
+            return new VerifiedSecretCachingPasswordEncoder(passwordEncoder, clientSecretCacheProperties, meterRegistry);
+        }
+        return passwordEncoder;
     }
 }
\ No newline at end of file
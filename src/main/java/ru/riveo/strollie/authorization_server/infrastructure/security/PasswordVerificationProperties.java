@@ -0,0 +1,29 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки отдельного пула для проверки секретов клиентов.
+ *
+ * @param enabled           Переносит {@code PasswordEncoder.matches} из потоков Tomcat в отдельный пул.
+ * @param threads           Число потоков пула; 0 - по числу процессоров.
+ * @param queueCapacity     Ёмкость очереди; при переполнении запросы отклоняются с 503.
+ * @param perClientLimit    Сколько проверок одного клиента может одновременно ждать в очереди и выполняться.
+ * @param retryAfterSeconds Значение заголовка Retry-After при сбросе нагрузки.
+ */
+@ConfigurationProperties(prefix = "app.password-verification")
+public record PasswordVerificationProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("0") int threads,
+        @DefaultValue("64") int queueCapacity,
+        @DefaultValue("16") int perClientLimit,
+        @DefaultValue("1") long retryAfterSeconds) {
+
+    /**
+     * Число потоков с учётом значения по умолчанию.
+     */
+    public int effectiveThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+}
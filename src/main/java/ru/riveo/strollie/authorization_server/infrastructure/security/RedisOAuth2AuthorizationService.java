@@ -0,0 +1,406 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.security.oauth2.core.AbstractOAuth2Token;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.redis.RedisScripts;
+
+/**
+ * Хранилище авторизаций OAuth2 в Redis вместо таблицы oauth2_authorization.
+ * <p>
+ * Авторизация - хэш {@code oauth2_authorization:<id>} с короткими именами полей; атрибуты и метаданные
+ * токенов пишутся тем же {@link AuthorizationAttributeCodec}, что и в PostgreSQL. Для каждого токена
+ * заводится индекс {@code oauth2_authorization_index:<тип>:<SHA-256 значения>} со значением id.
+ * Хэш и индексы живут до истечения самого долгоживущего токена авторизации, поэтому истёкшие
+ * авторизации удаляет сам Redis. Индексы прежних значений токенов удаляются при сохранении.
+ * <p>
+ * Скрипты сохранения и удаления обращаются только к ключам из KEYS: индексы прежних значений читаются
+ * из поля {@code indexes} заранее, а скрипт сверяет, что поле не изменилось, и иначе сохранение
+ * повторяется. Хэш и индексы лежат в разных слотах, поэтому хранилище рассчитано на Redis без кластера.
+ */
+public class RedisOAuth2AuthorizationService implements OAuth2AuthorizationService {
+
+    private static final String KEY_PREFIX = "oauth2_authorization:";
+    private static final String INDEX_KEY_PREFIX = "oauth2_authorization_index:";
+
+    private static final String CLIENT_FIELD = "client";
+    private static final String PRINCIPAL_FIELD = "principal";
+    private static final String GRANT_TYPE_FIELD = "grant";
+    private static final String SCOPES_FIELD = "scopes";
+    private static final String ATTRIBUTES_FIELD = "attrs";
+    private static final String STATE_FIELD = "state";
+    private static final String ACCESS_TOKEN_TYPE_FIELD = "a.t";
+    private static final String ACCESS_TOKEN_SCOPES_FIELD = "a.s";
+    private static final String INDEXES_FIELD = "indexes";
+
+    /**
+     * Попыток сохранения или удаления, пока поле indexes меняется параллельной записью.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final RedisScript<Long> SAVE_SCRIPT =
+            RedisScripts.load("redis/authorization/save.lua", Long.class);
+    private static final RedisScript<Long> REMOVE_SCRIPT =
+            RedisScripts.load("redis/authorization/remove.lua", Long.class);
+
+    private static final RedisSerializer<Long> RESULT_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    /**
+     * Токены авторизации: префикс полей хэша и тип токена, по которому строится индекс.
+     */
+    private enum Slot {
+        AUTHORIZATION_CODE("c", OAuth2ParameterNames.CODE, OAuth2AuthorizationCode.class),
+        ACCESS_TOKEN("a", OAuth2ParameterNames.ACCESS_TOKEN, OAuth2AccessToken.class),
+        OIDC_ID_TOKEN("o", OidcParameterNames.ID_TOKEN, OidcIdToken.class),
+        REFRESH_TOKEN("r", OAuth2ParameterNames.REFRESH_TOKEN, OAuth2RefreshToken.class),
+        USER_CODE("u", OAuth2ParameterNames.USER_CODE, OAuth2UserCode.class),
+        DEVICE_CODE("d", OAuth2ParameterNames.DEVICE_CODE, OAuth2DeviceCode.class);
+
+        private final String valueField;
+        private final String issuedAtField;
+        private final String expiresAtField;
+        private final String metadataField;
+        private final String tokenType;
+        private final Class<? extends AbstractOAuth2Token> type;
+
+        Slot(String prefix, String tokenType, Class<? extends AbstractOAuth2Token> type) {
+            this.valueField = prefix + ".v";
+            this.issuedAtField = prefix + ".i";
+            this.expiresAtField = prefix + ".e";
+            this.metadataField = prefix + ".m";
+            this.tokenType = tokenType;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Типы, по которым ищется токен без указания типа, в порядке библиотечной реализации.
+     */
+    private static final List<String> INDEX_TYPES = Stream.concat(Stream.of(OAuth2ParameterNames.STATE),
+            Arrays.stream(Slot.values()).map(slot -> slot.tokenType)).toList();
+
+    private final StringRedisTemplate redisTemplate;
+    private final RegisteredClientRepository registeredClientRepository;
+    private final AuthorizationAttributeCodec readCodec;
+    private final AuthorizationAttributeCodec writeCodec;
+    private final Duration pendingLifetime;
+
+    public RedisOAuth2AuthorizationService(StringRedisTemplate redisTemplate,
+                                           RegisteredClientRepository registeredClientRepository,
+                                           AuthorizationAttributeCodec readCodec,
+                                           AuthorizationAttributeCodec writeCodec,
+                                           Duration pendingLifetime) {
+        this.redisTemplate = redisTemplate;
+        this.registeredClientRepository = registeredClientRepository;
+        this.readCodec = readCodec;
+        this.writeCodec = writeCodec;
+        this.pendingLifetime = pendingLifetime;
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        List<String> keys = new ArrayList<>();
+        keys.add(key(authorization.getId()));
+        List<byte[]> fields = new ArrayList<>();
+        put(fields, CLIENT_FIELD, bytes(authorization.getRegisteredClientId()));
+        put(fields, PRINCIPAL_FIELD, bytes(authorization.getPrincipalName()));
+        put(fields, GRANT_TYPE_FIELD, bytes(authorization.getAuthorizationGrantType().getValue()));
+        if (!CollectionUtils.isEmpty(authorization.getAuthorizedScopes())) {
+            put(fields, SCOPES_FIELD,
+                    bytes(StringUtils.collectionToCommaDelimitedString(authorization.getAuthorizedScopes())));
+        }
+        put(fields, ATTRIBUTES_FIELD, writeCodec.encode(authorization.getAttributes()));
+
+        String state = authorization.getAttribute(OAuth2ParameterNames.STATE);
+        if (StringUtils.hasText(state)) {
+            put(fields, STATE_FIELD, bytes(state));
+            keys.add(indexKey(OAuth2ParameterNames.STATE, state));
+        }
+
+        for (Slot slot : Slot.values()) {
+            OAuth2Authorization.Token<? extends AbstractOAuth2Token> token = authorization.getToken(slot.type);
+            if (token == null) {
+                continue;
+            }
+            AbstractOAuth2Token value = token.getToken();
+            put(fields, slot.valueField, bytes(value.getTokenValue()));
+            if (value.getIssuedAt() != null) {
+                put(fields, slot.issuedAtField, bytes(Long.toString(micros(value.getIssuedAt()))));
+            }
+            if (value.getExpiresAt() != null) {
+                put(fields, slot.expiresAtField, bytes(Long.toString(micros(value.getExpiresAt()))));
+            }
+            put(fields, slot.metadataField, writeCodec.encode(token.getMetadata()));
+            if (value instanceof OAuth2AccessToken accessToken) {
+                put(fields, ACCESS_TOKEN_TYPE_FIELD, bytes(accessToken.getTokenType().getValue()));
+                if (!CollectionUtils.isEmpty(accessToken.getScopes())) {
+                    put(fields, ACCESS_TOKEN_SCOPES_FIELD,
+                            bytes(StringUtils.collectionToCommaDelimitedString(accessToken.getScopes())));
+                }
+            }
+            keys.add(indexKey(slot.tokenType, value.getTokenValue()));
+        }
+
+        byte[] ttl = bytes(Long.toString(ttl(authorization).toMillis()));
+        byte[] indexCount = bytes(Integer.toString(keys.size() - 1));
+        for (int attempt = 1; ; attempt++) {
+            String previous = previousIndexes(keys.get(0));
+            List<String> scriptKeys = new ArrayList<>(keys);
+            // Индексы прежних значений токенов (после ротации) удаляются
+            for (String index : StringUtils.tokenizeToStringArray(previous, " ")) {
+                if (!keys.contains(index)) {
+                    scriptKeys.add(index);
+                }
+            }
+            Object[] args = new Object[4 + fields.size()];
+            args[0] = ttl;
+            args[1] = bytes(authorization.getId());
+            args[2] = indexCount;
+            args[3] = bytes(previous);
+            for (int i = 0; i < fields.size(); i++) {
+                args[4 + i] = fields.get(i);
+            }
+            Long saved = redisTemplate.execute(SAVE_SCRIPT, RedisSerializer.byteArray(), RESULT_SERIALIZER,
+                    scriptKeys, args);
+            if (Long.valueOf(1L).equals(saved)) {
+                return;
+            }
+            checkAttempts(attempt, authorization.getId());
+        }
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        String key = key(authorization.getId());
+        for (int attempt = 1; ; attempt++) {
+            String previous = previousIndexes(key);
+            List<String> scriptKeys = new ArrayList<>();
+            scriptKeys.add(key);
+            scriptKeys.addAll(Arrays.asList(StringUtils.tokenizeToStringArray(previous, " ")));
+            Long removed = redisTemplate.execute(REMOVE_SCRIPT, scriptKeys, previous);
+            if (removed == null || removed >= 0) {
+                return;
+            }
+            checkAttempts(attempt, authorization.getId());
+        }
+    }
+
+    private String previousIndexes(String key) {
+        Object indexes = redisTemplate.opsForHash().get(key, INDEXES_FIELD);
+        return indexes != null ? indexes.toString() : "";
+    }
+
+    private static void checkAttempts(int attempt, String id) {
+        if (attempt >= MAX_ATTEMPTS) {
+            throw new OptimisticLockingFailureException(
+                    "Authorization '" + id + "' was modified concurrently " + attempt + " times");
+        }
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        Assert.hasText(id, "id cannot be empty");
+        Map<String, byte[]> hash = load(id);
+        return hash != null ? map(id, hash) : null;
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        Assert.hasText(token, "token cannot be empty");
+        if (tokenType == null) {
+            List<String> ids = redisTemplate.opsForValue().multiGet(
+                    INDEX_TYPES.stream().map(type -> indexKey(type, token)).toList());
+            for (int i = 0; ids != null && i < ids.size(); i++) {
+                OAuth2Authorization authorization = findBy(ids.get(i), INDEX_TYPES.get(i), token);
+                if (authorization != null) {
+                    return authorization;
+                }
+            }
+            return null;
+        }
+        if (!INDEX_TYPES.contains(tokenType.getValue())) {
+            return null;
+        }
+        String id = redisTemplate.opsForValue().get(indexKey(tokenType.getValue(), token));
+        return findBy(id, tokenType.getValue(), token);
+    }
+
+    /**
+     * Индекс мог пережить ротацию токена, поэтому значение токена сверяется с хэшем.
+     */
+    private OAuth2Authorization findBy(String id, String tokenType, String token) {
+        if (id == null) {
+            return null;
+        }
+        Map<String, byte[]> hash = load(id);
+        if (hash == null) {
+            return null;
+        }
+        String field = OAuth2ParameterNames.STATE.equals(tokenType) ? STATE_FIELD : slot(tokenType).valueField;
+        return token.equals(string(hash.get(field))) ? map(id, hash) : null;
+    }
+
+    private Map<String, byte[]> load(String id) {
+        byte[] key = bytes(key(id));
+        Map<byte[], byte[]> raw = redisTemplate.execute(
+                (RedisCallback<Map<byte[], byte[]>>) connection -> connection.hashCommands().hGetAll(key));
+        if (CollectionUtils.isEmpty(raw)) {
+            return null;
+        }
+        Map<String, byte[]> hash = new HashMap<>(raw.size() * 2);
+        raw.forEach((field, value) -> hash.put(string(field), value));
+        return hash;
+    }
+
+    private OAuth2Authorization map(String id, Map<String, byte[]> hash) {
+        String registeredClientId = string(hash.get(CLIENT_FIELD));
+        RegisteredClient registeredClient = registeredClientRepository.findById(registeredClientId);
+        if (registeredClient == null) {
+            throw new DataRetrievalFailureException("The RegisteredClient with id '" + registeredClientId
+                    + "' was not found in the RegisteredClientRepository.");
+        }
+
+        Map<String, Object> attributes = readCodec.decode(hash.get(ATTRIBUTES_FIELD));
+        OAuth2Authorization.Builder builder = OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(id)
+                .principalName(string(hash.get(PRINCIPAL_FIELD)))
+                .authorizationGrantType(new AuthorizationGrantType(string(hash.get(GRANT_TYPE_FIELD))))
+                .authorizedScopes(scopes(hash.get(SCOPES_FIELD)))
+                .attributes(attrs -> attrs.putAll(attributes));
+
+        for (Slot slot : Slot.values()) {
+            String value = string(hash.get(slot.valueField));
+            if (value == null) {
+                continue;
+            }
+            Instant issuedAt = instant(hash.get(slot.issuedAtField));
+            Instant expiresAt = instant(hash.get(slot.expiresAtField));
+            Map<String, Object> metadata = readCodec.decode(hash.get(slot.metadataField));
+            switch (slot) {
+                case AUTHORIZATION_CODE -> builder.token(new OAuth2AuthorizationCode(value, issuedAt, expiresAt),
+                        m -> m.putAll(metadata));
+                case ACCESS_TOKEN -> builder.token(new OAuth2AccessToken(
+                                tokenType(string(hash.get(ACCESS_TOKEN_TYPE_FIELD))), value, issuedAt, expiresAt,
+                                scopes(hash.get(ACCESS_TOKEN_SCOPES_FIELD))),
+                        m -> m.putAll(metadata));
+                case OIDC_ID_TOKEN -> {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> claims =
+                            (Map<String, Object>) metadata.get(OAuth2Authorization.Token.CLAIMS_METADATA_NAME);
+                    builder.token(new OidcIdToken(value, issuedAt, expiresAt, claims), m -> m.putAll(metadata));
+                }
+                case REFRESH_TOKEN -> builder.token(new OAuth2RefreshToken(value, issuedAt, expiresAt),
+                        m -> m.putAll(metadata));
+                case USER_CODE -> builder.token(new OAuth2UserCode(value, issuedAt, expiresAt),
+                        m -> m.putAll(metadata));
+                case DEVICE_CODE -> builder.token(new OAuth2DeviceCode(value, issuedAt, expiresAt),
+                        m -> m.putAll(metadata));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Время жизни по самому долгоживущему токену; авторизация без токенов хранится {@code pendingLifetime}.
+     */
+    Duration ttl(OAuth2Authorization authorization) {
+        Instant now = Instant.now();
+        Instant expiresAt = Arrays.stream(Slot.values())
+                .map(slot -> authorization.getToken(slot.type))
+                .flatMap(token -> token != null ? Stream.ofNullable(token.getToken().getExpiresAt()) : Stream.empty())
+                .max(Instant::compareTo)
+                .orElseGet(() -> now.plus(pendingLifetime));
+        Duration ttl = Duration.between(now, expiresAt);
+        // PEXPIRE с неположительным TTL удалил бы хэш сразу, истёкшей авторизации хватает секунды
+        return ttl.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : ttl;
+    }
+
+    private static Slot slot(String tokenType) {
+        for (Slot slot : Slot.values()) {
+            if (slot.tokenType.equals(tokenType)) {
+                return slot;
+            }
+        }
+        throw new IllegalArgumentException("Unknown token type: " + tokenType);
+    }
+
+    private static String key(String id) {
+        return KEY_PREFIX + id;
+    }
+
+    private static String indexKey(String tokenType, String token) {
+        return INDEX_KEY_PREFIX + tokenType + ":"
+                + HexFormat.of().formatHex(DigestJdbcOAuth2AuthorizationService.digest(token));
+    }
+
+    private static void put(List<byte[]> fields, String field, byte[] value) {
+        fields.add(bytes(field));
+        fields.add(value);
+    }
+
+    private static long micros(Instant instant) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+
+    private static Instant instant(byte[] value) {
+        return value != null ? Instant.EPOCH.plus(Long.parseLong(string(value)), ChronoUnit.MICROS) : null;
+    }
+
+    private static OAuth2AccessToken.TokenType tokenType(String value) {
+        if (OAuth2AccessToken.TokenType.DPOP.getValue().equalsIgnoreCase(value)) {
+            return OAuth2AccessToken.TokenType.DPOP;
+        }
+        return OAuth2AccessToken.TokenType.BEARER;
+    }
+
+    private static Set<String> scopes(byte[] value) {
+        return value != null ? StringUtils.commaDelimitedListToSet(string(value)) : Collections.emptySet();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+}
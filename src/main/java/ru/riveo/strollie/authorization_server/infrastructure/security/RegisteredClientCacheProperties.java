@@ -0,0 +1,22 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки кэша зарегистрированных OAuth2 клиентов.
+ *
+ * @param enabled        Включает кэш перед {@code JdbcRegisteredClientRepository}.
+ * @param maximumSize    Максимальное число записей в каждом из индексов кэша (по id и по client_id).
+ * @param ttl            Время жизни записи. Страхует на случай потерянного уведомления об изменении.
+ * @param reconnectDelay Пауза перед повторной подпиской на уведомления после ошибки соединения.
+ */
+@ConfigurationProperties(prefix = "app.registered-client-cache")
+public record RegisteredClientCacheProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("1000") long maximumSize,
+        @DefaultValue("10m") Duration ttl,
+        @DefaultValue("5s") Duration reconnectDelay) {
+}
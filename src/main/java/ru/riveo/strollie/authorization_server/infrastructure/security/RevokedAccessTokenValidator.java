@@ -0,0 +1,31 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Отвергает JWT, авторизация которого отозвана. Токены без claim авторизации проверяются только по подписи.
+ */
+public class RevokedAccessTokenValidator implements OAuth2TokenValidator<Jwt> {
+
+    private static final OAuth2Error REVOKED = new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN,
+            "The access token has been revoked", null);
+
+    private final AccessTokenRevocations revocations;
+
+    public RevokedAccessTokenValidator(AccessTokenRevocations revocations) {
+        this.revocations = revocations;
+    }
+
+    @Override
+    public OAuth2TokenValidatorResult validate(Jwt jwt) {
+        String authorizationId = jwt.getClaimAsString(AccessTokenRevocations.AUTHORIZATION_CLAIM);
+        if (authorizationId != null && revocations.isRevoked(authorizationId)) {
+            return OAuth2TokenValidatorResult.failure(REVOKED);
+        }
+        return OAuth2TokenValidatorResult.success();
+    }
+}
@@ -0,0 +1,59 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.http.converter.OAuth2ErrorHttpMessageConverter;
+import org.springframework.security.oauth2.server.authorization.web.authentication.OAuth2ErrorAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.riveo.strollie.authorization_server.shared.exception.OAuth2RateLimitExceededException;
+import ru.riveo.strollie.authorization_server.shared.exception.OAuth2ServiceOverloadedException;
+
+/**
+ * Ответ эндпоинта токенов на ошибки: превышение лимита отдаётся как 429 с Retry-After,
+ * сброс нагрузки - как 503 с Retry-After, остальные ошибки - стандартным обработчиком (400/401).
+ */
+class TokenEndpointErrorResponseHandler implements AuthenticationFailureHandler {
+
+    private final AuthenticationFailureHandler delegate;
+    private final HttpMessageConverter<OAuth2Error> errorConverter = new OAuth2ErrorHttpMessageConverter();
+
+    TokenEndpointErrorResponseHandler() {
+        this(new OAuth2ErrorAuthenticationFailureHandler());
+    }
+
+    TokenEndpointErrorResponseHandler(AuthenticationFailureHandler delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
+                                        AuthenticationException exception) throws IOException, ServletException {
+        if (exception instanceof OAuth2RateLimitExceededException rateLimitException) {
+            write(response, HttpStatus.TOO_MANY_REQUESTS, rateLimitException.getRetryAfterSeconds(),
+                    rateLimitException.getError());
+        } else if (exception instanceof OAuth2ServiceOverloadedException overloadedException) {
+            write(response, HttpStatus.SERVICE_UNAVAILABLE, overloadedException.getRetryAfterSeconds(),
+                    overloadedException.getError());
+        } else {
+            delegate.onAuthenticationFailure(request, response, exception);
+        }
+    }
+
+    private void write(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, OAuth2Error error)
+            throws IOException {
+        ServletServerHttpResponse httpResponse = new ServletServerHttpResponse(response);
+        httpResponse.setStatusCode(status);
+        httpResponse.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        errorConverter.write(error, null, httpResponse);
+    }
+}
@@ -7,15 +7,22 @@ import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
 import org.springframework.security.oauth2.server.authorization.token.*;
 
 import java.io.IOException;
@@ -34,6 +41,7 @@ import java.util.stream.Collectors;
 public class TokenInfrastructureConfig {
 
     private final AuthorizationProperties properties;
+    private final AccessTokenPersistenceProperties accessTokenProperties;
     private final ResourceLoader resourceLoader;
 
     @Bean
@@ -71,10 +79,35 @@ public class TokenInfrastructureConfig {
                         .map(GrantedAuthority::getAuthority)
                         .collect(Collectors.toSet());
                 context.getClaims().claim("authorities", authorities);
+                // Id авторизации позволяет отозвать токен, который не хранится на сервере
+                if (accessTokenProperties.revocationCheck() && context.getAuthorization() != null) {
+                    context.getClaims().claim(AccessTokenRevocations.AUTHORIZATION_CLAIM,
+                            context.getAuthorization().getId());
+                }
             }
         };
     }
 
+    @Bean
+    public AccessTokenRevocations accessTokenRevocations(StringRedisTemplate redisTemplate) {
+        return new AccessTokenRevocations(redisTemplate);
+    }
+
+    /**
+     * Декодер JWT для собственных API сервера: подпись и срок действия плюс список отозванных авторизаций.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.authorization.access-tokens", name = "revocation-check", havingValue = "true")
+    public JwtDecoder jwtDecoder(JWKSource<SecurityContext> jwkSource, AccessTokenRevocations revocations) {
+        JwtDecoder jwtDecoder = OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource);
+        if (!(jwtDecoder instanceof NimbusJwtDecoder nimbusJwtDecoder)) {
+            throw new IllegalStateException("Unexpected JwtDecoder: " + jwtDecoder.getClass().getName());
+        }
+        nimbusJwtDecoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+                JwtValidators.createDefault(), new RevokedAccessTokenValidator(revocations)));
+        return nimbusJwtDecoder;
+    }
+
     private KeyPair loadKeyPair() {
         try {
             Resource keystoreResource = resourceLoader.getResource(properties.security().keystore().path());
@@ -0,0 +1,134 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Запоминает успешные проверки секретов клиентов, чтобы не выполнять BCrypt на каждый запрос к /oauth2/token.
+ * <p>
+ * Ключ записи — HMAC-SHA256 от предъявленного секрета и хранимого хэша под ключом, который создаётся
+ * при старте узла и нигде не сохраняется. Сами секреты в кэш не попадают. Хэш BCrypt содержит
+ * случайную соль, поэтому он однозначно определяет клиента, а смена секрета меняет ключ.
+ * Неуспешные проверки не кэшируются. При изменении клиентов кэш сбрасывается целиком
+ * ({@link #invalidateAll()}).
+ */
+public class VerifiedSecretCachingPasswordEncoder implements PasswordEncoder {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+    // Вес последней проверки в скользящем среднем её длительности
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    private final PasswordEncoder delegate;
+    private final Cache<String, Boolean> verified;
+    private final ThreadLocal<Mac> mac;
+    private final Timer verificationTimer;
+    private final AtomicLong savedNanos = new AtomicLong();
+    private volatile double averageVerificationNanos;
+
+    public VerifiedSecretCachingPasswordEncoder(PasswordEncoder delegate,
+                                                ClientSecretCacheProperties properties,
+                                                MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+
+        byte[] keyBytes = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(keyBytes);
+        SecretKeySpec key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> newMac(key));
+
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "client_secret_verification");
+        this.verificationTimer = Timer.builder("client_secret.verification")
+                .description("Time spent verifying client secrets with the password encoder")
+                .register(meterRegistry);
+        FunctionCounter.builder("client_secret.verification.saved", savedNanos,
+                        nanos -> nanos.get() / (double) TimeUnit.SECONDS.toNanos(1))
+                .description("Estimated verification time saved by cache hits")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+        String key = key(rawPassword, encodedPassword);
+        if (verified.getIfPresent(key) != null) {
+            savedNanos.addAndGet((long) averageVerificationNanos);
+            return true;
+        }
+
+        long startedAt = System.nanoTime();
+        boolean matches = delegate.matches(rawPassword, encodedPassword);
+        long elapsed = System.nanoTime() - startedAt;
+        verificationTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (matches) {
+            double average = averageVerificationNanos;
+            averageVerificationNanos = average == 0 ? elapsed : average + AVERAGE_WEIGHT * (elapsed - average);
+            verified.put(key, Boolean.TRUE);
+        }
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Забывает все успешные проверки.
+     */
+    public void invalidateAll() {
+        verified.invalidateAll();
+    }
+
+    private String key(CharSequence rawPassword, String encodedPassword) {
+        byte[] raw = rawPassword.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = encodedPassword.getBytes(StandardCharsets.UTF_8);
+        // Длина секрета отделяет его от хэша, чтобы разные пары не давали одно сообщение
+        byte[] message = ByteBuffer.allocate(Integer.BYTES + raw.length + encoded.length)
+                .putInt(raw.length)
+                .put(raw)
+                .put(encoded)
+                .array();
+        return Base64.getEncoder().encodeToString(mac.get().doFinal(message));
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
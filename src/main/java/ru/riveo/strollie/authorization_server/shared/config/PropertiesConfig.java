@@ -2,10 +2,34 @@ package ru.riveo.strollie.authorization_server.shared.config;
 
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.rate_limit.OtpRateLimitProperties;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpDerivationProperties;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpGeneratorProperties;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpIssuanceProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.notification.MailDeliveryProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.notification.MailOutboxProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.features.passwordless_auth.login_with_otp.UserAccountCacheProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.redis.OtpStorageProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.redis.UserEmailFilterProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.security.AccessTokenPersistenceProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.security.AuthorizationAttributeCodecProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.security.AuthorizationGroupCommitProperties;
 import ru.riveo.strollie.authorization_server.infrastructure.security.AuthorizationProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.security.AuthorizationStorageProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.security.ClientSecretCacheProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.security.PasswordVerificationProperties;
+import ru.riveo.strollie.authorization_server.infrastructure.security.RegisteredClientCacheProperties;
 import ru.riveo.strollie.authorization_server.infrastructure.system.AdminProperties;
 
 @Configuration
-@EnableConfigurationProperties({AuthorizationProperties.class, AdminProperties.class})
+@EnableConfigurationProperties({AuthorizationProperties.class, AdminProperties.class, OtpStorageProperties.class,
+        UserEmailFilterProperties.class, OtpIssuanceProperties.class,
+        MailDeliveryProperties.class, MailOutboxProperties.class, OtpGeneratorProperties.class,
+        OtpRateLimitProperties.class, OtpDerivationProperties.class,
+        UserAccountCacheProperties.class, AuthorizationStorageProperties.class,
+        AuthorizationGroupCommitProperties.class,
+        AuthorizationAttributeCodecProperties.class, AccessTokenPersistenceProperties.class,
+        RegisteredClientCacheProperties.class, ClientSecretCacheProperties.class,
+        PasswordVerificationProperties.class})
 public class PropertiesConfig {
 }
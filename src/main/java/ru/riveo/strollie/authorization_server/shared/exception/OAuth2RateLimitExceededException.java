@@ -0,0 +1,21 @@
+package ru.riveo.strollie.authorization_server.shared.exception;
+
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+
+import lombok.Getter;
+
+/**
+ * Превышение лимита запросов на эндпоинте токенов; отдаётся клиенту как 429 с Retry-After.
+ */
+@Getter
+public class OAuth2RateLimitExceededException extends OAuth2AuthenticationException {
+    public static final String ERROR_CODE = "rate_limit_exceeded";
+
+    private final long retryAfterSeconds;
+
+    public OAuth2RateLimitExceededException(long retryAfterSeconds) {
+        super(new OAuth2Error(ERROR_CODE, "Too many requests, please retry later.", null));
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
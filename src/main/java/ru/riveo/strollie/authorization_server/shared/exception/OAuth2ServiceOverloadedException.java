@@ -0,0 +1,22 @@
+package ru.riveo.strollie.authorization_server.shared.exception;
+
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+
+import lombok.Getter;
+
+/**
+ * Сброс нагрузки на эндпоинтах авторизационного сервера; отдаётся клиенту как 503 с Retry-After.
+ */
+@Getter
+public class OAuth2ServiceOverloadedException extends OAuth2AuthenticationException {
+
+    private final long retryAfterSeconds;
+
+    public OAuth2ServiceOverloadedException(long retryAfterSeconds) {
+        super(new OAuth2Error(OAuth2ErrorCodes.TEMPORARILY_UNAVAILABLE,
+                "The server is overloaded, please retry later.", null));
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
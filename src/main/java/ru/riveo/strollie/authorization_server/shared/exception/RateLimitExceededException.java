@@ -1,10 +1,23 @@
 package ru.riveo.strollie.authorization_server.shared.exception;
 
+import lombok.Getter;
+
 /**
  * Исключение, выбрасываемое при превышении лимитов запросов
  */
+@Getter
 public class RateLimitExceededException extends BusinessException {
+    /**
+     * Через сколько секунд можно повторить запрос; 0 - неизвестно.
+     */
+    private final long retryAfterSeconds;
+
     public RateLimitExceededException(String message) {
+        this(message, 0);
+    }
+
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
         super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
     }
 }
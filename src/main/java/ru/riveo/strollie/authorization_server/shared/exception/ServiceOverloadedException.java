@@ -0,0 +1,16 @@
+package ru.riveo.strollie.authorization_server.shared.exception;
+
+import lombok.Getter;
+
+/**
+ * Исключение, выбрасываемое при сбросе нагрузки, когда очередь обработки переполнена
+ */
+@Getter
+public class ServiceOverloadedException extends BusinessException {
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
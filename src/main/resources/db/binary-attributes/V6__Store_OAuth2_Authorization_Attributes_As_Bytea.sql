@@ -0,0 +1,12 @@
+-- Атрибуты авторизации и метаданные токенов хранятся в bytea, чтобы приложение могло писать их
+-- компактным бинарным форматом. Подключается только при app.authorization.attributes.codec=binary:
+-- смена типа перезаписывает таблицу под ACCESS EXCLUSIVE, а при codec=json колонки остаются text.
+-- Существующий JSON переносится как есть и читается любым кодеком.
+ALTER TABLE oauth2_authorization
+    ALTER COLUMN attributes TYPE bytea USING convert_to(attributes, 'UTF8'),
+    ALTER COLUMN authorization_code_metadata TYPE bytea USING convert_to(authorization_code_metadata, 'UTF8'),
+    ALTER COLUMN access_token_metadata TYPE bytea USING convert_to(access_token_metadata, 'UTF8'),
+    ALTER COLUMN oidc_id_token_metadata TYPE bytea USING convert_to(oidc_id_token_metadata, 'UTF8'),
+    ALTER COLUMN refresh_token_metadata TYPE bytea USING convert_to(refresh_token_metadata, 'UTF8'),
+    ALTER COLUMN user_code_metadata TYPE bytea USING convert_to(user_code_metadata, 'UTF8'),
+    ALTER COLUMN device_code_metadata TYPE bytea USING convert_to(device_code_metadata, 'UTF8');
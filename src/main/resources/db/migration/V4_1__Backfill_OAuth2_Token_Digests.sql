@@ -0,0 +1,32 @@
+-- Заполнение дайджестов строк, записанных до V4. Выполняется вне транзакции миграции
+-- (V4_1__Backfill_OAuth2_Token_Digests.sql.conf): каждый пакет фиксируется отдельно,
+-- поэтому блокировки строк держатся недолго, а прерванную миграцию можно перезапустить.
+DO
+$$
+    DECLARE
+        last_id   varchar(100) := '';
+        batch_end varchar(100);
+    BEGIN
+        LOOP
+            SELECT max(id)
+            INTO batch_end
+            FROM (SELECT id FROM oauth2_authorization WHERE id > last_id ORDER BY id LIMIT 5000) batch;
+            EXIT WHEN batch_end IS NULL;
+
+            -- Колонки дайджестов не входят в список UPDATE OF триггера, поэтому он не срабатывает
+            UPDATE oauth2_authorization
+            SET state_digest              = oauth2_token_digest(state),
+                authorization_code_digest = oauth2_token_digest(authorization_code_value),
+                access_token_digest       = oauth2_token_digest(access_token_value),
+                oidc_id_token_digest      = oauth2_token_digest(oidc_id_token_value),
+                refresh_token_digest      = oauth2_token_digest(refresh_token_value),
+                user_code_digest          = oauth2_token_digest(user_code_value),
+                device_code_digest        = oauth2_token_digest(device_code_value)
+            WHERE id > last_id
+              AND id <= batch_end;
+
+            last_id := batch_end;
+            COMMIT;
+        END LOOP;
+    END
+$$;
@@ -0,0 +1,35 @@
+-- Индексы строятся CONCURRENTLY без блокировки записи, поэтому миграция выполняется вне транзакции
+-- (V4_2__Index_OAuth2_Token_Digests.sql.conf). Если построение прервано, PostgreSQL оставляет индекс
+-- в состоянии INVALID, и IF NOT EXISTS его бы пропустил; такие индексы удаляются перед повторной попыткой.
+DO
+$$
+    DECLARE
+        invalid_index text;
+    BEGIN
+        FOR invalid_index IN
+            SELECT c.relname
+            FROM pg_index i
+                     JOIN pg_class c ON c.oid = i.indexrelid
+            WHERE i.indrelid = 'oauth2_authorization'::regclass
+              AND NOT i.indisvalid
+              AND c.relname LIKE 'idx\_oauth2\_authorization\_%\_digest'
+            LOOP
+                EXECUTE format('DROP INDEX %I', invalid_index);
+            END LOOP;
+    END
+$$;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_oauth2_authorization_state_digest
+    ON oauth2_authorization (state_digest);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_oauth2_authorization_authorization_code_digest
+    ON oauth2_authorization (authorization_code_digest);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_oauth2_authorization_access_token_digest
+    ON oauth2_authorization (access_token_digest);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_oauth2_authorization_oidc_id_token_digest
+    ON oauth2_authorization (oidc_id_token_digest);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_oauth2_authorization_refresh_token_digest
+    ON oauth2_authorization (refresh_token_digest);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_oauth2_authorization_user_code_digest
+    ON oauth2_authorization (user_code_digest);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_oauth2_authorization_device_code_digest
+    ON oauth2_authorization (device_code_digest);
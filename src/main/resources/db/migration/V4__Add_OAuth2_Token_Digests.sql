@@ -0,0 +1,79 @@
+-- Поиск авторизации по токену идёт по SHA-256 дайджесту фиксированной длины с B-tree индексом,
+-- а не по текстовым колонкам значений, на которых индексов нет.
+-- Миграция разбита на три шага, чтобы не держать ACCESS EXCLUSIVE на время перезаписи таблицы:
+-- здесь добавляются nullable-колонки (только изменение каталога) и триггер для новых записей,
+-- V4_1 заполняет существующие строки пакетами, V4_2 строит индексы CONCURRENTLY.
+
+-- convert_to не объявлена IMMUTABLE, но целевая кодировка здесь фиксирована
+CREATE OR REPLACE FUNCTION oauth2_token_digest(value text) RETURNS bytea
+    LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE
+AS
+$$
+SELECT sha256(convert_to(value, 'UTF8'))
+$$;
+
+-- Колонки без значения по умолчанию добавляются без перезаписи таблицы
+ALTER TABLE oauth2_authorization
+    ADD COLUMN IF NOT EXISTS state_digest              bytea,
+    ADD COLUMN IF NOT EXISTS authorization_code_digest bytea,
+    ADD COLUMN IF NOT EXISTS access_token_digest       bytea,
+    ADD COLUMN IF NOT EXISTS oidc_id_token_digest      bytea,
+    ADD COLUMN IF NOT EXISTS refresh_token_digest      bytea,
+    ADD COLUMN IF NOT EXISTS user_code_digest          bytea,
+    ADD COLUMN IF NOT EXISTS device_code_digest        bytea;
+
+-- Дайджесты вычисляются при записи значений токенов вместо генерируемых колонок,
+-- добавление которых перезаписывает таблицу. Сохранение присваивает все колонки значений,
+-- поэтому при обновлении пересчитываются только изменившиеся значения, а строки без изменений
+-- токенов триггер не затрагивает.
+CREATE OR REPLACE FUNCTION oauth2_authorization_fill_digests() RETURNS trigger
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF TG_OP = 'INSERT' OR NEW.state IS DISTINCT FROM OLD.state THEN
+        NEW.state_digest := oauth2_token_digest(NEW.state);
+    END IF;
+    IF TG_OP = 'INSERT' OR NEW.authorization_code_value IS DISTINCT FROM OLD.authorization_code_value THEN
+        NEW.authorization_code_digest := oauth2_token_digest(NEW.authorization_code_value);
+    END IF;
+    IF TG_OP = 'INSERT' OR NEW.access_token_value IS DISTINCT FROM OLD.access_token_value THEN
+        NEW.access_token_digest := oauth2_token_digest(NEW.access_token_value);
+    END IF;
+    IF TG_OP = 'INSERT' OR NEW.oidc_id_token_value IS DISTINCT FROM OLD.oidc_id_token_value THEN
+        NEW.oidc_id_token_digest := oauth2_token_digest(NEW.oidc_id_token_value);
+    END IF;
+    IF TG_OP = 'INSERT' OR NEW.refresh_token_value IS DISTINCT FROM OLD.refresh_token_value THEN
+        NEW.refresh_token_digest := oauth2_token_digest(NEW.refresh_token_value);
+    END IF;
+    IF TG_OP = 'INSERT' OR NEW.user_code_value IS DISTINCT FROM OLD.user_code_value THEN
+        NEW.user_code_digest := oauth2_token_digest(NEW.user_code_value);
+    END IF;
+    IF TG_OP = 'INSERT' OR NEW.device_code_value IS DISTINCT FROM OLD.device_code_value THEN
+        NEW.device_code_digest := oauth2_token_digest(NEW.device_code_value);
+    END IF;
+    RETURN NEW;
+END
+$$;
+
+DROP TRIGGER IF EXISTS oauth2_authorization_digests ON oauth2_authorization;
+CREATE TRIGGER oauth2_authorization_digests
+    BEFORE INSERT
+    ON oauth2_authorization
+    FOR EACH ROW
+EXECUTE FUNCTION oauth2_authorization_fill_digests();
+
+DROP TRIGGER IF EXISTS oauth2_authorization_digests_update ON oauth2_authorization;
+CREATE TRIGGER oauth2_authorization_digests_update
+    BEFORE UPDATE OF state, authorization_code_value, access_token_value, oidc_id_token_value,
+        refresh_token_value, user_code_value, device_code_value
+    ON oauth2_authorization
+    FOR EACH ROW
+    WHEN (OLD.state IS DISTINCT FROM NEW.state
+        OR OLD.authorization_code_value IS DISTINCT FROM NEW.authorization_code_value
+        OR OLD.access_token_value IS DISTINCT FROM NEW.access_token_value
+        OR OLD.oidc_id_token_value IS DISTINCT FROM NEW.oidc_id_token_value
+        OR OLD.refresh_token_value IS DISTINCT FROM NEW.refresh_token_value
+        OR OLD.user_code_value IS DISTINCT FROM NEW.user_code_value
+        OR OLD.device_code_value IS DISTINCT FROM NEW.device_code_value)
+EXECUTE FUNCTION oauth2_authorization_fill_digests();
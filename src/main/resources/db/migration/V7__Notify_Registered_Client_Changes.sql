@@ -0,0 +1,21 @@
+-- Узлы держат разобранные RegisteredClient в памяти и сбрасывают кэш по уведомлению в канал
+-- oauth2_registered_client_changed. Триггер срабатывает на любое изменение таблицы, в том числе
+-- из SQL в обход приложения. Уведомления доставляются после коммита, одинаковые в пределах
+-- транзакции схлопываются.
+CREATE OR REPLACE FUNCTION notify_oauth2_registered_client_changed() RETURNS trigger
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    PERFORM pg_notify('oauth2_registered_client_changed', TG_OP);
+    RETURN NULL;
+END
+$$;
+
+DROP TRIGGER IF EXISTS oauth2_registered_client_changed ON oauth2_registered_client;
+
+CREATE TRIGGER oauth2_registered_client_changed
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE
+    ON oauth2_registered_client
+    FOR EACH STATEMENT
+EXECUTE FUNCTION notify_oauth2_registered_client_changed();
@@ -0,0 +1,194 @@
+-- Секционирование oauth2_authorization по дням окончания срока действия авторизации.
+-- Подключается только в режиме app.authorization.storage.mode=partitioned.
+-- expires_at - самый поздний срок действия токенов авторизации; секция, все строки которой
+-- истекли, удаляется целиком вместо DELETE по строкам.
+
+ALTER TABLE oauth2_authorization RENAME TO oauth2_authorization_unpartitioned;
+
+CREATE TABLE oauth2_authorization
+(
+    id                            varchar(100) NOT NULL,
+    registered_client_id          varchar(100) NOT NULL,
+    principal_name                varchar(200) NOT NULL,
+    authorization_grant_type      varchar(100) NOT NULL,
+    authorized_scopes             varchar(1000) DEFAULT NULL,
+    attributes                    text          DEFAULT NULL,
+    state                         varchar(500)  DEFAULT NULL,
+    authorization_code_value      text          DEFAULT NULL,
+    authorization_code_issued_at  timestamp     DEFAULT NULL,
+    authorization_code_expires_at timestamp     DEFAULT NULL,
+    authorization_code_metadata   text          DEFAULT NULL,
+    access_token_value            text          DEFAULT NULL,
+    access_token_issued_at        timestamp     DEFAULT NULL,
+    access_token_expires_at       timestamp     DEFAULT NULL,
+    access_token_metadata         text          DEFAULT NULL,
+    access_token_type             varchar(100)  DEFAULT NULL,
+    access_token_scopes           varchar(1000) DEFAULT NULL,
+    oidc_id_token_value           text          DEFAULT NULL,
+    oidc_id_token_issued_at       timestamp     DEFAULT NULL,
+    oidc_id_token_expires_at      timestamp     DEFAULT NULL,
+    oidc_id_token_metadata        text          DEFAULT NULL,
+    refresh_token_value           text          DEFAULT NULL,
+    refresh_token_issued_at       timestamp     DEFAULT NULL,
+    refresh_token_expires_at      timestamp     DEFAULT NULL,
+    refresh_token_metadata        text          DEFAULT NULL,
+    user_code_value               text          DEFAULT NULL,
+    user_code_issued_at           timestamp     DEFAULT NULL,
+    user_code_expires_at          timestamp     DEFAULT NULL,
+    user_code_metadata            text          DEFAULT NULL,
+    device_code_value             text          DEFAULT NULL,
+    device_code_issued_at         timestamp     DEFAULT NULL,
+    device_code_expires_at        timestamp     DEFAULT NULL,
+    device_code_metadata          text          DEFAULT NULL,
+    state_digest                  bytea GENERATED ALWAYS AS (oauth2_token_digest(state)) STORED,
+    authorization_code_digest     bytea GENERATED ALWAYS AS (oauth2_token_digest(authorization_code_value)) STORED,
+    access_token_digest           bytea GENERATED ALWAYS AS (oauth2_token_digest(access_token_value)) STORED,
+    oidc_id_token_digest          bytea GENERATED ALWAYS AS (oauth2_token_digest(oidc_id_token_value)) STORED,
+    refresh_token_digest          bytea GENERATED ALWAYS AS (oauth2_token_digest(refresh_token_value)) STORED,
+    user_code_digest              bytea GENERATED ALWAYS AS (oauth2_token_digest(user_code_value)) STORED,
+    device_code_digest            bytea GENERATED ALWAYS AS (oauth2_token_digest(device_code_value)) STORED,
+    expires_at                    timestamp    NOT NULL,
+    -- Ключ секционирования обязан входить в первичный ключ; id по-прежнему уникален (UUID)
+    PRIMARY KEY (id, expires_at)
+) PARTITION BY RANGE (expires_at);
+
+-- Страховка для строк за горизонтом заранее созданных секций
+CREATE TABLE oauth2_authorization_default PARTITION OF oauth2_authorization DEFAULT;
+
+-- Создаёт секцию на сутки partition_day. Строки этого дня из секции по умолчанию переносятся в новую секцию,
+-- иначе PostgreSQL не даст её создать. Возвращает false, если секция уже есть.
+CREATE OR REPLACE FUNCTION create_oauth2_authorization_partition(partition_day date) RETURNS boolean
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    partition_name text := 'oauth2_authorization_p' || to_char(partition_day, 'YYYYMMDD');
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+
+    CREATE TEMP TABLE oauth2_authorization_moved ON COMMIT DROP AS
+    SELECT *
+    FROM oauth2_authorization_default
+    WHERE expires_at >= partition_day
+      AND expires_at < partition_day + 1;
+    DELETE FROM oauth2_authorization_default WHERE expires_at >= partition_day AND expires_at < partition_day + 1;
+
+    EXECUTE format('CREATE TABLE %I PARTITION OF oauth2_authorization FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, partition_day, partition_day + 1);
+
+    INSERT INTO oauth2_authorization (id, registered_client_id, principal_name, authorization_grant_type,
+                                      authorized_scopes, attributes, state,
+                                      authorization_code_value, authorization_code_issued_at,
+                                      authorization_code_expires_at, authorization_code_metadata,
+                                      access_token_value, access_token_issued_at, access_token_expires_at,
+                                      access_token_metadata, access_token_type, access_token_scopes,
+                                      oidc_id_token_value, oidc_id_token_issued_at, oidc_id_token_expires_at,
+                                      oidc_id_token_metadata,
+                                      refresh_token_value, refresh_token_issued_at, refresh_token_expires_at,
+                                      refresh_token_metadata,
+                                      user_code_value, user_code_issued_at, user_code_expires_at, user_code_metadata,
+                                      device_code_value, device_code_issued_at, device_code_expires_at,
+                                      device_code_metadata, expires_at)
+    SELECT id, registered_client_id, principal_name, authorization_grant_type,
+           authorized_scopes, attributes, state,
+           authorization_code_value, authorization_code_issued_at,
+           authorization_code_expires_at, authorization_code_metadata,
+           access_token_value, access_token_issued_at, access_token_expires_at,
+           access_token_metadata, access_token_type, access_token_scopes,
+           oidc_id_token_value, oidc_id_token_issued_at, oidc_id_token_expires_at,
+           oidc_id_token_metadata,
+           refresh_token_value, refresh_token_issued_at, refresh_token_expires_at,
+           refresh_token_metadata,
+           user_code_value, user_code_issued_at, user_code_expires_at, user_code_metadata,
+           device_code_value, device_code_issued_at, device_code_expires_at,
+           device_code_metadata, expires_at
+    FROM oauth2_authorization_moved;
+
+    DROP TABLE oauth2_authorization_moved;
+    RETURN true;
+END
+$$;
+
+-- Удаляет секции, все строки которых истекли до начала суток cutoff. Возвращает число удалённых секций.
+CREATE OR REPLACE FUNCTION drop_expired_oauth2_authorization_partitions(cutoff date) RETURNS integer
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    expired record;
+    dropped   integer := 0;
+BEGIN
+    FOR expired IN
+        SELECT c.relname
+        FROM pg_inherits i
+                 JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'oauth2_authorization'::regclass
+          AND c.relname ~ '^oauth2_authorization_p[0-9]{8}$'
+          AND to_date(right(c.relname, 8), 'YYYYMMDD') + 1 <= cutoff
+        LOOP
+            EXECUTE format('DROP TABLE %I', expired.relname);
+            dropped := dropped + 1;
+        END LOOP;
+    RETURN dropped;
+END
+$$;
+
+-- Секции на ближайшие дни; дальше их поддерживает приложение
+DO
+$$
+    DECLARE
+        partition_day date;
+    BEGIN
+        FOR partition_day IN SELECT generate_series(current_date, current_date + 35, interval '1 day')::date
+            LOOP
+                PERFORM create_oauth2_authorization_partition(partition_day);
+            END LOOP;
+    END
+$$;
+
+-- Переносятся только действующие авторизации; без токенов - с запасом на завершение входа
+INSERT INTO oauth2_authorization (id, registered_client_id, principal_name, authorization_grant_type,
+                                  authorized_scopes, attributes, state,
+                                  authorization_code_value, authorization_code_issued_at,
+                                  authorization_code_expires_at, authorization_code_metadata,
+                                  access_token_value, access_token_issued_at, access_token_expires_at,
+                                  access_token_metadata, access_token_type, access_token_scopes,
+                                  oidc_id_token_value, oidc_id_token_issued_at, oidc_id_token_expires_at,
+                                  oidc_id_token_metadata,
+                                  refresh_token_value, refresh_token_issued_at, refresh_token_expires_at,
+                                  refresh_token_metadata,
+                                  user_code_value, user_code_issued_at, user_code_expires_at, user_code_metadata,
+                                  device_code_value, device_code_issued_at, device_code_expires_at,
+                                  device_code_metadata, expires_at)
+SELECT *
+FROM (SELECT id, registered_client_id, principal_name, authorization_grant_type,
+             authorized_scopes, attributes, state,
+             authorization_code_value, authorization_code_issued_at,
+             authorization_code_expires_at, authorization_code_metadata,
+             access_token_value, access_token_issued_at, access_token_expires_at,
+             access_token_metadata, access_token_type, access_token_scopes,
+             oidc_id_token_value, oidc_id_token_issued_at, oidc_id_token_expires_at,
+             oidc_id_token_metadata,
+             refresh_token_value, refresh_token_issued_at, refresh_token_expires_at,
+             refresh_token_metadata,
+             user_code_value, user_code_issued_at, user_code_expires_at, user_code_metadata,
+             device_code_value, device_code_issued_at, device_code_expires_at,
+             device_code_metadata,
+             COALESCE(GREATEST(authorization_code_expires_at, access_token_expires_at, oidc_id_token_expires_at,
+                               refresh_token_expires_at, user_code_expires_at, device_code_expires_at),
+                      localtimestamp + interval '1 day') AS expires_at
+      FROM oauth2_authorization_unpartitioned) authorizations
+WHERE expires_at >= localtimestamp;
+
+DROP TABLE oauth2_authorization_unpartitioned;
+
+-- Имена индексов освободились вместе со старой таблицей
+CREATE INDEX idx_oauth2_authorization_state_digest ON oauth2_authorization (state_digest);
+CREATE INDEX idx_oauth2_authorization_authorization_code_digest ON oauth2_authorization (authorization_code_digest);
+CREATE INDEX idx_oauth2_authorization_access_token_digest ON oauth2_authorization (access_token_digest);
+CREATE INDEX idx_oauth2_authorization_oidc_id_token_digest ON oauth2_authorization (oidc_id_token_digest);
+CREATE INDEX idx_oauth2_authorization_refresh_token_digest ON oauth2_authorization (refresh_token_digest);
+CREATE INDEX idx_oauth2_authorization_user_code_digest ON oauth2_authorization (user_code_digest);
+CREATE INDEX idx_oauth2_authorization_device_code_digest ON oauth2_authorization (device_code_digest);
@@ -0,0 +1,29 @@
+-- Если секционирование включено после V6 из db/binary-attributes (out-of-order), V5 создаёт колонки
+-- атрибутов типа text, и перенесённые значения bytea попадают в них шестнадцатеричной строкой '\x...'.
+-- Такие колонки приводятся к bytea с восстановлением байтов. Без применённой V6 колонки остаются text,
+-- и при обычном порядке миграций ничего не делается.
+DO
+$$
+    DECLARE
+        attribute_column text;
+    BEGIN
+        FOREACH attribute_column IN ARRAY ARRAY ['attributes', 'authorization_code_metadata', 'access_token_metadata',
+            'oidc_id_token_metadata', 'refresh_token_metadata', 'user_code_metadata', 'device_code_metadata']
+            LOOP
+                IF EXISTS (SELECT 1
+                           FROM "${flyway:defaultSchema}"."${flyway:table}" h
+                           WHERE h.version = '6'
+                             AND h.success)
+                    AND EXISTS (SELECT 1
+                                FROM information_schema.columns c
+                                WHERE c.table_schema = current_schema()
+                                  AND c.table_name = 'oauth2_authorization'
+                                  AND c.column_name = attribute_column
+                                  AND c.data_type = 'text') THEN
+                    EXECUTE format('ALTER TABLE oauth2_authorization ALTER COLUMN %1$I TYPE bytea USING '
+                                       || 'CASE WHEN left(%1$I, 2) = ''\x'' THEN decode(substr(%1$I, 3), ''hex'') '
+                                       || 'ELSE convert_to(%1$I, ''UTF8'') END', attribute_column);
+                END IF;
+            END LOOP;
+    END
+$$;
@@ -0,0 +1,12 @@
+-- Удаление авторизации OAuth2 вместе с индексами токенов.
+-- KEYS[1] - хэш авторизации
+-- KEYS[2..] - индексы из поля indexes, прочитанного вызывающим
+-- ARGV[1] - прочитанное значение поля indexes (пустая строка, если его не было)
+-- Возвращает -1, если поле indexes успело измениться, иначе число удалённых хэшей.
+if (redis.call('HGET', KEYS[1], 'indexes') or '') ~= ARGV[1] then
+    return -1
+end
+for i = 2, #KEYS do
+    redis.call('DEL', KEYS[i])
+end
+return redis.call('DEL', KEYS[1])
@@ -0,0 +1,32 @@
+-- Сохранение авторизации OAuth2 с индексами токенов.
+-- Скрипт обращается только к объявленным ключам: индексы прежних значений токенов вызывающий читает
+-- из поля indexes заранее и передаёт в KEYS, а скрипт сверяет, что поле с тех пор не изменилось.
+-- KEYS[1] - хэш авторизации
+-- KEYS[2 .. ARGV[3] + 1] - ключи индексов её токенов
+-- KEYS[ARGV[3] + 2 ..] - индексы прежних значений токенов (после ротации), которые удаляются
+-- ARGV[1] - TTL хэша и индексов, мс
+-- ARGV[2] - id авторизации
+-- ARGV[3] - число индексов текущих токенов
+-- ARGV[4] - прочитанное вызывающим значение поля indexes (пустая строка, если его не было)
+-- ARGV[5..] - пары поле/значение хэша
+-- Возвращает 1, если авторизация сохранена, и 0, если поле indexes успело измениться.
+if (redis.call('HGET', KEYS[1], 'indexes') or '') ~= ARGV[4] then
+    return 0
+end
+
+local index_count = tonumber(ARGV[3])
+for i = index_count + 2, #KEYS do
+    redis.call('DEL', KEYS[i])
+end
+
+redis.call('DEL', KEYS[1])
+redis.call('HSET', KEYS[1], unpack(ARGV, 5))
+if index_count > 0 then
+    redis.call('HSET', KEYS[1], 'indexes', table.concat(KEYS, ' ', 2, index_count + 1))
+end
+redis.call('PEXPIRE', KEYS[1], ARGV[1])
+
+for i = 2, index_count + 1 do
+    redis.call('SET', KEYS[i], ARGV[2], 'PX', ARGV[1])
+end
+return 1
@@ -0,0 +1,15 @@
+-- Захват или продление аренды.
+-- KEYS[1] - ключ аренды
+-- ARGV[1] - владелец
+-- ARGV[2] - время жизни аренды, мс
+-- Возвращает 1, если аренда принадлежит владельцу.
+local owner = redis.call('GET', KEYS[1])
+if owner == ARGV[1] then
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    return 1
+end
+if owner then
+    return 0
+end
+redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+return 1
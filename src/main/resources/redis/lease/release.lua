@@ -0,0 +1,7 @@
+-- Освобождение аренды только её владельцем.
+-- KEYS[1] - ключ аренды
+-- ARGV[1] - владелец
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,10 @@
+-- Подтверждение письма из outbox: запись снимается с учёта группы и удаляется из стрима,
+-- чтобы код не хранился в Redis после доставки.
+-- KEYS[1] - стрим outbox
+-- ARGV[1] - группа потребителей, ARGV[2..] - идентификаторы записей
+local group = ARGV[1]
+for i = 2, #ARGV do
+    redis.call('XACK', KEYS[1], group, ARGV[i])
+    redis.call('XDEL', KEYS[1], ARGV[i])
+end
+return #ARGV - 1
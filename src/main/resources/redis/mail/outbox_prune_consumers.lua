@@ -0,0 +1,25 @@
+-- Удаление потребителей outbox без неподтверждённых записей.
+-- Проверка и XGROUP DELCONSUMER выполняются атомарно: удаление потребителя стирает его
+-- неподтверждённые записи из группы, и письмо больше не было бы доставлено.
+-- KEYS[1] - стрим outbox
+-- ARGV[1] - группа потребителей
+-- ARGV[2] - сколько мс потребитель должен простаивать
+-- ARGV[3..] - имена потребителей; если не заданы, проверяются все потребители группы
+-- Возвращает число удалённых потребителей.
+local names = {}
+for i = 3, #ARGV do
+    names[ARGV[i]] = true
+end
+local min_idle = tonumber(ARGV[2])
+local removed = 0
+for _, consumer in ipairs(redis.call('XINFO', 'CONSUMERS', KEYS[1], ARGV[1])) do
+    local info = {}
+    for i = 1, #consumer, 2 do
+        info[consumer[i]] = consumer[i + 1]
+    end
+    if (#ARGV < 3 or names[info['name']]) and info['pending'] == 0 and info['idle'] >= min_idle then
+        redis.call('XGROUP', 'DELCONSUMER', KEYS[1], ARGV[1], info['name'])
+        removed = removed + 1
+    end
+end
+return removed
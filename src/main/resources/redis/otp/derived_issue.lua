@@ -0,0 +1,23 @@
+-- Выдача кода в стратегии derived: сам код не хранится.
+-- KEYS[1] - ключ отметки выдачи, значение - окончание кулдауна, мс
+-- KEYS[2] - ключ поколения
+-- ARGV[1] - кулдаун, мс
+-- ARGV[2] - время жизни кода, мс
+-- Возвращает текущее поколение или -1, если кулдаун ещё действует.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local cooldown_until = tonumber(redis.call('GET', KEYS[1])) or 0
+if cooldown_until > now then
+    return -1
+end
+
+redis.call('SET', KEYS[1], now + tonumber(ARGV[1]), 'PX', ARGV[2])
+
+-- Поколение продлевается на два окна, чтобы пережить отметку выдачи: иначе код,
+-- вычисленный из него, после истечения ключа не совпал бы при проверке
+local generation = redis.call('GET', KEYS[2])
+if generation then
+    redis.call('PEXPIRE', KEYS[2], 2 * tonumber(ARGV[2]))
+end
+return tonumber(generation) or 0
@@ -0,0 +1,42 @@
+-- Погашение кода в стратегии derived; код сравнивается на стороне приложения.
+-- KEYS[1] - ключ отметки выдачи
+-- KEYS[2] - ключ поколения
+-- KEYS[3] - ключ счётчика ошибок
+-- KEYS[4] - ключ ограничения частоты запросов (асинхронная выдача)
+-- ARGV[1] - поколение, для которого вычислялся код
+-- ARGV[2] - 1, если код совпал
+-- ARGV[3] - максимальное число попыток
+-- ARGV[4] - время жизни кода, мс
+-- Возвращает VALID, INVALID, EXHAUSTED, MISSING или STALE, если поколение сменилось.
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return 'MISSING'
+end
+
+local generation = tonumber(redis.call('GET', KEYS[2])) or 0
+if generation ~= tonumber(ARGV[1]) then
+    return 'STALE'
+end
+
+-- Новое поколение делает недействительным код текущего окна.
+-- Поколение живёт два окна: более старые коды не принимаются и без него.
+local function retire()
+    redis.call('INCR', KEYS[2])
+    redis.call('PEXPIRE', KEYS[2], 2 * tonumber(ARGV[4]))
+    redis.call('DEL', KEYS[1], KEYS[3], KEYS[4])
+end
+
+if ARGV[2] == '1' then
+    retire()
+    return 'VALID'
+end
+
+-- Счётчик ошибок создаётся только при первой неудачной попытке
+local failures = redis.call('INCR', KEYS[3])
+if failures == 1 then
+    redis.call('PEXPIRE', KEYS[3], ARGV[4])
+end
+if failures >= tonumber(ARGV[3]) then
+    retire()
+    return 'EXHAUSTED'
+end
+return 'INVALID'
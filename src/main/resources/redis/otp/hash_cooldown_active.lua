@@ -0,0 +1,15 @@
+-- Проверка действующего кулдауна в раскладке "один хэш на email".
+-- KEYS[1] - хэш состояния OTP
+-- KEYS[2] - ключ кулдауна старой раскладки
+-- ARGV[1] - 1, если нужно учитывать ключи старой раскладки
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local cooldownUntil = tonumber(redis.call('HGET', KEYS[1], 'cooldown_until'))
+if cooldownUntil and cooldownUntil > now then
+    return 1
+end
+if ARGV[1] == '1' and redis.call('EXISTS', KEYS[2]) == 1 then
+    return 1
+end
+return 0
@@ -0,0 +1,12 @@
+-- Декремент счётчика попыток в раскладке "один хэш на email".
+-- KEYS[1] - хэш состояния OTP
+-- KEYS[2] - ключ счётчика попыток старой раскладки
+-- ARGV[1] - 1, если нужно учитывать ключи старой раскладки
+-- Возвращает оставшееся число попыток или -1, если счётчика нет.
+if redis.call('HEXISTS', KEYS[1], 'attempts') == 1 then
+    return redis.call('HINCRBY', KEYS[1], 'attempts', -1)
+end
+if ARGV[1] == '1' and redis.call('EXISTS', KEYS[2]) == 1 then
+    return redis.call('DECR', KEYS[2])
+end
+return -1
@@ -0,0 +1,33 @@
+-- Атомарная выдача OTP в раскладке "один хэш на email".
+-- KEYS[1] - хэш состояния OTP
+-- KEYS[2] - ключ кулдауна старой раскладки (читается в переходный период)
+-- KEYS[3], KEYS[4] - ключи кода и попыток старой раскладки (удаляются в переходный период)
+-- ARGV[1] - код, ARGV[2] - максимальное число попыток,
+-- ARGV[3] - время жизни кода (сек), ARGV[4] - длительность кулдауна (сек),
+-- ARGV[5] - 1, если нужно учитывать ключи старой раскладки
+-- Возвращает 1, если код выдан, и 0, если кулдаун ещё действует.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local cooldownUntil = tonumber(redis.call('HGET', KEYS[1], 'cooldown_until'))
+if cooldownUntil and cooldownUntil > now then
+    return 0
+end
+if ARGV[5] == '1' and redis.call('EXISTS', KEYS[2]) == 1 then
+    return 0
+end
+
+if ARGV[5] == '1' then
+    -- Прежний код старой раскладки не должен проверяться узлами "keys" раньше нового
+    redis.call('DEL', KEYS[3], KEYS[4])
+end
+
+local cooldownMs = tonumber(ARGV[4]) * 1000
+redis.call('HSET', KEYS[1],
+        'code', ARGV[1],
+        'attempts', ARGV[2],
+        'issued_at', now,
+        'cooldown_until', now + cooldownMs)
+-- Один TTL на всё состояние: живёт, пока нужен код или кулдаун
+redis.call('PEXPIRE', KEYS[1], math.max(tonumber(ARGV[3]) * 1000, cooldownMs))
+return 1
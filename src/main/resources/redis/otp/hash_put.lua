@@ -0,0 +1,20 @@
+-- Запись полей хэша состояния OTP с продлением TTL.
+-- KEYS[1] - хэш состояния OTP
+-- ARGV[1] - минимальный TTL хэша (сек), далее пары поле/значение.
+-- Поле issued_at, если передано, заполняется временем сервера Redis.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+for i = 2, #ARGV, 2 do
+    local value = ARGV[i + 1]
+    if ARGV[i] == 'issued_at' then
+        value = now
+    end
+    redis.call('HSET', KEYS[1], ARGV[i], value)
+end
+
+local ttlMs = tonumber(ARGV[1]) * 1000
+if redis.call('PTTL', KEYS[1]) < ttlMs then
+    redis.call('PEXPIRE', KEYS[1], ttlMs)
+end
+return 1
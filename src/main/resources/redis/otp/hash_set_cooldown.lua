@@ -0,0 +1,27 @@
+-- Установка кулдауна в раскладке "один хэш на email".
+-- KEYS[1] - хэш состояния OTP
+-- KEYS[2] - ключ кулдауна старой раскладки
+-- ARGV[1] - длительность кулдауна (сек)
+-- ARGV[2] - 1, если кулдаун ставится только при отсутствии действующего (аналог SET NX)
+-- ARGV[3] - 1, если нужно учитывать ключи старой раскладки
+-- Возвращает 1, если кулдаун установлен, и 0 в противном случае.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+if ARGV[2] == '1' then
+    local cooldownUntil = tonumber(redis.call('HGET', KEYS[1], 'cooldown_until'))
+    if cooldownUntil and cooldownUntil > now then
+        return 0
+    end
+    if ARGV[3] == '1' and redis.call('EXISTS', KEYS[2]) == 1 then
+        return 0
+    end
+end
+
+local cooldownMs = tonumber(ARGV[1]) * 1000
+redis.call('HSET', KEYS[1], 'cooldown_until', now + cooldownMs)
+-- TTL только продлевается: живой код не должен исчезнуть раньше срока
+if redis.call('PTTL', KEYS[1]) < cooldownMs then
+    redis.call('PEXPIRE', KEYS[1], cooldownMs)
+end
+return 1
@@ -0,0 +1,48 @@
+-- Атомарная проверка и погашение OTP в раскладке "один хэш на email".
+-- KEYS[1] - хэш состояния OTP
+-- KEYS[2], KEYS[3], KEYS[4] - ключи кода, попыток и кулдауна старой раскладки
+-- ARGV[1] - код, предъявленный пользователем
+-- ARGV[2] - 1, если нужно учитывать ключи старой раскладки
+-- Возвращает VALID, INVALID, EXHAUSTED или MISSING.
+local stored = redis.call('HGET', KEYS[1], 'code')
+local remaining = -1
+
+if stored then
+    if redis.call('HEXISTS', KEYS[1], 'attempts') == 1 then
+        remaining = redis.call('HINCRBY', KEYS[1], 'attempts', -1)
+    end
+elseif ARGV[2] == '1' then
+    -- Переходный период: код мог выдать узел, работающий со старой раскладкой
+    stored = redis.call('GET', KEYS[2])
+    if not stored then
+        return 'MISSING'
+    end
+    if redis.call('EXISTS', KEYS[3]) == 1 then
+        remaining = redis.call('DECR', KEYS[3])
+    end
+else
+    return 'MISSING'
+end
+
+local function cleanup()
+    redis.call('DEL', KEYS[1])
+    if ARGV[2] == '1' then
+        redis.call('DEL', KEYS[2], KEYS[3], KEYS[4])
+    end
+end
+
+if remaining < 0 then
+    cleanup()
+    return 'EXHAUSTED'
+end
+
+if stored ~= ARGV[1] then
+    if remaining == 0 then
+        cleanup()
+        return 'EXHAUSTED'
+    end
+    return 'INVALID'
+end
+
+cleanup()
+return 'VALID'
@@ -0,0 +1,32 @@
+-- Атомарная выдача OTP за один вызов.
+-- KEYS[1] - ключ ограничения частоты запросов
+-- KEYS[2] - ключ кода
+-- KEYS[3] - ключ счётчика попыток
+-- KEYS[4] - хэш состояния раскладки "hash" (переходный период, при ARGV[5] == '1'): его кулдаун
+--           учитывается, а прежний код удаляется
+-- KEYS[5] - необязательный ключ кулдауна прежней схемы имён (переход на хэш-теги, только одиночный Redis)
+-- ARGV[1] - код, ARGV[2] - максимальное число попыток,
+-- ARGV[3] - время жизни кода (сек), ARGV[4] - длительность кулдауна (сек),
+-- ARGV[5] - 1, если нужно учитывать хэш состояния
+-- Возвращает 1, если код выдан, и 0, если кулдаун ещё действует.
+if KEYS[5] and redis.call('EXISTS', KEYS[5]) == 1 then
+    return 0
+end
+if ARGV[5] == '1' then
+    local time = redis.call('TIME')
+    local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+    local cooldownUntil = tonumber(redis.call('HGET', KEYS[4], 'cooldown_until'))
+    if cooldownUntil and cooldownUntil > now then
+        return 0
+    end
+end
+if not redis.call('SET', KEYS[1], 'locked', 'NX', 'EX', ARGV[4]) then
+    return 0
+end
+if ARGV[5] == '1' then
+    -- Прежний код из хэша не должен проверяться раньше нового
+    redis.call('DEL', KEYS[4])
+end
+redis.call('SET', KEYS[2], ARGV[1], 'EX', ARGV[3])
+redis.call('SET', KEYS[3], ARGV[2], 'EX', ARGV[3])
+return 1
@@ -0,0 +1,8 @@
+-- Атомарное сохранение кода и счётчика попыток без установки кулдауна
+-- (кулдаун уже установлен при приёме запроса).
+-- KEYS[1] - ключ кода
+-- KEYS[2] - ключ счётчика попыток
+-- ARGV[1] - код, ARGV[2] - максимальное число попыток, ARGV[3] - время жизни кода (сек)
+redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[3])
+redis.call('SET', KEYS[2], ARGV[2], 'EX', ARGV[3])
+return 1
@@ -0,0 +1,22 @@
+-- Атомарная установка кулдауна запросов с учётом кулдаунов переходного периода.
+-- KEYS[1] - ключ ограничения частоты запросов
+-- KEYS[2] - хэш состояния раскладки "hash" (при ARGV[2] == '1')
+-- KEYS[3] - необязательный ключ кулдауна прежней схемы имён (переход на хэш-теги, только одиночный Redis)
+-- ARGV[1] - длительность кулдауна (сек)
+-- ARGV[2] - 1, если нужно учитывать хэш состояния
+-- Возвращает 1, если кулдаун установлен, и 0, если он уже действует.
+if KEYS[3] and redis.call('EXISTS', KEYS[3]) == 1 then
+    return 0
+end
+if ARGV[2] == '1' then
+    local time = redis.call('TIME')
+    local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+    local cooldownUntil = tonumber(redis.call('HGET', KEYS[2], 'cooldown_until'))
+    if cooldownUntil and cooldownUntil > now then
+        return 0
+    end
+end
+if redis.call('SET', KEYS[1], 'locked', 'NX', 'EX', ARGV[1]) then
+    return 1
+end
+return 0
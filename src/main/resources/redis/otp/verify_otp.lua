@@ -0,0 +1,32 @@
+-- Атомарная проверка и погашение OTP.
+-- KEYS[1] - ключ кода
+-- KEYS[2] - ключ счётчика попыток
+-- KEYS[3] - ключ ограничения частоты запросов
+-- ARGV[1] - код, предъявленный пользователем
+-- Возвращает VALID, INVALID, EXHAUSTED или MISSING.
+local stored = redis.call('GET', KEYS[1])
+if not stored then
+    return 'MISSING'
+end
+
+-- Счётчик без ключа считается исчерпанным; DECR не должен создавать ключ без TTL
+local remaining = -1
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    remaining = redis.call('DECR', KEYS[2])
+end
+
+if remaining < 0 then
+    redis.call('DEL', KEYS[1], KEYS[2], KEYS[3])
+    return 'EXHAUSTED'
+end
+
+if stored ~= ARGV[1] then
+    if remaining == 0 then
+        redis.call('DEL', KEYS[1], KEYS[2], KEYS[3])
+        return 'EXHAUSTED'
+    end
+    return 'INVALID'
+end
+
+redis.call('DEL', KEYS[1], KEYS[2], KEYS[3])
+return 'VALID'
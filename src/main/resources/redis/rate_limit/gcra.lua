@@ -0,0 +1,23 @@
+-- GCRA (generic cell rate algorithm) для одного бакета.
+-- Скрипт получает один ключ, поэтому в Redis Cluster измерения лимита проверяются отдельными вызовами.
+-- В ключе хранится TAT - теоретическое время прибытия следующего запроса, мс.
+-- KEYS[1] - ключ бакета
+-- ARGV[1] - интервал между запросами, мс
+-- ARGV[2] - допустимое опережение графика, мс
+-- Возвращает 0, если запрос разрешён и учтён, иначе через сколько мс его повторить; отклонённый запрос не учитывается.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local tat = tonumber(redis.call('GET', KEYS[1])) or now
+if tat < now then
+    tat = now
+end
+local wait = tat - now - tonumber(ARGV[2])
+if wait > 0 then
+    return wait
+end
+
+local new_tat = tat + tonumber(ARGV[1])
+-- Ключ истекает, когда бакет полностью восстановится
+redis.call('SET', KEYS[1], new_tat, 'PX', new_tat - now)
+return 0
@@ -0,0 +1,17 @@
+-- Возврат запроса, учтённого в бакете GCRA, если его отклонило другое измерение.
+-- KEYS[1] - ключ бакета
+-- ARGV[1] - интервал между запросами, мс
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local tat = tonumber(redis.call('GET', KEYS[1]))
+if not tat then
+    return 0
+end
+local new_tat = tat - tonumber(ARGV[1])
+if new_tat <= now then
+    redis.call('DEL', KEYS[1])
+else
+    redis.call('SET', KEYS[1], new_tat, 'PX', new_tat - now)
+end
+return 1
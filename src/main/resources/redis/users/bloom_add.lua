@@ -0,0 +1,7 @@
+-- Добавление элементов в фильтр Блума на битовой карте.
+-- KEYS[1] - битовая карта фильтра
+-- ARGV - смещения битов всех добавляемых элементов
+for i = 1, #ARGV do
+    redis.call('SETBIT', KEYS[1], ARGV[i], 1)
+end
+return #ARGV
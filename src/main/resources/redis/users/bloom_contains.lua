@@ -0,0 +1,14 @@
+-- Проверка элемента по фильтру Блума на битовой карте.
+-- KEYS[1] - битовая карта фильтра
+-- KEYS[2] - маркер готовности фильтра
+-- ARGV - смещения битов проверяемого элемента
+-- Возвращает 1 - "возможно есть", 0 - "точно нет", -1 - фильтр не построен.
+if redis.call('EXISTS', KEYS[2]) == 0 then
+    return -1
+end
+for i = 1, #ARGV do
+    if redis.call('GETBIT', KEYS[1], ARGV[i]) == 0 then
+        return 0
+    end
+end
+return 1
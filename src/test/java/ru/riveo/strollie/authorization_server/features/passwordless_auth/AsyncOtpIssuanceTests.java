@@ -0,0 +1,75 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.test.context.TestPropertySource;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+
+/**
+ * Тесты асинхронной выдачи OTP: запрос сразу получает 202, код выдаётся в фоне.
+ */
+@TestPropertySource(properties = "app.otp.issuance.mode=async")
+public class AsyncOtpIssuanceTests extends ApiIntegrationTest {
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Test
+    void requestOtp_whenUserExists_shouldAcceptAndIssueInBackground() throws Exception {
+        String email = "async.issuance.user@example.com";
+        String userPayload = """
+                {
+                    "email": "async.issuance.user@example.com",
+                    "firstName": "Async",
+                    "lastName": "Issuance",
+                    "city": "Queueville",
+                    "dateOfBirth": "2000-01-01",
+                    "nickname": "asyncissuance"
+                }
+                """;
+        mockMvc.perform(post("/api/users/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(userPayload))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/auth/request-otp")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + email + "\"}"))
+                .andExpect(status().isAccepted());
+
+        verify(javaMailSender, timeout(5000).times(1)).send(any(SimpleMailMessage.class));
+        assertNotNull(redisTemplate.opsForValue().get("otp:" + email), "Код должен быть сохранён фоновым обработчиком");
+
+        // Кулдаун устанавливается ещё в потоке запроса
+        mockMvc.perform(post("/api/auth/request-otp")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + email + "\"}"))
+                .andExpect(status().is(429));
+    }
+
+    @Test
+    void requestOtp_whenUserDoesNotExist_shouldAcceptWithoutIssuing() throws Exception {
+        String email = "async.missing.user@example.com";
+
+        mockMvc.perform(post("/api/auth/request-otp")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + email + "\"}"))
+                .andExpect(status().isAccepted());
+
+        verify(javaMailSender, after(500).never()).send(any(SimpleMailMessage.class));
+        assertFalse(redisTemplate.hasKey("otp:" + email), "Код для несуществующего пользователя не создаётся");
+    }
+}
@@ -0,0 +1,90 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpRepository;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpVerificationResult;
+
+/**
+ * Тесты раскладки "hash": всё состояние OTP одного email хранится в одном хэше.
+ */
+@TestPropertySource(properties = "app.otp.storage.layout=hash")
+public class HashOtpStorageTests extends ApiIntegrationTest {
+
+    @Autowired
+    private OtpRepository otpRepository;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    /**
+     * Выданный код, попытки, время выдачи и кулдаун лежат в одном ключе,
+     * отдельные ключи старой раскладки не создаются.
+     */
+    @Test
+    void requestOtp_shouldStoreStateInSingleHash() throws Exception {
+        String email = "hash.layout.user@example.com";
+        String userPayload = """
+                {
+                    "email": "hash.layout.user@example.com",
+                    "firstName": "Hash",
+                    "lastName": "Layout",
+                    "city": "Hashville",
+                    "dateOfBirth": "2000-01-01",
+                    "nickname": "hashlayout"
+                }
+                """;
+        mockMvc.perform(post("/api/users/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(userPayload))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/auth/request-otp")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + email + "\"}"))
+                .andExpect(status().isOk());
+
+        String stateKey = "otp_state:" + email;
+        assertEquals(4, redisTemplate.opsForHash().size(stateKey),
+                "Хэш должен содержать код, попытки, время выдачи и кулдаун");
+        assertTrue(redisTemplate.getExpire(stateKey) > 0, "У хэша должен быть TTL");
+        assertFalse(redisTemplate.hasKey("otp:" + email), "Ключи старой раскладки не должны создаваться");
+
+        // Повторный запрос блокируется кулдауном из хэша
+        mockMvc.perform(post("/api/auth/request-otp")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + email + "\"}"))
+                .andExpect(status().is(429));
+    }
+
+    /**
+     * Код, выданный узлом со старой раскладкой, остаётся рабочим после переключения.
+     */
+    @Test
+    void verifyAndConsume_shouldAcceptCodeIssuedInLegacyLayout() {
+        String email = "legacy.layout.user@example.com";
+        redisTemplate.opsForValue().set("otp:" + email, "1234", 5, TimeUnit.MINUTES);
+        redisTemplate.opsForValue().set("otp_attempts:" + email, "3", 5, TimeUnit.MINUTES);
+        redisTemplate.opsForValue().set("otp_rate_limit:" + email, "locked", 60, TimeUnit.SECONDS);
+
+        assertTrue(otpRepository.isRateLimited(email), "Кулдаун старой раскладки должен учитываться");
+        assertEquals(OtpVerificationResult.INVALID, otpRepository.verifyAndConsume(email, "0000"));
+        assertEquals(OtpVerificationResult.VALID, otpRepository.verifyAndConsume(email, "1234"));
+
+        assertFalse(redisTemplate.hasKey("otp:" + email), "Старые ключи должны быть удалены после входа");
+        assertFalse(redisTemplate.hasKey("otp_rate_limit:" + email));
+        assertEquals(OtpVerificationResult.MISSING, otpRepository.verifyAndConsume(email, "1234"));
+    }
+}
@@ -0,0 +1,83 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpIssueResult;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpRepository;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpVerificationResult;
+
+/**
+ * Тесты схемы ключей с хэш-тегами и окна миграции со старой схемы.
+ */
+@TestPropertySource(properties = {
+        "app.otp.storage.key-scheme=hash-tagged",
+        "app.otp.storage.read-untagged-keys=true"
+})
+public class HashTaggedOtpKeysTests extends ApiIntegrationTest {
+
+    @Autowired
+    private OtpRepository otpRepository;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Test
+    void requestOtp_shouldStoreStateUnderHashTaggedKeys() throws Exception {
+        String email = "tagged.user@example.com";
+        String userPayload = """
+                {
+                    "email": "tagged.user@example.com",
+                    "firstName": "Tagged",
+                    "lastName": "User",
+                    "city": "Slotville",
+                    "dateOfBirth": "2000-01-01",
+                    "nickname": "taggeduser"
+                }
+                """;
+        mockMvc.perform(post("/api/users/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(userPayload))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/auth/request-otp")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + email + "\"}"))
+                .andExpect(status().isOk());
+
+        assertTrue(redisTemplate.hasKey("otp:{" + email + "}:code"));
+        assertTrue(redisTemplate.hasKey("otp:{" + email + "}:attempts"));
+        assertTrue(redisTemplate.hasKey("otp:{" + email + "}:rate_limit"));
+        assertFalse(redisTemplate.hasKey("otp:" + email), "Ключи старой схемы не должны создаваться");
+    }
+
+    /**
+     * Код и кулдаун, записанные до переключения схемы, продолжают действовать.
+     */
+    @Test
+    void verifyAndConsume_shouldAcceptCodeIssuedUnderUntaggedKeys() {
+        String email = "untagged.user@example.com";
+        redisTemplate.opsForValue().set("otp:" + email, "1234", 5, TimeUnit.MINUTES);
+        redisTemplate.opsForValue().set("otp_attempts:" + email, "3", 5, TimeUnit.MINUTES);
+        redisTemplate.opsForValue().set("otp_rate_limit:" + email, "locked", 60, TimeUnit.SECONDS);
+
+        assertFalse(otpRepository.trySetRateLimit(email, 60), "Кулдаун старой схемы должен учитываться");
+        // Выдача проверяет кулдаун старой схемы в том же скрипте и ничего не записывает
+        assertEquals(OtpIssueResult.RATE_LIMITED, otpRepository.issueOtp(email, "5678", 3, 5, 60));
+        assertFalse(redisTemplate.hasKey("otp:{" + email + "}:code"));
+        assertEquals(OtpVerificationResult.VALID, otpRepository.verifyAndConsume(email, "1234"));
+        assertFalse(redisTemplate.hasKey("otp:" + email));
+        assertEquals(OtpVerificationResult.MISSING, otpRepository.verifyAndConsume(email, "1234"));
+    }
+}
@@ -0,0 +1,64 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpGenerator;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpGeneratorProperties;
+
+/**
+ * Тесты генератора OTP.
+ */
+public class OtpGeneratorTests {
+
+    @Test
+    void generate_shouldUseConfiguredLengthAndAlphabet() {
+        OtpGenerator generator = new OtpGenerator(new OtpGeneratorProperties(6, "ABCDEF", 0));
+
+        for (int i = 0; i < 1000; i++) {
+            String code = generator.generate();
+            assertEquals(6, code.length());
+            assertTrue(code.chars().allMatch(c -> "ABCDEF".indexOf(c) >= 0), "Недопустимый символ в коде " + code);
+        }
+    }
+
+    @Test
+    void generate_shouldKeepLeadingZeros() {
+        OtpGenerator generator = new OtpGenerator(new OtpGeneratorProperties(2, "0123456789", 0));
+
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            codes.add(generator.generate());
+        }
+        assertEquals(100, codes.size(), "Должны встречаться все 100 двузначных кодов, включая 00-09");
+    }
+
+    @Test
+    void generate_whenCodeSpaceExceedsLong_shouldGeneratePerCharacter() {
+        OtpGenerator generator = new OtpGenerator(new OtpGeneratorProperties(40, "0123456789", 0));
+
+        assertTrue(generator.generate().matches("\\d{40}"));
+    }
+
+    @Test
+    void generate_withPool_shouldServeCodesFromPool() {
+        OtpGenerator generator = new OtpGenerator(new OtpGeneratorProperties(4, "0123456789", 64));
+        try {
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(generator.generate().matches("\\d{4}"));
+            }
+        } finally {
+            generator.destroy();
+        }
+    }
+
+    @Test
+    void properties_shouldRejectAlphabetWithDuplicates() {
+        assertThrows(IllegalArgumentException.class, () -> new OtpGeneratorProperties(4, "0012", 0));
+    }
+}
@@ -0,0 +1,78 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.ResultActions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpIssueResult;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpRepository;
+
+/**
+ * Тесты атомарной выдачи OTP: кулдаун, код и счётчик попыток записываются одним вызовом.
+ */
+public class OtpIssuanceTests extends ApiIntegrationTest {
+
+    @MockitoSpyBean
+    private OtpRepository otpRepository;
+
+    @Test
+    void issueOtp_whenCooldownActive_shouldKeepIssuedCode() {
+        String email = "atomic.issue@example.com";
+
+        assertEquals(OtpIssueResult.ISSUED, otpRepository.issueOtp(email, "1234", 3, 5, 60));
+        assertEquals("1234", otpRepository.findOtp(email).orElseThrow());
+
+        // Повторная выдача в кулдауне ничего не перезаписывает
+        assertEquals(OtpIssueResult.RATE_LIMITED, otpRepository.issueOtp(email, "5678", 3, 5, 60));
+        assertEquals("1234", otpRepository.findOtp(email).orElseThrow());
+        assertEquals(2, otpRepository.decrementAndGetAttempts(email), "Счётчик попыток заведён вместе с кодом");
+    }
+
+    /**
+     * Кулдаун определяется результатом скрипта выдачи, без отдельной проверки в Redis.
+     */
+    @Test
+    void requestOtp_whenCooldownActive_shouldRejectByIssueResult() throws Exception {
+        String email = "cooldown.issue@example.com";
+        mockMvc.perform(post("/api/users/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "email": "cooldown.issue@example.com",
+                                    "firstName": "Cooldown",
+                                    "lastName": "Issue",
+                                    "city": "Waitville",
+                                    "dateOfBirth": "2000-01-01",
+                                    "nickname": "cooldownissue"
+                                }
+                                """))
+                .andExpect(status().isCreated());
+        requestOtp(email).andExpect(status().isOk());
+        String issued = otpRepository.findOtp(email).orElseThrow();
+        clearInvocations(otpRepository);
+
+        requestOtp(email).andExpect(status().is(429));
+
+        verify(otpRepository).issueOtp(eq(email), anyString(), anyInt(), anyLong(), anyLong());
+        verifyNoMoreInteractions(otpRepository);
+        assertEquals(issued, otpRepository.findOtp(email).orElseThrow(), "Код в кулдауне не перезаписывается");
+    }
+
+    private ResultActions requestOtp(String email) throws Exception {
+        return mockMvc.perform(post("/api/auth/request-otp")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + email + "\"}"));
+    }
+}
@@ -0,0 +1,102 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.MediaType;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.test.context.TestPropertySource;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+
+/**
+ * Тесты outbox писем с OTP на Redis Streams.
+ */
+@TestPropertySource(properties = {
+        "app.mail.outbox.enabled=true",
+        "app.mail.outbox.poll-timeout=200ms",
+        "app.mail.outbox.claim-idle=300ms",
+        "app.mail.outbox.reclaim-interval=200ms"
+})
+public class OtpMailOutboxTests extends ApiIntegrationTest {
+
+    private static final String STREAM_KEY = "otp_mail_outbox";
+    private static final String GROUP = "otp-mail-workers";
+
+    /**
+     * Добавляет запись и сразу читает её потребителем, который "падает", не подтвердив её.
+     */
+    private static final RedisScript<Long> ADD_AND_ABANDON_SCRIPT = RedisScript.of("""
+            pcall(redis.call, 'XGROUP', 'CREATE', KEYS[1], ARGV[1], '0', 'MKSTREAM')
+            redis.call('XADD', KEYS[1], '*', 'email', ARGV[2], 'otp', '1234', 'expires_at', ARGV[3])
+            redis.call('XREADGROUP', 'GROUP', ARGV[1], 'crashed-node', 'COUNT', '1', 'STREAMS', KEYS[1], '>')
+            return 1
+            """, Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Test
+    void requestOtp_shouldDeliverEmailThroughOutboxAndRemoveEntry() throws Exception {
+        String email = "outbox.user@example.com";
+        String userPayload = """
+                {
+                    "email": "outbox.user@example.com",
+                    "firstName": "Outbox",
+                    "lastName": "User",
+                    "city": "Streamville",
+                    "dateOfBirth": "2000-01-01",
+                    "nickname": "outboxuser"
+                }
+                """;
+        mockMvc.perform(post("/api/users/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(userPayload))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/auth/request-otp")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + email + "\"}"))
+                .andExpect(status().isOk());
+
+        verify(javaMailSender, timeout(5000).times(1)).send(any(SimpleMailMessage.class));
+        assertTrue(await(() -> Long.valueOf(0L).equals(redisTemplate.opsForStream().size(STREAM_KEY))),
+                "Доставленная запись должна быть удалена из стрима");
+    }
+
+    @Test
+    void abandonedEntry_shouldBeReclaimedAndDelivered() throws Exception {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        redisTemplate.execute(ADD_AND_ABANDON_SCRIPT, List.of(STREAM_KEY),
+                GROUP, "crashed.node.user@example.com", String.valueOf(expiresAt));
+        assertEquals(1L, redisTemplate.opsForStream().pending(STREAM_KEY, GROUP).getTotalPendingMessages());
+
+        verify(javaMailSender, timeout(5000).times(1)).send(any(SimpleMailMessage.class));
+        assertTrue(await(() -> redisTemplate.opsForStream().pending(STREAM_KEY, GROUP).getTotalPendingMessages() == 0),
+                "Запись упавшего потребителя должна быть подтверждена после доставки");
+        assertTrue(await(() -> redisTemplate.opsForStream().consumers(STREAM_KEY, GROUP).stream()
+                        .noneMatch(consumer -> consumer.consumerName().equals("crashed-node"))),
+                "Потребитель упавшего узла должен быть удалён из группы");
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * {@link JwtValidationTests} с авторизациями, хранящимися в Redis.
+ */
+@TestPropertySource(properties = "app.authorization.storage.mode=redis")
+public class RedisAuthorizationJwtValidationTests extends JwtValidationTests {
+}
@@ -0,0 +1,73 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccount;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.port.UserAccountFinder;
+import ru.riveo.strollie.authorization_server.features.role_management.domain.AccountWithRoles;
+import ru.riveo.strollie.authorization_server.features.role_management.port.AccountRepository;
+
+/**
+ * Тесты двухуровневого кэша аккаунтов и его инвалидации при изменении ролей.
+ */
+@TestPropertySource(properties = "app.user-account-cache.enabled=true")
+public class UserAccountCacheTests extends ApiIntegrationTest {
+
+    @Autowired
+    private UserAccountFinder userAccountFinder;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Test
+    void findByEmail_shouldCacheAccountAndInvalidateOnRoleChange() throws Exception {
+        String email = "cached.user@example.com";
+        String userPayload = """
+                {
+                    "email": "cached.user@example.com",
+                    "firstName": "Cached",
+                    "lastName": "User",
+                    "city": "Cacheville",
+                    "dateOfBirth": "2000-01-01",
+                    "nickname": "cacheduser"
+                }
+                """;
+        mockMvc.perform(post("/api/users/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(userPayload))
+                .andExpect(status().isCreated());
+
+        UserAccount account = userAccountFinder.findByEmail(email).orElseThrow();
+        assertTrue(account.roles().contains("ROLE_USER"));
+        assertNotNull(redisTemplate.opsForValue().get("user_account:" + email), "Аккаунт должен попасть в Redis");
+
+        AccountWithRoles accountWithRoles = accountRepository.findByEmail(email).orElseThrow();
+        accountWithRoles.assignRole("MODERATOR");
+        accountRepository.save(accountWithRoles);
+
+        assertFalse(redisTemplate.hasKey("user_account:" + email), "Изменение ролей должно удалять запись из Redis");
+        assertTrue(userAccountFinder.findByEmail(email).orElseThrow().roles().contains("ROLE_MODERATOR"),
+                "После инвалидации аккаунт должен читаться с новыми ролями");
+    }
+
+    @Test
+    void findByEmail_forUnknownUser_shouldNotCacheMiss() {
+        String email = "unknown.cached.user@example.com";
+
+        assertTrue(userAccountFinder.findByEmail(email).isEmpty());
+        assertFalse(redisTemplate.hasKey("user_account:" + email));
+    }
+}
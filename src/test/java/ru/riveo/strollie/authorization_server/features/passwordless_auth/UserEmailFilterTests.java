@@ -0,0 +1,86 @@
+package ru.riveo.strollie.authorization_server.features.passwordless_auth;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpRepository;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.port.UserExistenceChecker;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.jpa.JpaUserRepository;
+import ru.riveo.strollie.authorization_server.infrastructure.persistence.redis.UserEmailBloomFilter;
+
+/**
+ * Тесты фильтра Блума зарегистрированных email перед запросом в БД.
+ */
+@TestPropertySource(properties = "app.otp.user-filter.enabled=true")
+public class UserEmailFilterTests extends ApiIntegrationTest {
+
+    @Autowired
+    private UserExistenceChecker userExistenceChecker;
+
+    @Autowired
+    private UserEmailBloomFilter userEmailFilter;
+
+    @Autowired
+    private OtpRepository otpRepository;
+
+    @MockitoSpyBean
+    private JpaUserRepository jpaUserRepository;
+
+    /**
+     * Для незарегистрированного email фильтр отвечает "точно нет", и БД не запрашивается.
+     */
+    @Test
+    void existsByEmail_whenEmailUnknown_shouldNotQueryDatabase() {
+        userEmailFilter.build();
+        clearInvocations(jpaUserRepository);
+
+        assertFalse(userExistenceChecker.existsByEmail("enumeration.bot@example.com"));
+
+        verify(jpaUserRepository, never()).existsByEmail(anyString());
+    }
+
+    /**
+     * Регистрация сразу попадает в фильтр, и OTP выдаётся без перестроения фильтра.
+     */
+    @Test
+    void requestOtp_whenUserRegisteredAfterBuild_shouldIssueOtp() throws Exception {
+        userEmailFilter.build();
+
+        String email = "filter.user@example.com";
+        String userPayload = """
+                {
+                    "email": "filter.user@example.com",
+                    "firstName": "Filter",
+                    "lastName": "User",
+                    "city": "Bloomville",
+                    "dateOfBirth": "2000-01-01",
+                    "nickname": "filteruser"
+                }
+                """;
+        mockMvc.perform(post("/api/users/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(userPayload))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/auth/request-otp")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"" + email + "\"}"))
+                .andExpect(status().isOk());
+
+        assertTrue(otpRepository.findOtp(email).isPresent(), "OTP должен быть выдан зарегистрированному пользователю");
+        verify(jpaUserRepository).existsByEmail(eq(email));
+    }
+}
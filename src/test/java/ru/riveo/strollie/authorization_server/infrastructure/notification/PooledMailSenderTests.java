@@ -0,0 +1,94 @@
+package ru.riveo.strollie.authorization_server.infrastructure.notification;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+
+/**
+ * Тесты пула SMTP-соединений на локальном SMTP-сервере GreenMail.
+ */
+public class PooledMailSenderTests {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PooledMailSender sender;
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        if (sender != null) {
+            sender.destroy();
+        }
+    }
+
+    @Test
+    void submit_shouldDeliverAllMessages() throws Exception {
+        sender = new PooledMailSender(mailSender(ServerSetupTest.SMTP.getPort()), properties(0), meterRegistry);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(sender.submit(message("user" + i + "@example.com")));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(25, greenMail.getReceivedMessages().length);
+        assertEquals(25, meterRegistry.counter("mail.delivery.messages", "outcome", "sent").count());
+    }
+
+    @Test
+    void submit_whenServerUnavailable_shouldFailAfterRetries() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        sender = new PooledMailSender(mailSender(closedPort), properties(2), meterRegistry);
+
+        CompletableFuture<Void> future = sender.submit(message("unreachable@example.com"));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(MessagingException.class, error.getCause());
+        assertEquals(2, meterRegistry.counter("mail.delivery.retries").count());
+        assertEquals(1, meterRegistry.counter("mail.delivery.messages", "outcome", "failed").count());
+    }
+
+    private static JavaMailSenderImpl mailSender(int port) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(port);
+        return mailSender;
+    }
+
+    private static MailDeliveryProperties properties(int maxRetries) {
+        return new MailDeliveryProperties(MailDeliveryProperties.Mode.POOLED, 100, 2, 10,
+                Duration.ofMillis(20), Duration.ofMillis(100), maxRetries, Duration.ofMillis(10), Duration.ofSeconds(30));
+    }
+
+    private static SimpleMailMessage message(String to) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("noreply@strollie.com");
+        message.setTo(to);
+        message.setSubject("Test");
+        message.setText("Body");
+        return message;
+    }
+}
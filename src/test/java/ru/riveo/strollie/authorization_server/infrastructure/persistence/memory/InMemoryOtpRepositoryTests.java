@@ -0,0 +1,135 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.memory;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpIssueResult;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpVerificationResult;
+
+/**
+ * Тесты хранилища OTP в памяти: та же атомарность, что у Redis-скриптов, и истечение по колесу таймеров.
+ */
+public class InMemoryOtpRepositoryTests {
+
+    private final MutableClock clock = new MutableClock();
+    private final InMemoryOtpRepository repository = new InMemoryOtpRepository(clock, false);
+
+    @Test
+    void issueOtp_shouldRespectCooldown() {
+        assertEquals(OtpIssueResult.ISSUED, repository.issueOtp("user@example.com", "1234", 3, 5, 60));
+        assertEquals(OtpIssueResult.RATE_LIMITED, repository.issueOtp("user@example.com", "5678", 3, 5, 60));
+
+        clock.advance(61, TimeUnit.SECONDS);
+        assertEquals(OtpIssueResult.ISSUED, repository.issueOtp("user@example.com", "5678", 3, 5, 60));
+        assertEquals("5678", repository.findOtp("user@example.com").orElseThrow());
+    }
+
+    @Test
+    void verifyAndConsume_shouldFollowRedisSemantics() {
+        repository.issueOtp("user@example.com", "1234", 2, 5, 60);
+
+        assertEquals(OtpVerificationResult.INVALID, repository.verifyAndConsume("user@example.com", "0000"));
+        assertEquals(OtpVerificationResult.EXHAUSTED, repository.verifyAndConsume("user@example.com", "0000"));
+        assertEquals(OtpVerificationResult.MISSING, repository.verifyAndConsume("user@example.com", "1234"));
+        assertFalse(repository.isRateLimited("user@example.com"), "Исчерпание попыток снимает кулдаун");
+
+        repository.issueOtp("user@example.com", "4321", 3, 5, 60);
+        assertEquals(OtpVerificationResult.VALID, repository.verifyAndConsume("user@example.com", "4321"));
+        assertEquals(0, repository.size(), "Погашенный код не должен оставлять состояния");
+    }
+
+    @Test
+    void verifyAndConsume_whenParallelAttempts_shouldAcceptCodeOnce() throws Exception {
+        repository.issueOtp("race@example.com", "1234", 3, 5, 60);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Callable<OtpVerificationResult>> attempts = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                attempts.add(() -> repository.verifyAndConsume("race@example.com", "1234"));
+            }
+            long valid = 0;
+            for (Future<OtpVerificationResult> result : executor.invokeAll(attempts)) {
+                if (result.get() == OtpVerificationResult.VALID) {
+                    valid++;
+                }
+            }
+            assertEquals(1, valid);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void expiredState_shouldBeInvisibleAndRemovedByTimingWheel() {
+        repository.issueOtp("expiring@example.com", "1234", 3, 5, 60);
+        repository.trySetRateLimit("cooldown-only@example.com", 30);
+        assertEquals(2, repository.size());
+
+        clock.advance(31, TimeUnit.SECONDS);
+        repository.expireDue();
+        assertEquals(1, repository.size(), "Состояние только с кулдауном должно быть удалено");
+        assertFalse(repository.isRateLimited("cooldown-only@example.com"));
+
+        clock.advance(5, TimeUnit.MINUTES);
+        assertTrue(repository.findOtp("expiring@example.com").isEmpty(), "Истёкший код не должен читаться");
+        repository.expireDue();
+        assertEquals(0, repository.size());
+    }
+
+    @Test
+    void timingWheel_shouldCascadeLongTimersDownToFire() {
+        repository.setRateLimit("long@example.com", TimeUnit.HOURS.toSeconds(30));
+
+        clock.advance(29, TimeUnit.HOURS);
+        repository.expireDue();
+        assertEquals(1, repository.size());
+
+        clock.advance(2, TimeUnit.HOURS);
+        repository.expireDue();
+        assertEquals(0, repository.size());
+    }
+
+    private static final class MutableClock extends Clock {
+        private final AtomicLong millis = new AtomicLong(1_700_000_000_000L);
+
+        void advance(long amount, TimeUnit unit) {
+            millis.addAndGet(unit.toMillis(amount));
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpIssueResult;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpVerificationResult;
+
+/**
+ * Тесты переключения раскладки OTP: узлы "keys" и "hash" работают одновременно,
+ * и коды и кулдауны, выставленные одними, действуют на других.
+ */
+public class OtpLayoutSwitchTests extends ApiIntegrationTest {
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private RedisOtpRepository keysNode;
+    private RedisHashOtpRepository hashNode;
+
+    @BeforeEach
+    void setUpNodes() {
+        keysNode = new RedisOtpRepository(redisTemplate, new OtpStorageProperties(
+                OtpStorageProperties.Layout.KEYS, false, true, OtpStorageProperties.KeyScheme.UNTAGGED, false));
+        hashNode = new RedisHashOtpRepository(redisTemplate, new OtpStorageProperties(
+                OtpStorageProperties.Layout.HASH, true, false, OtpStorageProperties.KeyScheme.UNTAGGED, false));
+    }
+
+    @Test
+    void keysNode_shouldHonourCodeAndCooldownIssuedByHashNode() {
+        String email = "hash.to.keys@example.com";
+        assertEquals(OtpIssueResult.ISSUED, hashNode.issueOtp(email, "1234", 3, 5, 60));
+
+        // Кулдаун узла "hash" не даёт узлу "keys" выдать второй код
+        assertEquals(OtpIssueResult.RATE_LIMITED, keysNode.issueOtp(email, "5678", 3, 5, 60));
+        assertFalse(keysNode.trySetRateLimit(email, 60));
+        assertTrue(keysNode.isRateLimited(email));
+
+        assertEquals(OtpVerificationResult.INVALID, keysNode.verifyAndConsume(email, "0000"));
+        assertEquals(OtpVerificationResult.VALID, keysNode.verifyAndConsume(email, "1234"));
+        assertFalse(redisTemplate.hasKey("otp_state:" + email), "Состояние в хэше должно быть погашено");
+    }
+
+    @Test
+    void newerCode_shouldWinRegardlessOfIssuingLayout() {
+        String email = "keys.to.hash@example.com";
+        assertEquals(OtpIssueResult.ISSUED, keysNode.issueOtp(email, "1111", 3, 5, 60));
+        keysNode.clearRateLimit(email);
+
+        assertEquals(OtpIssueResult.ISSUED, hashNode.issueOtp(email, "2222", 3, 5, 60));
+        assertFalse(redisTemplate.hasKey("otp:" + email), "Прежний код раскладки keys удаляется при выдаче");
+        assertEquals(OtpVerificationResult.VALID, keysNode.verifyAndConsume(email, "2222"));
+
+        hashNode.clearRateLimit(email);
+        assertEquals(OtpIssueResult.ISSUED, hashNode.issueOtp(email, "3333", 3, 5, 60));
+        hashNode.clearRateLimit(email);
+        assertEquals(OtpIssueResult.ISSUED, keysNode.issueOtp(email, "4444", 3, 5, 60));
+        assertEquals(OtpVerificationResult.INVALID, hashNode.verifyAndConsume(email, "3333"));
+        assertEquals(OtpVerificationResult.VALID, hashNode.verifyAndConsume(email, "4444"));
+    }
+}
@@ -0,0 +1,106 @@
+package ru.riveo.strollie.authorization_server.infrastructure.persistence.redis;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.FixedHostPortGenericContainer;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import io.lettuce.core.cluster.SlotHash;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpIssueResult;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.request_otp.OtpVerificationResult;
+
+/**
+ * Тесты хранилища OTP на локальном Redis Cluster из шести узлов (три мастера, три реплики).
+ * Узлы объявляют себя на 0.0.0.0, поэтому порты контейнера пробрасываются один к одному.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class OtpRedisClusterTests {
+
+    private static final int FIRST_PORT = 7000;
+
+    @SuppressWarnings({"deprecation", "resource"})
+    private static final GenericContainer<?> cluster = withClusterPorts(
+            new FixedHostPortGenericContainer<>("grokzen/redis-cluster:7.0.10"))
+            .withEnv("IP", "0.0.0.0")
+            .withEnv("INITIAL_PORT", String.valueOf(FIRST_PORT))
+            .waitingFor(Wait.forLogMessage(".*Cluster state changed: ok.*", 1));
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    static void startCluster() {
+        cluster.start();
+        RedisClusterConfiguration configuration = new RedisClusterConfiguration(
+                List.of("127.0.0.1:" + FIRST_PORT, "127.0.0.1:" + (FIRST_PORT + 1), "127.0.0.1:" + (FIRST_PORT + 2)));
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        cluster.stop();
+    }
+
+    @Test
+    void hashTaggedKeys_shouldShareSlot() {
+        String email = "slot.user@example.com";
+        OtpRedisKeys keys = OtpRedisKeys.HASH_TAGGED;
+        int slot = SlotHash.getSlot(keys.otp(email));
+
+        assertEquals(slot, SlotHash.getSlot(keys.attempts(email)));
+        assertEquals(slot, SlotHash.getSlot(keys.rateLimit(email)));
+        assertEquals(slot, SlotHash.getSlot(keys.state(email)));
+    }
+
+    @Test
+    void hashTaggedScheme_shouldIssueAndVerifyWithScriptsInCluster() {
+        RedisOtpRepository repository = new RedisOtpRepository(redisTemplate, properties(OtpStorageProperties.KeyScheme.HASH_TAGGED));
+        String email = "cluster.user@example.com";
+
+        assertEquals(OtpIssueResult.ISSUED, repository.issueOtp(email, "1234", 3, 5, 60));
+        assertEquals(OtpIssueResult.RATE_LIMITED, repository.issueOtp(email, "5678", 3, 5, 60));
+        assertEquals(OtpVerificationResult.INVALID, repository.verifyAndConsume(email, "0000"));
+        assertEquals(OtpVerificationResult.VALID, repository.verifyAndConsume(email, "1234"));
+        assertEquals(OtpVerificationResult.MISSING, repository.verifyAndConsume(email, "1234"));
+    }
+
+    /**
+     * Без хэш-тегов ключи пользователя разнесены по слотам, и кластер отклоняет скрипт (CROSSSLOT).
+     */
+    @Test
+    void untaggedScheme_shouldBeRejectedByCluster() {
+        RedisOtpRepository repository = new RedisOtpRepository(redisTemplate, properties(OtpStorageProperties.KeyScheme.UNTAGGED));
+
+        assertThrows(DataAccessException.class,
+                () -> repository.issueOtp("crossslot.user@example.com", "1234", 3, 5, 60));
+    }
+
+    private static OtpStorageProperties properties(OtpStorageProperties.KeyScheme keyScheme) {
+        return new OtpStorageProperties(OtpStorageProperties.Layout.KEYS, false, false, keyScheme, false);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static FixedHostPortGenericContainer<?> withClusterPorts(FixedHostPortGenericContainer<?> container) {
+        for (int port = FIRST_PORT; port < FIRST_PORT + 6; port++) {
+            container.withFixedExposedPort(port, port);
+        }
+        return container;
+    }
+}
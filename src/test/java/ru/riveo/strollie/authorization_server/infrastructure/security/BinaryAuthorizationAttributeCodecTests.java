@@ -0,0 +1,104 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.config.OtpAuthCustomizer;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.config.OtpAuthenticationTokenBinaryType;
+import ru.riveo.strollie.authorization_server.features.passwordless_auth.login_with_otp.OtpAuthenticationToken;
+
+/**
+ * Тесты бинарного формата атрибутов авторизации.
+ */
+class BinaryAuthorizationAttributeCodecTests {
+
+    private JsonAuthorizationAttributeCodec jsonCodec;
+    private BinaryAuthorizationAttributeCodec binaryCodec;
+
+    @BeforeEach
+    void setUp() {
+        RegisteredClient client = RegisteredClient.withId("client")
+                .clientId("client")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .build();
+        AuthorizationRowMapper rowMapper = new AuthorizationRowMapper(new InMemoryRegisteredClientRepository(client));
+        new OtpAuthCustomizer().customize(rowMapper);
+        jsonCodec = new JsonAuthorizationAttributeCodec(rowMapper.objectMapper());
+        binaryCodec = new BinaryAuthorizationAttributeCodec(jsonCodec,
+                List.of(new OtpAuthenticationTokenBinaryType()), 512);
+    }
+
+    @Test
+    void decode_shouldRestoreClaimsMetadataAndOtpPrincipal() throws Exception {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", "user@example.com");
+        claims.put("aud", List.of("mobile-app"));
+        claims.put("iss", URI.create("http://localhost:9100").toURL());
+        claims.put("iat", Instant.ofEpochSecond(1_700_000_000L, 123));
+        claims.put("authorities", Set.of("ROLE_USER"));
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claims);
+        attributes.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, false);
+        attributes.put("java.security.Principal", new OtpAuthenticationToken("user@example.com", null,
+                Set.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        byte[] binary = binaryCodec.encode(attributes);
+        Map<String, Object> decoded = binaryCodec.decode(binary);
+
+        assertEquals(BinaryAuthorizationAttributeCodec.VERSION, binary[0]);
+        assertTrue(binary.length < jsonCodec.encode(attributes).length, "Бинарный формат должен быть компактнее JSON");
+        assertEquals(claims, decoded.get(OAuth2Authorization.Token.CLAIMS_METADATA_NAME));
+        assertEquals(false, decoded.get(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME));
+        OtpAuthenticationToken principal = assertInstanceOf(OtpAuthenticationToken.class,
+                decoded.get("java.security.Principal"));
+        assertEquals("user@example.com", principal.getEmail());
+        assertTrue(principal.isAuthenticated());
+        assertEquals(Set.of(new SimpleGrantedAuthority("ROLE_USER")), Set.copyOf(principal.getAuthorities()));
+    }
+
+    @Test
+    void decode_shouldReadJsonWrittenBeforeBinaryFormat() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("java.security.Principal", new OtpAuthenticationToken(
+                "legacy@example.com", null, Set.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        Map<String, Object> decoded = binaryCodec.decode(jsonCodec.encode(attributes));
+
+        assertEquals("legacy@example.com",
+                assertInstanceOf(OtpAuthenticationToken.class, decoded.get("java.security.Principal")).getEmail());
+    }
+
+    @Test
+    void encode_largeValueAndUnregisteredType_shouldBeCompressedAndRestored() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("scope", "openid profile email ".repeat(100));
+        attributes.put("java.security.Principal", UsernamePasswordAuthenticationToken.authenticated(
+                "admin@example.com", null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+
+        byte[] binary = binaryCodec.encode(attributes);
+        Map<String, Object> decoded = binaryCodec.decode(binary);
+
+        assertTrue(binary.length < 512, "Повторяющееся значение должно сжиматься");
+        assertEquals(attributes.get("scope"), decoded.get("scope"));
+        assertEquals("admin@example.com", assertInstanceOf(UsernamePasswordAuthenticationToken.class,
+                decoded.get("java.security.Principal")).getName());
+    }
+}
@@ -0,0 +1,88 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ru.riveo.strollie.authorization_server.shared.exception.OAuth2ServiceOverloadedException;
+
+/**
+ * Тесты пула проверки секретов: сброс нагрузки при переполнении очереди и лимит на клиента.
+ */
+class BulkheadPasswordEncoderTests {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Проверка блокируется до release, чтобы заполнить пул
+    private final PasswordEncoder blockingEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    };
+
+    @AfterEach
+    void releaseVerifications() {
+        release.countDown();
+    }
+
+    @Test
+    void matches_whenQueueIsFull_shouldShedImmediately() throws Exception {
+        BulkheadPasswordEncoder passwordEncoder = new BulkheadPasswordEncoder(blockingEncoder,
+                new PasswordVerificationProperties(true, 1, 1, 10, 3), meterRegistry);
+
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> passwordEncoder.matches("a", "a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> passwordEncoder.matches("b", "b"));
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+                meterRegistry.get("password.verification.queue.depth").gauge().value() == 1);
+
+        OAuth2ServiceOverloadedException shed = assertThrows(OAuth2ServiceOverloadedException.class,
+                () -> passwordEncoder.matches("c", "c"));
+        assertEquals(3, shed.getRetryAfterSeconds());
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void matches_whenClientLimitIsReached_shouldShedOnlyThatClient() throws Exception {
+        BulkheadPasswordEncoder passwordEncoder = new BulkheadPasswordEncoder(blockingEncoder,
+                new PasswordVerificationProperties(true, 1, 10, 1, 1), meterRegistry);
+
+        CompletableFuture<Boolean> noisy = CompletableFuture.supplyAsync(() -> passwordEncoder.matches("a", "a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(OAuth2ServiceOverloadedException.class, () -> passwordEncoder.matches("a", "a"));
+        CompletableFuture<Boolean> other = CompletableFuture.supplyAsync(() -> passwordEncoder.matches("b", "b"));
+
+        release.countDown();
+        assertTrue(noisy.get(5, TimeUnit.SECONDS));
+        assertTrue(other.get(5, TimeUnit.SECONDS));
+        // После завершения проверок лимит клиента освобождается
+        assertTrue(passwordEncoder.matches("a", "a"));
+    }
+}
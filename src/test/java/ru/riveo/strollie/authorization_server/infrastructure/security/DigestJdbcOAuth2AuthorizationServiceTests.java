@@ -0,0 +1,70 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+import ru.riveo.strollie.authorization_server.config.TestUserHelper;
+
+/**
+ * Тесты поиска авторизаций по дайджестам токенов и их сохранения одним запросом.
+ */
+public class DigestJdbcOAuth2AuthorizationServiceTests extends ApiIntegrationTest {
+
+    @Autowired
+    private OAuth2AuthorizationService authorizationService;
+
+    @Autowired
+    private TestUserHelper testUserHelper;
+
+    @Test
+    void findByToken_shouldFindAuthorizationByGeneratedDigest() throws Exception {
+        String accessToken = testUserHelper.createAndAuthenticateUser(
+                "digest.user@example.com", "digestuser", "Digest", "User", "Hashville", "2000-01-01");
+
+        // Дайджест, вычисленный PostgreSQL, совпадает с вычисленным в приложении
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM oauth2_authorization WHERE access_token_digest = ?",
+                Integer.class, (Object) DigestJdbcOAuth2AuthorizationService.digest(accessToken));
+        assertEquals(1, rows);
+
+        OAuth2Authorization byType = authorizationService.findByToken(accessToken, OAuth2TokenType.ACCESS_TOKEN);
+        assertNotNull(byType);
+        assertNotNull(authorizationService.findByToken(accessToken, null));
+        assertNull(authorizationService.findByToken(accessToken, OAuth2TokenType.REFRESH_TOKEN));
+
+        String refreshToken = byType.getRefreshToken().getToken().getTokenValue();
+        assertEquals(byType.getId(),
+                authorizationService.findByToken(refreshToken, OAuth2TokenType.REFRESH_TOKEN).getId());
+        assertNull(authorizationService.findByToken(refreshToken + "x", OAuth2TokenType.REFRESH_TOKEN));
+    }
+
+    @Test
+    void save_existingAuthorization_shouldUpdateChangedTokenInPlace() throws Exception {
+        String accessToken = testUserHelper.createAndAuthenticateUser(
+                "upsert.user@example.com", "upsertuser", "Upsert", "User", "Upsertville", "2000-01-01");
+        OAuth2Authorization authorization = authorizationService.findByToken(accessToken, OAuth2TokenType.ACCESS_TOKEN);
+        OAuth2AccessToken previous = authorization.getAccessToken().getToken();
+        OAuth2AccessToken rotated = new OAuth2AccessToken(previous.getTokenType(), "rotated-access-token",
+                previous.getIssuedAt(), previous.getExpiresAt(), previous.getScopes());
+
+        authorizationService.save(OAuth2Authorization.from(authorization).token(rotated).build());
+
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM oauth2_authorization WHERE id = ?", Integer.class, authorization.getId());
+        assertEquals(1, rows);
+        assertNull(authorizationService.findByToken(accessToken, OAuth2TokenType.ACCESS_TOKEN));
+        assertEquals(authorization.getId(),
+                authorizationService.findByToken("rotated-access-token", OAuth2TokenType.ACCESS_TOKEN).getId());
+        String refreshToken = authorization.getRefreshToken().getToken().getTokenValue();
+        assertEquals(authorization.getId(),
+                authorizationService.findByToken(refreshToken, OAuth2TokenType.REFRESH_TOKEN).getId());
+    }
+}
@@ -0,0 +1,108 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.test.context.TestPropertySource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+import ru.riveo.strollie.authorization_server.config.TestUserHelper;
+
+/**
+ * Тесты группового сохранения авторизаций.
+ */
+@TestPropertySource(properties = {
+        "app.authorization.group-commit.enabled=true",
+        "app.authorization.group-commit.max-wait=20ms"
+})
+public class GroupCommitOAuth2AuthorizationServiceTests extends ApiIntegrationTest {
+
+    @Autowired
+    private OAuth2AuthorizationService authorizationService;
+
+    @Autowired
+    private RegisteredClientRepository registeredClientRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TestUserHelper testUserHelper;
+
+    @Test
+    void save_concurrentCallers_shouldBeCommittedBeforeReturning() throws Exception {
+        assertInstanceOf(GroupCommitOAuth2AuthorizationService.class, authorizationService);
+        RegisteredClient client = registeredClientRepository.findByClientId("mobile-app");
+        double commitsBefore = meterRegistry.get("authorization.group_commit.commits").tag("kind", "batch")
+                .counter().count();
+
+        int callers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<String>> saved = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                saved.add(executor.submit(() -> {
+                    OAuth2Authorization authorization = authorization(client);
+                    authorizationService.save(authorization);
+                    // Возврат из save означает, что авторизация уже зафиксирована
+                    Integer rows = jdbcTemplate.queryForObject(
+                            "SELECT count(*) FROM oauth2_authorization WHERE id = ?",
+                            Integer.class, authorization.getId());
+                    assertEquals(1, rows);
+                    return authorization.getId();
+                }));
+            }
+            for (Future<String> future : saved) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double commits = meterRegistry.get("authorization.group_commit.commits").tag("kind", "batch")
+                .counter().count() - commitsBefore;
+        assertTrue(commits >= 1 && commits < callers, "Сохранения должны объединяться в пачки, фиксаций: " + commits);
+    }
+
+    @Test
+    void otpLogin_shouldIssueTokenThroughGroupCommit() throws Exception {
+        String accessToken = testUserHelper.createAndAuthenticateUser(
+                "group.commit@example.com", "groupcommit", "Group", "Commit", "Batchville", "2000-01-01");
+
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM oauth2_authorization WHERE access_token_digest = ?",
+                Integer.class, (Object) DigestJdbcOAuth2AuthorizationService.digest(accessToken));
+        assertEquals(1, rows);
+    }
+
+    private static OAuth2Authorization authorization(RegisteredClient client) {
+        Instant now = Instant.now();
+        return OAuth2Authorization.withRegisteredClient(client)
+                .id(UUID.randomUUID().toString())
+                .principalName("group.commit." + UUID.randomUUID())
+                .authorizationGrantType(new AuthorizationGrantType("urn:ietf:params:oauth:grant-type:otp"))
+                .authorizedScopes(Set.of("openid"))
+                .token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, UUID.randomUUID().toString(),
+                        now, now.plus(Duration.ofHours(1)), Set.of("openid")))
+                .build();
+    }
+}
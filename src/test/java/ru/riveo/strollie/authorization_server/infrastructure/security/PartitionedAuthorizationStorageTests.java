@@ -0,0 +1,124 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.test.context.TestPropertySource;
+
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+import ru.riveo.strollie.authorization_server.config.TestUserHelper;
+
+/**
+ * Тесты секционированного хранения авторизаций. Миграции выполняются в отдельной схеме,
+ * чтобы не менять таблицу, общую с остальными тестами.
+ */
+@TestPropertySource(properties = {
+        "app.authorization.storage.mode=partitioned",
+        "spring.flyway.schemas=authorization_partitioned",
+        "spring.flyway.default-schema=authorization_partitioned",
+        "spring.datasource.hikari.schema=authorization_partitioned"
+})
+public class PartitionedAuthorizationStorageTests extends ApiIntegrationTest {
+
+    @Autowired
+    private OAuth2AuthorizationService authorizationService;
+
+    @Autowired
+    private AuthorizationPartitionMaintainer maintainer;
+
+    @Autowired
+    private TestUserHelper testUserHelper;
+
+    @Test
+    void save_shouldPlaceAuthorizationIntoPartitionOfRefreshTokenExpiry() throws Exception {
+        String accessToken = testUserHelper.createAndAuthenticateUser(
+                "partitioned.user@example.com", "partitioneduser", "Partitioned", "User", "Rangeville", "2000-01-01");
+
+        OAuth2Authorization authorization = authorizationService.findByToken(accessToken, OAuth2TokenType.ACCESS_TOKEN);
+        assertNotNull(authorization);
+        String partition = jdbcTemplate.queryForObject(
+                "SELECT tableoid::regclass::text FROM oauth2_authorization WHERE id = ?", String.class,
+                authorization.getId());
+        LocalDate refreshExpiryDay = jdbcTemplate.queryForObject(
+                "SELECT refresh_token_expires_at::date FROM oauth2_authorization WHERE id = ?", LocalDate.class,
+                authorization.getId());
+        assertTrue(partition.endsWith("oauth2_authorization_p" + refreshExpiryDay.format(DateTimeFormatter.BASIC_ISO_DATE)),
+                "Авторизация должна лежать в секции дня окончания refresh-токена, а не в " + partition);
+
+        // Повторное сохранение обновляет строку, а не добавляет вторую
+        authorizationService.save(authorization);
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM oauth2_authorization WHERE id = ?", Integer.class, authorization.getId()));
+    }
+
+    /**
+     * Параллельные сохранения одной новой авторизации не должны вставить несколько строк с одним id.
+     */
+    @Test
+    void save_concurrentlyWithSameId_shouldKeepSingleRow() throws Exception {
+        String accessToken = testUserHelper.createAndAuthenticateUser(
+                "concurrent.user@example.com", "concurrentuser", "Concurrent", "User", "Raceville", "2000-01-01");
+        OAuth2Authorization stored = authorizationService.findById(
+                authorizationService.findByToken(accessToken, OAuth2TokenType.ACCESS_TOKEN).getId());
+        assertNotNull(stored);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 10; round++) {
+                OAuth2Authorization authorization = OAuth2Authorization.from(stored)
+                        .id(UUID.randomUUID().toString())
+                        .build();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> saves = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    saves.add(executor.submit(() -> {
+                        start.await();
+                        authorizationService.save(authorization);
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> save : saves) {
+                    save.get();
+                }
+
+                assertEquals(1, jdbcTemplate.queryForObject(
+                        "SELECT count(*) FROM oauth2_authorization WHERE id = ?", Integer.class,
+                        authorization.getId()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void maintain_shouldDropExpiredPartitionsAndPremakeFutureOnes() {
+        LocalDate today = LocalDate.now();
+        LocalDate expiredDay = today.minusDays(10);
+        jdbcTemplate.queryForObject("SELECT create_oauth2_authorization_partition(?)", Boolean.class, expiredDay);
+
+        maintainer.maintain(today);
+
+        assertNull(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class,
+                "oauth2_authorization_p" + expiredDay.format(DateTimeFormatter.BASIC_ISO_DATE)));
+        assertNotNull(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class,
+                "oauth2_authorization_p" + today.plusDays(35).format(DateTimeFormatter.BASIC_ISO_DATE)));
+    }
+}
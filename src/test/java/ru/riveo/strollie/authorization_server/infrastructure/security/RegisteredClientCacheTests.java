@@ -0,0 +1,93 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.test.context.TestPropertySource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.riveo.strollie.authorization_server.config.ApiIntegrationTest;
+
+/**
+ * Тесты кэша OAuth2 клиентов и его сброса по уведомлению PostgreSQL.
+ */
+@TestPropertySource(properties = "app.registered-client-cache.enabled=true")
+public class RegisteredClientCacheTests extends ApiIntegrationTest {
+
+    @Autowired
+    private RegisteredClientRepository registeredClientRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void awaitSubscription() {
+        assertInstanceOf(CachingRegisteredClientRepository.class, registeredClientRepository);
+        // До подписки на уведомления кэш не используется
+        await().atMost(Duration.ofSeconds(10)).until(() ->
+                registeredClientRepository.findByClientId("mobile-app")
+                        == registeredClientRepository.findByClientId("mobile-app"));
+    }
+
+    @Test
+    void findByClientId_shouldServeCachedClientUntilSqlChange() {
+        RegisteredClient client = newClient();
+        registeredClientRepository.save(client);
+
+        RegisteredClient cached = registeredClientRepository.findByClientId(client.getClientId());
+        assertSame(cached, registeredClientRepository.findByClientId(client.getClientId()));
+
+        // Изменение в обход приложения сбрасывает кэш через триггер и NOTIFY
+        jdbcTemplate.update("UPDATE oauth2_registered_client SET client_name = ? WHERE id = ?",
+                "Renamed by SQL", client.getId());
+
+        await().atMost(Duration.ofSeconds(5)).until(() ->
+                "Renamed by SQL".equals(registeredClientRepository.findByClientId(client.getClientId()).getClientName()));
+        assertEquals("Renamed by SQL", registeredClientRepository.findById(client.getId()).getClientName());
+    }
+
+    @Test
+    void findById_shouldCacheMissUntilClientIsSaved() {
+        RegisteredClient client = newClient();
+        double hits = negativeHits();
+
+        assertNull(registeredClientRepository.findById(client.getId()));
+        assertNull(registeredClientRepository.findById(client.getId()));
+        assertEquals(hits + 1, negativeHits(), "Повторный поиск отсутствующего клиента идёт из кэша");
+
+        registeredClientRepository.save(client);
+
+        assertNotNull(registeredClientRepository.findById(client.getId()));
+    }
+
+    private double negativeHits() {
+        return meterRegistry.get("cache.gets")
+                .tags("cache", "registered_client_by_id", "result", "hit")
+                .functionCounter().count();
+    }
+
+    private static RegisteredClient newClient() {
+        String id = UUID.randomUUID().toString();
+        return RegisteredClient.withId(id)
+                .clientId("cached-client-" + id)
+                .clientSecret("{noop}secret")
+                .clientName("Cached client")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .scope("read")
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package ru.riveo.strollie.authorization_server.infrastructure.security;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Тесты кэша успешных проверок секретов клиентов.
+ */
+class VerifiedSecretCachingPasswordEncoderTests {
+
+    private final AtomicInteger verifications = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private VerifiedSecretCachingPasswordEncoder passwordEncoder;
+    private String encodedSecret;
+
+    @BeforeEach
+    void setUp() {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        PasswordEncoder countingEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return bcrypt.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                verifications.incrementAndGet();
+                return bcrypt.matches(rawPassword, encodedPassword);
+            }
+        };
+        passwordEncoder = new VerifiedSecretCachingPasswordEncoder(countingEncoder,
+                new ClientSecretCacheProperties(true, 100, Duration.ofMinutes(5)), meterRegistry);
+        encodedSecret = passwordEncoder.encode("secret");
+    }
+
+    @Test
+    void matches_shouldVerifyCorrectSecretOnce() {
+        assertTrue(passwordEncoder.matches("secret", encodedSecret));
+        assertTrue(passwordEncoder.matches("secret", encodedSecret));
+
+        assertEquals(1, verifications.get());
+        assertEquals(1, meterRegistry.get("cache.gets")
+                .tags("cache", "client_secret_verification", "result", "hit")
+                .functionCounter().count());
+        assertTrue(meterRegistry.get("client_secret.verification.saved").functionCounter().count() > 0);
+    }
+
+    @Test
+    void matches_shouldNotCacheWrongSecret() {
+        assertFalse(passwordEncoder.matches("wrong", encodedSecret));
+        assertFalse(passwordEncoder.matches("wrong", encodedSecret));
+
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    void matches_shouldVerifyAgainAfterSecretRotationOrInvalidation() {
+        assertTrue(passwordEncoder.matches("secret", encodedSecret));
+
+        // Новый хэш того же секрета - другой ключ кэша
+        assertTrue(passwordEncoder.matches("secret", passwordEncoder.encode("secret")));
+        assertEquals(2, verifications.get());
+
+        passwordEncoder.invalidateAll();
+        assertTrue(passwordEncoder.matches("secret", encodedSecret));
+        assertEquals(3, verifications.get());
+    }
+}